@@ -79,9 +79,13 @@ import io.onedev.server.cache.DefaultBuildInfoManager;
 import io.onedev.server.cache.DefaultCacheManager;
 import io.onedev.server.cache.DefaultCodeCommentRelationInfoManager;
 import io.onedev.server.cache.DefaultCommitInfoManager;
+import io.onedev.server.cache.DefaultLastCommitsManager;
 import io.onedev.server.cache.DefaultUserInfoManager;
+import io.onedev.server.cache.LastCommitsManager;
 import io.onedev.server.cache.UserInfoManager;
 import io.onedev.server.ci.CISpec;
+import io.onedev.server.ci.CISpecManager;
+import io.onedev.server.ci.DefaultCISpecManager;
 import io.onedev.server.ci.detect.CISpecDetector;
 import io.onedev.server.ci.job.DefaultJobScheduler;
 import io.onedev.server.ci.job.JobScheduler;
@@ -172,6 +176,7 @@ import io.onedev.server.exception.OneException;
 import io.onedev.server.git.GitFilter;
 import io.onedev.server.git.GitPostReceiveCallback;
 import io.onedev.server.git.GitPreReceiveCallback;
+import io.onedev.server.git.UploadPackCache;
 import io.onedev.server.git.config.GitConfig;
 import io.onedev.server.migration.JpaConverter;
 import io.onedev.server.migration.PersistentBagConverter;
@@ -211,6 +216,8 @@ import io.onedev.server.search.code.DefaultIndexManager;
 import io.onedev.server.search.code.DefaultSearchManager;
 import io.onedev.server.search.code.IndexManager;
 import io.onedev.server.search.code.SearchManager;
+import io.onedev.server.search.entity.DefaultEntityQueryManager;
+import io.onedev.server.search.entity.EntityQueryManager;
 import io.onedev.server.security.BasicAuthenticationFilter;
 import io.onedev.server.security.FilterChainConfigurator;
 import io.onedev.server.security.OneAuthorizingRealm;
@@ -222,6 +229,8 @@ import io.onedev.server.storage.AttachmentManager;
 import io.onedev.server.storage.DefaultAttachmentManager;
 import io.onedev.server.storage.DefaultStorageManager;
 import io.onedev.server.storage.StorageManager;
+import io.onedev.server.util.diff.DefaultDiffCacheManager;
+import io.onedev.server.util.diff.DiffCacheManager;
 import io.onedev.server.util.jackson.ObjectMapperConfigurator;
 import io.onedev.server.util.jackson.ObjectMapperProvider;
 import io.onedev.server.util.jackson.git.GitObjectMapperConfigurator;
@@ -329,6 +338,7 @@ public class CoreModule extends AbstractPluginModule {
 		bind(Build2Manager.class).to(DefaultBuild2Manager.class);
 		bind(BuildDependenceManager.class).to(DefaultBuildDependenceManager.class);
 		bind(JobScheduler.class).to(DefaultJobScheduler.class);
+		bind(CISpecManager.class).to(DefaultCISpecManager.class);
 		bind(LogManager.class).to(DefaultLogManager.class);
 		bind(PullRequestBuildManager.class).to(DefaultPullRequestBuildManager.class);
 		bind(ConfigurationManager.class).to(DefaultConfigurationManager.class);
@@ -338,6 +348,7 @@ public class CoreModule extends AbstractPluginModule {
 		bind(BuildParamManager.class).to(DefaultBuildParamManager.class);
 		bind(PullRequestWatchManager.class).to(DefaultPullRequestWatchManager.class);
 		bind(CommitInfoManager.class).to(DefaultCommitInfoManager.class);
+		bind(LastCommitsManager.class).to(DefaultLastCommitsManager.class);
 		bind(UserInfoManager.class).to(DefaultUserInfoManager.class);
 		bind(BatchWorkManager.class).to(DefaultBatchWorkManager.class);
 		bind(GroupManager.class).to(DefaultGroupManager.class);
@@ -417,10 +428,13 @@ public class CoreModule extends AbstractPluginModule {
         
 		bind(IndexManager.class).to(DefaultIndexManager.class);
 		bind(SearchManager.class).to(DefaultSearchManager.class);
+		bind(EntityQueryManager.class).to(DefaultEntityQueryManager.class);
 		
 		bind(EntityValidator.class).to(DefaultEntityValidator.class);
 		
+		bind(DiffCacheManager.class).to(DefaultDiffCacheManager.class);
 		bind(GitFilter.class);
+		bind(UploadPackCache.class);
 		bind(GitPreReceiveCallback.class);
 		bind(GitPostReceiveCallback.class);
 	}
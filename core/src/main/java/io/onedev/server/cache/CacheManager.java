@@ -5,6 +5,7 @@ import java.util.Map;
 
 import javax.annotation.Nullable;
 
+import io.onedev.server.security.permission.ProjectPrivilege;
 import io.onedev.server.util.facade.ConfigurationFacade;
 import io.onedev.server.util.facade.GroupAuthorizationFacade;
 import io.onedev.server.util.facade.GroupFacade;
@@ -69,4 +70,29 @@ public interface CacheManager {
 	
 	Collection<Long> filterBuildIds(Long projectId, Collection<String> commitHashes);
 	
+	/**
+	 * Get default privileges of projects
+	 * 
+	 * @return
+	 * 			map of project id to default privilege of the project. Projects without 
+	 * 			default privilege will not be included
+	 */
+	Map<Long, ProjectPrivilege> getDefaultPrivileges();
+	
+	/**
+	 * Get privileges granted to specified user via group memberships and user authorizations. 
+	 * Default privileges of projects are not included 
+	 */
+	UserPrivileges getUserPrivileges(Long userId);
+	
+	/**
+	 * Get ids of users authorized with specified privilege over specified project
+	 * 
+	 * @return
+	 * 			ids of authorized users, or <tt>null</tt> if everyone is authorized as 
+	 * 			default privilege of the project implies specified privilege
+	 */
+	@Nullable
+	Collection<Long> getAuthorizedUserIds(Long projectId, ProjectPrivilege privilege);
+	
 }
@@ -0,0 +1,526 @@
+package io.onedev.server.cache;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+import javax.annotation.Nullable;
+
+import org.eclipse.jgit.lib.AnyObjectId;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.util.NB;
+
+/**
+ * Compact in-memory commit graph of a project. Commits are numbered densely in order of
+ * addition, and parent/child relationships are kept in primitive int arrays, so that
+ * reachability queries can be answered without touching the commit info store.
+ * <p>
+ * Edges of each commit are chained as linked lists over the edge arrays, and generation 
+ * numbers are propagated as commits are added, so that appending newly collected commits 
+ * does not require rebuilding any index of the graph.
+ * <p>
+ * The graph can be persisted to an append-only file, with each collected commit written
+ * as commit id, number of parents and parent ids.
+ */
+public class CommitGraph {
+
+	private static final int ID_LENGTH = Constants.OBJECT_ID_LENGTH;
+
+	private static final int INITIAL_CAPACITY = 1024;
+
+	private byte[] ids;
+
+	private int size;
+
+	// open addressing hash table holding commit number plus one, with 0 meaning empty slot
+	private int[] slots;
+
+	private final BitSet collected = new BitSet();
+
+	private int collectedCount;
+
+	private int[] edgeChildren;
+
+	private int[] edgeParents;
+	
+	/*
+	 * Edge lists of commits. Head arrays are indexed by commit number, and next arrays are 
+	 * indexed by edge number. All of them hold edge number plus one, with 0 meaning end 
+	 * of list
+	 */
+	private int[] firstChildEdges;
+	
+	private int[] firstParentEdges;
+	
+	private int[] nextChildEdges;
+	
+	private int[] nextParentEdges;
+
+	private int edgeCount;
+
+	/*
+	 * Generation number of each commit, being one more than maximum generation of its parents, 
+	 * with root commits having generation 1. Commits with any uncollected ancestors have 
+	 * unknown generation represented as 0 
+	 */
+	private int[] generations;
+	
+	/*
+	 * Generations are maintained incrementally when commits are added with all their parents. 
+	 * Adding edges of already collected commits invalidates them, and they will be recalculated 
+	 * on next query
+	 */
+	private boolean generationsValid = true;
+
+	private final byte[] keyBuffer = new byte[ID_LENGTH];
+	
+	public CommitGraph() {
+		this(INITIAL_CAPACITY);
+	}
+	
+	private CommitGraph(int capacity) {
+		ids = new byte[capacity*ID_LENGTH];
+		slots = new int[capacity*2];
+		firstChildEdges = new int[capacity];
+		firstParentEdges = new int[capacity];
+		generations = new int[capacity];
+		edgeChildren = new int[capacity];
+		edgeParents = new int[capacity];
+		nextChildEdges = new int[capacity];
+		nextParentEdges = new int[capacity];
+	}
+
+	public synchronized int size() {
+		return size;
+	}
+
+	/**
+	 * @return
+	 * 			number of commits added via {@link #addCommit(AnyObjectId, AnyObjectId[])},
+	 * 			excluding those only known as parents
+	 */
+	public synchronized int getCollectedCount() {
+		return collectedCount;
+	}
+	
+	/**
+	 * @return
+	 * 			approximate memory used by this graph in bytes
+	 */
+	public synchronized int getWeight() {
+		return ids.length + slots.length*4 + firstChildEdges.length*12 + edgeChildren.length*16 
+				+ collected.size()/8;
+	}
+
+	public synchronized void addCommit(AnyObjectId commit, AnyObjectId[] parents) {
+		commit.copyRawTo(keyBuffer, 0);
+		int number = getNumber(keyBuffer, 0, true);
+		if (!collected.get(number)) {
+			collected.set(number);
+			collectedCount++;
+			// edges are prepended to edge lists, add in reverse order to keep order of parents
+			for (int i=parents.length-1; i>=0; i--) {
+				parents[i].copyRawTo(keyBuffer, 0);
+				addEdge(number, getNumber(keyBuffer, 0, true));
+			}
+			if (generationsValid)
+				propagateGenerations(number);
+		}
+	}
+
+	/**
+	 * Mark specified commit as collected, without adding its parents. Used to rebuild the
+	 * graph from child relationships where parents are added separately via
+	 * {@link #addParent(AnyObjectId, AnyObjectId)}
+	 */
+	public synchronized void markCollected(AnyObjectId commit) {
+		commit.copyRawTo(keyBuffer, 0);
+		int number = getNumber(keyBuffer, 0, true);
+		if (!collected.get(number)) {
+			collected.set(number);
+			collectedCount++;
+			generationsValid = false;
+		}
+	}
+
+	public synchronized void addParent(AnyObjectId commit, AnyObjectId parent) {
+		commit.copyRawTo(keyBuffer, 0);
+		int number = getNumber(keyBuffer, 0, true);
+		parent.copyRawTo(keyBuffer, 0);
+		addEdge(number, getNumber(keyBuffer, 0, true));
+		generationsValid = false;
+	}
+
+	public synchronized boolean contains(AnyObjectId commit) {
+		return getNumber(commit) != -1;
+	}
+
+	/**
+	 * Get all descendants of specified commits, including specified commits themselves
+	 */
+	public synchronized Set<ObjectId> getDescendants(Collection<ObjectId> ancestors) {
+		Set<ObjectId> descendants = new HashSet<>(ancestors);
+		BitSet visited = new BitSet(size);
+		int[] stack = new int[16];
+		int top = 0;
+		for (ObjectId ancestor: ancestors) {
+			int number = getNumber(ancestor);
+			if (number != -1 && !visited.get(number)) {
+				visited.set(number);
+				if (top == stack.length)
+					stack = Arrays.copyOf(stack, top*2);
+				stack[top++] = number;
+			}
+		}
+		while (top != 0) {
+			int number = stack[--top];
+			for (int edge=firstChildEdges[number]; edge!=0; edge=nextChildEdges[edge-1]) {
+				int child = edgeChildren[edge-1];
+				if (!visited.get(child)) {
+					visited.set(child);
+					descendants.add(getId(child));
+					if (top == stack.length)
+						stack = Arrays.copyOf(stack, top*2);
+					stack[top++] = child;
+				}
+			}
+		}
+		return descendants;
+	}
+
+	/**
+	 * Check if a commit is ancestor of (or equal to) another commit.
+	 * 
+	 * @return
+	 * 			<tt>null</tt> if this can not be decided from this graph, for instance if 
+	 * 			history of specified commits has not been collected completely 
+	 */
+	@Nullable
+	public synchronized Boolean isAncestor(AnyObjectId ancestor, AnyObjectId descendant) {
+		if (ancestor.equals(descendant))
+			return true;
+		int ancestorNumber = getNumber(ancestor);
+		int descendantNumber = getNumber(descendant);
+		if (ancestorNumber == -1 || descendantNumber == -1)
+			return null;
+		buildGenerations();
+		int ancestorGeneration = generations[ancestorNumber];
+		int descendantGeneration = generations[descendantNumber];
+		if (ancestorGeneration == 0 || descendantGeneration == 0)
+			return null;
+		if (ancestorGeneration >= descendantGeneration)
+			return false;
+
+		// only commits with generation above that of ancestor may lead to ancestor
+		BitSet visited = new BitSet(size);
+		int[] stack = new int[16];
+		int top = 0;
+		stack[top++] = descendantNumber;
+		visited.set(descendantNumber);
+		while (top != 0) {
+			int number = stack[--top];
+			for (int edge=firstParentEdges[number]; edge!=0; edge=nextParentEdges[edge-1]) {
+				int parent = edgeParents[edge-1];
+				if (parent == ancestorNumber)
+					return true;
+				if (!visited.get(parent) && generations[parent] > ancestorGeneration) {
+					visited.set(parent);
+					if (top == stack.length)
+						stack = Arrays.copyOf(stack, top*2);
+					stack[top++] = parent;
+				}
+			}
+		}
+		return false;
+	}
+	
+	/**
+	 * Get a best common ancestor of specified commits. 
+	 * 
+	 * @return
+	 * 			merge base of specified commits, or <tt>null</tt> if specified commits do not 
+	 * 			have common ancestors, or if it can not be decided from this graph
+	 */
+	@Nullable
+	public synchronized ObjectId getMergeBase(AnyObjectId commit1, AnyObjectId commit2) {
+		int number1 = getNumber(commit1);
+		int number2 = getNumber(commit2);
+		if (number1 == -1 || number2 == -1)
+			return null;
+		buildGenerations();
+		if (generations[number1] == 0 || generations[number2] == 0)
+			return null;
+		
+		/*
+		 * Paint ancestors of both commits in order of decreasing generation. The first commit 
+		 * painted by both sides has no common ancestor with higher generation 
+		 */
+		Map<Integer, Integer> flags = new HashMap<>();
+		PriorityQueue<Integer> queue = new PriorityQueue<>(new Comparator<Integer>() {
+
+			@Override
+			public int compare(Integer o1, Integer o2) {
+				return generations[o2] - generations[o1];
+			}
+			
+		});
+		flags.put(number1, 1);
+		queue.add(number1);
+		if (number2 != number1) {
+			flags.put(number2, 2);
+			queue.add(number2);
+		} else {
+			flags.put(number1, 3);
+		}
+		while (!queue.isEmpty()) {
+			int number = queue.poll();
+			int flag = flags.get(number);
+			if (flag == 3) 
+				return getId(number);
+			for (int edge=firstParentEdges[number]; edge!=0; edge=nextParentEdges[edge-1]) {
+				int parent = edgeParents[edge-1];
+				Integer parentFlag = flags.get(parent);
+				if (parentFlag == null || (parentFlag | flag) != parentFlag) {
+					flags.put(parent, parentFlag!=null?parentFlag|flag:flag);
+					queue.add(parent);
+				}
+			}
+		}
+		return null;
+	}
+	
+	/**
+	 * Write all collected commits of this graph to specified file, replacing existing content
+	 */
+	public synchronized void writeTo(File file) throws IOException {
+		try (DataOutputStream os = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+			for (int number=0; number<size; number++) {
+				if (collected.get(number)) {
+					os.write(ids, number*ID_LENGTH, ID_LENGTH);
+					int parentCount = 0;
+					for (int edge=firstParentEdges[number]; edge!=0; edge=nextParentEdges[edge-1])
+						parentCount++;
+					os.writeInt(parentCount);
+					for (int edge=firstParentEdges[number]; edge!=0; edge=nextParentEdges[edge-1])
+						os.write(ids, edgeParents[edge-1]*ID_LENGTH, ID_LENGTH);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Append specified commits to specified graph file
+	 */
+	public static void append(File file, Collection<RevCommit> commits) throws IOException {
+		try (DataOutputStream os = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file, true)))) {
+			for (RevCommit commit: commits) {
+				commit.copyRawTo(os);
+				os.writeInt(commit.getParentCount());
+				for (RevCommit parent: commit.getParents())
+					parent.copyRawTo(os);
+			}
+		}
+	}
+
+	public static CommitGraph readFrom(File file) throws IOException {
+		try (	RandomAccessFile raf = new RandomAccessFile(file, "r");
+				FileChannel channel = raf.getChannel()) {
+			// size graph for commits with single parent to avoid growing arrays while reading 
+			long estimatedCommits = channel.size() / (ID_LENGTH*2 + Integer.BYTES);
+			int capacity = INITIAL_CAPACITY;
+			while (capacity < estimatedCommits && capacity < Integer.MAX_VALUE/(ID_LENGTH*2))
+				capacity *= 2;
+			CommitGraph graph = new CommitGraph(capacity);
+			
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			byte[] commitBytes = new byte[ID_LENGTH];
+			byte[] parentBytes = new byte[0];
+			while (buffer.remaining() >= ID_LENGTH + Integer.BYTES) {
+				buffer.get(commitBytes);
+				int parentCount = buffer.getInt();
+				if (buffer.remaining() < parentCount*ID_LENGTH)
+					break; // partially written record
+				if (parentBytes.length < parentCount*ID_LENGTH)
+					parentBytes = new byte[parentCount*ID_LENGTH];
+				buffer.get(parentBytes, 0, parentCount*ID_LENGTH);
+				graph.addCommit(commitBytes, parentBytes, parentCount);
+			}
+			return graph;
+		}
+	}
+	
+	private synchronized void addCommit(byte[] commitBytes, byte[] parentBytes, int parentCount) {
+		int number = getNumber(commitBytes, 0, true);
+		if (!collected.get(number)) {
+			collected.set(number);
+			collectedCount++;
+			for (int i=parentCount-1; i>=0; i--)
+				addEdge(number, getNumber(parentBytes, i*ID_LENGTH, true));
+			if (generationsValid)
+				propagateGenerations(number);
+		}
+	}
+
+	private ObjectId getId(int number) {
+		return ObjectId.fromRaw(ids, number*ID_LENGTH);
+	}
+
+	private int hash(byte[] bytes, int offset) {
+		// consistent with AnyObjectId.hashCode()
+		return NB.decodeInt32(bytes, offset+4);
+	}
+	
+	private int getNumber(AnyObjectId commit) {
+		commit.copyRawTo(keyBuffer, 0);
+		return getNumber(keyBuffer, 0, false);
+	}
+
+	private int getNumber(byte[] key, int keyOffset, boolean create) {
+		int mask = slots.length - 1;
+		int slot = hash(key, keyOffset) & mask;
+		while (slots[slot] != 0) {
+			int number = slots[slot] - 1;
+			if (equals(number, key, keyOffset))
+				return number;
+			slot = (slot + 1) & mask;
+		}
+		if (create) {
+			if (size == firstChildEdges.length) {
+				ids = Arrays.copyOf(ids, ids.length*2);
+				firstChildEdges = Arrays.copyOf(firstChildEdges, size*2);
+				firstParentEdges = Arrays.copyOf(firstParentEdges, size*2);
+				generations = Arrays.copyOf(generations, size*2);
+			}
+			int number = size++;
+			System.arraycopy(key, keyOffset, ids, number*ID_LENGTH, ID_LENGTH);
+			slots[slot] = number + 1;
+			if (size*2 > slots.length)
+				rehash();
+			return number;
+		} else {
+			return -1;
+		}
+	}
+
+	private boolean equals(int number, byte[] key, int keyOffset) {
+		int offset = number*ID_LENGTH;
+		for (int i=0; i<ID_LENGTH; i++) {
+			if (ids[offset+i] != key[keyOffset+i])
+				return false;
+		}
+		return true;
+	}
+
+	private void rehash() {
+		slots = new int[slots.length*2];
+		int mask = slots.length - 1;
+		for (int number=0; number<size; number++) {
+			int slot = hash(ids, number*ID_LENGTH) & mask;
+			while (slots[slot] != 0)
+				slot = (slot + 1) & mask;
+			slots[slot] = number + 1;
+		}
+	}
+
+	private void addEdge(int child, int parent) {
+		if (edgeCount == edgeChildren.length) {
+			edgeChildren = Arrays.copyOf(edgeChildren, edgeCount*2);
+			edgeParents = Arrays.copyOf(edgeParents, edgeCount*2);
+			nextChildEdges = Arrays.copyOf(nextChildEdges, edgeCount*2);
+			nextParentEdges = Arrays.copyOf(nextParentEdges, edgeCount*2);
+		}
+		int edge = edgeCount++;
+		edgeChildren[edge] = child;
+		edgeParents[edge] = parent;
+		nextChildEdges[edge] = firstChildEdges[parent];
+		firstChildEdges[parent] = edge + 1;
+		nextParentEdges[edge] = firstParentEdges[child];
+		firstParentEdges[child] = edge + 1;
+	}
+	
+	private int calcGeneration(int number) {
+		if (!collected.get(number))
+			return 0;
+		int generation = 1;
+		for (int edge=firstParentEdges[number]; edge!=0; edge=nextParentEdges[edge-1]) {
+			int parentGeneration = generations[edgeParents[edge-1]];
+			if (parentGeneration == 0) 
+				return 0;
+			else if (parentGeneration + 1 > generation) 
+				generation = parentGeneration + 1;
+		}
+		return generation;
+	}
+	
+	/*
+	 * Calculate generation of specified newly collected commit. If it becomes known, 
+	 * generations of collected descendants waiting for it may become known as well. As 
+	 * parents of collected commits never change, known generations stay valid
+	 */
+	private void propagateGenerations(int number) {
+		int[] stack = new int[16];
+		int top = 0;
+		stack[top++] = number;
+		while (top != 0) {
+			int current = stack[--top];
+			int generation = calcGeneration(current);
+			if (generation != 0) {
+				generations[current] = generation;
+				for (int edge=firstChildEdges[current]; edge!=0; edge=nextChildEdges[edge-1]) {
+					int child = edgeChildren[edge-1];
+					if (generations[child] == 0 && collected.get(child)) {
+						if (top == stack.length)
+							stack = Arrays.copyOf(stack, top*2);
+						stack[top++] = child;
+					}
+				}
+			}
+		}
+	}
+	
+	/*
+	 * Calculate generations of all commits in topological order, starting from commits 
+	 * without known parents
+	 */
+	private void buildGenerations() {
+		if (!generationsValid) {
+			Arrays.fill(generations, 0);
+			int[] pendingParents = new int[size];
+			int[] queue = new int[size];
+			int head = 0, tail = 0;
+			for (int number=0; number<size; number++) {
+				for (int edge=firstParentEdges[number]; edge!=0; edge=nextParentEdges[edge-1])
+					pendingParents[number]++;
+				if (pendingParents[number] == 0)
+					queue[tail++] = number;
+			}
+			while (head != tail) {
+				int number = queue[head++];
+				generations[number] = calcGeneration(number);
+				for (int edge=firstChildEdges[number]; edge!=0; edge=nextChildEdges[edge-1]) {
+					int child = edgeChildren[edge-1];
+					if (--pendingParents[child] == 0)
+						queue[tail++] = child;
+				}
+			}
+			generationsValid = true;
+		}
+	}
+
+}
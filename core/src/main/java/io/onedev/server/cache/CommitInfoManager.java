@@ -4,6 +4,8 @@ import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 
+import javax.annotation.Nullable;
+
 import org.eclipse.jgit.lib.ObjectId;
 
 import io.onedev.server.git.Contribution;
@@ -37,6 +39,35 @@ public interface CommitInfoManager {
 	 */
 	Collection<ObjectId> getDescendants(Project project, Collection<ObjectId> ancestors);
 	
+	/**
+	 * Check if a commit is ancestor of another commit, using cached commit information
+	 * 
+	 * @param project
+	 * 			project of the commits
+	 * @param ancestor
+	 * 			commit to check as ancestor
+	 * @param descendant
+	 * 			commit to check as descendant
+	 * @return
+	 * 			<tt>true</tt> if ancestor is equal to or is an ancestor of descendant, <tt>false</tt> 
+	 * 			if not, and <tt>null</tt> if this can not be decided as some commits have not been 
+	 * 			cached yet
+	 */
+	@Nullable
+	Boolean isAncestor(Project project, ObjectId ancestor, ObjectId descendant);
+	
+	/**
+	 * Get merge base of specified commits, using cached commit information
+	 * 
+	 * @param project
+	 * 			project of the commits
+	 * @return
+	 * 			merge base of specified commits, or <tt>null</tt> if specified commits do not have 
+	 * 			common ancestor, or if this can not be decided as some commits have not been cached yet
+	 */
+	@Nullable
+	ObjectId getMergeBase(Project project, ObjectId commit1, ObjectId commit2);
+	
 	void cloneInfo(Project from, Project to);
 	
 	Collection<String> getHistoryPaths(Project project, String path);
@@ -21,7 +21,6 @@ import io.onedev.server.entitymanager.ProjectManager;
 import io.onedev.server.event.entity.EntityPersisted;
 import io.onedev.server.event.entity.EntityRemoved;
 import io.onedev.server.event.system.SystemStarted;
-import io.onedev.server.git.GitUtils;
 import io.onedev.server.model.Build;
 import io.onedev.server.model.Project;
 import io.onedev.server.persistence.SessionManager;
@@ -147,9 +146,9 @@ public class DefaultBuildInfoManager extends AbstractEnvironmentManager implemen
 					boolean addCommit = true;
 					for (Iterator<ObjectId> it = lastCommits.iterator(); it.hasNext();) {
 						ObjectId lastCommit = it.next();
-						if (GitUtils.isMergedInto(project.getRepository(), null, lastCommit, buildCommit)) { 
+						if (project.isMergedInto(lastCommit, buildCommit)) { 
 							it.remove();
-						} else if (GitUtils.isMergedInto(project.getRepository(), null, buildCommit, lastCommit)) {
+						} else if (project.isMergedInto(buildCommit, lastCommit)) {
 							addCommit = false;
 							break;
 						}
@@ -1,14 +1,18 @@
 package io.onedev.server.cache;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.EnumMap;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 
+import javax.annotation.Nullable;
 import javax.inject.Inject;
 import javax.inject.Singleton;
 
@@ -18,6 +22,9 @@ import org.slf4j.LoggerFactory;
 
 import com.google.common.collect.BiMap;
 import com.google.common.collect.HashBiMap;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Sets;
 
 import io.onedev.commons.launcher.loader.Listen;
 import io.onedev.server.event.entity.EntityPersisted;
@@ -36,6 +43,7 @@ import io.onedev.server.persistence.TransactionManager;
 import io.onedev.server.persistence.annotation.Sessional;
 import io.onedev.server.persistence.annotation.Transactional;
 import io.onedev.server.persistence.dao.Dao;
+import io.onedev.server.security.permission.ProjectPrivilege;
 import io.onedev.server.util.facade.BuildFacade;
 import io.onedev.server.util.facade.ConfigurationFacade;
 import io.onedev.server.util.facade.EntityFacade;
@@ -64,42 +72,94 @@ public class DefaultCacheManager implements CacheManager {
 	
 	private final ReadWriteLock usersLock = new ReentrantReadWriteLock();
 	
+	private volatile Map<Long, UserFacade> usersSnapshot = ImmutableMap.of();
+	
 	private final Map<Long, ProjectFacade> projects = new HashMap<>();
 	
 	private final BiMap<String, Long> projectIdsByName = HashBiMap.create();
 	
 	private final ReadWriteLock projectsLock = new ReentrantReadWriteLock();
 	
+	private volatile Map<Long, ProjectFacade> projectsSnapshot = ImmutableMap.of();
+	
+	private volatile Map<String, Long> projectIdsSnapshot = ImmutableMap.of();
+	
+	private volatile Map<Long, ProjectPrivilege> defaultPrivilegesSnapshot = ImmutableMap.of();
+	
 	private final Map<Long, GroupFacade> groups = new HashMap<>();
 	
 	private final BiMap<String, Long> groupIdsByName = HashBiMap.create();
 	
 	private final ReadWriteLock groupsLock = new ReentrantReadWriteLock();
 	
+	private volatile Map<Long, GroupFacade> groupsSnapshot = ImmutableMap.of();
+	
+	private volatile Collection<Long> administratorGroupIdsSnapshot = ImmutableSet.of();
+	
 	private final Map<Long, MembershipFacade> memberships = new HashMap<>();
 	
+	private final Map<Long, Collection<Long>> membershipIdsByUser = new HashMap<>();
+	
+	private final Map<Long, Collection<Long>> membershipIdsByGroup = new HashMap<>();
+	
 	private final ReadWriteLock membershipsLock = new ReentrantReadWriteLock();
+	
+	private volatile Map<Long, MembershipFacade> membershipsSnapshot = ImmutableMap.of();
 
 	private final Map<Long, ConfigurationFacade> configurations = new HashMap<>();
 	
+	private final Map<Long, Collection<Long>> configurationIdsByProject = new HashMap<>();
+	
 	private final ReadWriteLock configurationsLock = new ReentrantReadWriteLock();
 	
+	private volatile Map<Long, ConfigurationFacade> configurationsSnapshot = ImmutableMap.of();
+	
 	private final Map<Long, BuildFacade> builds= new HashMap<>();
 	
+	private final Map<Long, Collection<Long>> buildIdsByConfiguration = new HashMap<>();
+	
+	private final Map<String, Collection<Long>> buildIdsByCommit = new HashMap<>();
+	
 	private final ReadWriteLock buildsLock = new ReentrantReadWriteLock();
 	
 	private final Map<Long, IssueFacade> issues = new HashMap<>();
 	
+	private final Map<Long, Collection<Long>> issueIdsByProject = new HashMap<>();
+	
 	private final ReadWriteLock issuesLock = new ReentrantReadWriteLock();
 	
 	private final Map<Long, GroupAuthorizationFacade> groupAuthorizations = new HashMap<>(); 
 	
+	private final Map<Long, Collection<Long>> groupAuthorizationIdsByGroup = new HashMap<>();
+	
+	private final Map<Long, Collection<Long>> groupAuthorizationIdsByProject = new HashMap<>();
+	
 	private final ReadWriteLock groupAuthorizationsLock = new ReentrantReadWriteLock();
 	
+	private volatile Map<Long, GroupAuthorizationFacade> groupAuthorizationsSnapshot = ImmutableMap.of();
+	
 	private final Map<Long, UserAuthorizationFacade> userAuthorizations = new HashMap<>();
 	
+	private final Map<Long, Collection<Long>> userAuthorizationIdsByUser = new HashMap<>();
+	
+	private final Map<Long, Collection<Long>> userAuthorizationIdsByProject = new HashMap<>();
+	
 	private final ReadWriteLock userAuthorizationsLock = new ReentrantReadWriteLock();
 	
+	private volatile Map<Long, UserAuthorizationFacade> userAuthorizationsSnapshot = ImmutableMap.of();
+	
+	private final Map<Long, UserPrivileges> userPrivileges = new ConcurrentHashMap<>();
+	
+	/*
+	 * Bumped on every invalidation of user privileges, so that privileges computed 
+	 * concurrently from stale data will not be cached 
+	 */
+	private final AtomicLong userPrivilegesStamp = new AtomicLong();
+	
+	private final Map<Long, Map<ProjectPrivilege, Collection<Long>>> authorizedUserIds = new ConcurrentHashMap<>();
+	
+	private final AtomicLong authorizedUserIdsStamp = new AtomicLong();
+	
 	@Inject
 	public DefaultCacheManager(Dao dao, TransactionManager transactionManager) {
 		this.dao = dao;
@@ -127,27 +187,35 @@ public class DefaultCacheManager implements CacheManager {
 		}
 		
 		for (Membership membership: dao.query(Membership.class))
-			memberships.put(membership.getId(), membership.getFacade());
+			cacheMembership(membership.getFacade());
 		
 		for (Configuration configuration: dao.query(Configuration.class))
-			configurations.put(configuration.getId(), configuration.getFacade());
+			cacheConfiguration(configuration.getFacade());
 		
 		Query<?> query = dao.getSessionManager().getSession().createQuery("select id, configuration.id, commitHash from Build");
 		for (Object[] fields: (List<Object[]>)query.list()) {
 			Long buildId = (Long) fields[0];
-			builds.put(buildId, new BuildFacade(buildId, (Long)fields[1], (String)fields[2]));
+			cacheBuild(new BuildFacade(buildId, (Long)fields[1], (String)fields[2]));
 		}
 		
 		query = dao.getSessionManager().getSession().createQuery("select id, project.id, number from Issue");
 		for (Object[] fields: (List<Object[]>)query.list()) {
 			Long issueId = (Long) fields[0];
-			issues.put(issueId, new IssueFacade(issueId, (Long)fields[1], (Long)fields[2]));
+			cacheIssue(new IssueFacade(issueId, (Long)fields[1], (Long)fields[2]));
 		}
 		
 		for (GroupAuthorization groupAuthorization: dao.query(GroupAuthorization.class))
-			groupAuthorizations.put(groupAuthorization.getId(), groupAuthorization.getFacade());
+			cacheGroupAuthorization(groupAuthorization.getFacade());
 		for (UserAuthorization userAuthorization: dao.query(UserAuthorization.class))
-			userAuthorizations.put(userAuthorization.getId(), userAuthorization.getFacade());
+			cacheUserAuthorization(userAuthorization.getFacade());
+		
+		publishProjects();
+		publishUsers();
+		publishGroups();
+		publishMemberships();
+		publishConfigurations();
+		publishUserAuthorizations();
+		publishGroupAuthorizations();
 	}
 	
 	@Transactional
@@ -187,6 +255,7 @@ public class DefaultCacheManager implements CacheManager {
 					try {
 						projects.put(project.getId(), project);
 						projectIdsByName.inverse().put(project.getId(), project.getName());
+						publishProjects();
 					} finally {
 						projectsLock.writeLock().unlock();
 					}
@@ -198,6 +267,7 @@ public class DefaultCacheManager implements CacheManager {
 						userIdsByName.inverse().put(user.getId(), user.getName());
 						if (user.getEmail() != null)
 							userIdsByEmail.inverse().put(user.getId(), user.getEmail());
+						publishUsers();
 					} finally {
 						usersLock.writeLock().unlock();
 					}
@@ -207,14 +277,18 @@ public class DefaultCacheManager implements CacheManager {
 					try {
 						groups.put(group.getId(), group);
 						groupIdsByName.inverse().put(group.getId(), group.getName());
+						publishGroups();
 					} finally {
 						groupsLock.writeLock().unlock();
 					}
+					invalidateUserPrivileges(getMemberIds(group.getId()));
+					invalidateAuthorizedUsers(null);
 				} else if (facade instanceof ConfigurationFacade) {
 					ConfigurationFacade configuration = (ConfigurationFacade) facade;
 					configurationsLock.writeLock().lock();
 					try {
-						configurations.put(configuration.getId(), configuration);
+						cacheConfiguration(configuration);
+						publishConfigurations();
 					} finally {
 						configurationsLock.writeLock().unlock();
 					}
@@ -222,7 +296,7 @@ public class DefaultCacheManager implements CacheManager {
 					IssueFacade issue = (IssueFacade) facade;
 					issuesLock.writeLock().lock();
 					try {
-						issues.put(issue.getId(), issue);
+						cacheIssue(issue);
 					} finally {
 						issuesLock.writeLock().unlock();
 					}
@@ -230,34 +304,62 @@ public class DefaultCacheManager implements CacheManager {
 					BuildFacade build = (BuildFacade) facade;
 					buildsLock.writeLock().lock();
 					try {
-						builds.put(build.getId(), build);
+						cacheBuild(build);
 					} finally {
 						buildsLock.writeLock().unlock();
 					}
 				} else if (facade instanceof MembershipFacade) {
 					MembershipFacade membership = (MembershipFacade) facade;
+					MembershipFacade prevMembership;
 					membershipsLock.writeLock().lock();
 					try {
-						memberships.put(membership.getId(), membership);
+						prevMembership = cacheMembership(membership);
+						publishMemberships();
 					} finally {
 						membershipsLock.writeLock().unlock();
 					}
+					if (prevMembership != null) {
+						invalidateUserPrivileges(Sets.newHashSet(membership.getUserId(), prevMembership.getUserId()));
+						invalidateAuthorizedUsers(getAuthorizedProjectIds(Sets.newHashSet(membership.getGroupId(), prevMembership.getGroupId())));
+					} else {
+						invalidateUserPrivileges(Sets.newHashSet(membership.getUserId()));
+						invalidateAuthorizedUsers(getAuthorizedProjectIds(Sets.newHashSet(membership.getGroupId())));
+					}
 				} else if (facade instanceof UserAuthorizationFacade) {
 					UserAuthorizationFacade userAuthorization = (UserAuthorizationFacade) facade;
+					UserAuthorizationFacade prevUserAuthorization;
 					userAuthorizationsLock.writeLock().lock();
 					try {
-						userAuthorizations.put(userAuthorization.getId(), userAuthorization);
+						prevUserAuthorization = cacheUserAuthorization(userAuthorization);
+						publishUserAuthorizations();
 					} finally {
 						userAuthorizationsLock.writeLock().unlock();
 					}
+					if (prevUserAuthorization != null) {
+						invalidateUserPrivileges(Sets.newHashSet(userAuthorization.getUserId(), prevUserAuthorization.getUserId()));
+						invalidateAuthorizedUsers(Sets.newHashSet(userAuthorization.getProjectId(), prevUserAuthorization.getProjectId()));
+					} else {
+						invalidateUserPrivileges(Sets.newHashSet(userAuthorization.getUserId()));
+						invalidateAuthorizedUsers(Sets.newHashSet(userAuthorization.getProjectId()));
+					}
 				} else if (facade instanceof GroupAuthorizationFacade) {
 					GroupAuthorizationFacade groupAuthorization = (GroupAuthorizationFacade) facade;
+					GroupAuthorizationFacade prevGroupAuthorization;
 					groupAuthorizationsLock.writeLock().lock();
 					try {
-						groupAuthorizations.put(groupAuthorization.getId(), groupAuthorization);
+						prevGroupAuthorization = cacheGroupAuthorization(groupAuthorization);
+						publishGroupAuthorizations();
 					} finally {
 						groupAuthorizationsLock.writeLock().unlock();
 					}
+					Collection<Long> userIds = getMemberIds(groupAuthorization.getGroupId());
+					Collection<Long> projectIds = Sets.newHashSet(groupAuthorization.getProjectId());
+					if (prevGroupAuthorization != null) {
+						userIds.addAll(getMemberIds(prevGroupAuthorization.getGroupId()));
+						projectIds.add(prevGroupAuthorization.getProjectId());
+					}
+					invalidateUserPrivileges(userIds);
+					invalidateAuthorizedUsers(projectIds);
 				}
 			}
 			
@@ -280,53 +382,62 @@ public class DefaultCacheManager implements CacheManager {
 					try {
 						projects.remove(id);
 						projectIdsByName.inverse().remove(id);
+						publishProjects();
 					} finally {
 						projectsLock.writeLock().unlock();
 					}
+					Collection<Long> userIds = new HashSet<>();
 					userAuthorizationsLock.writeLock().lock();
 					try {
-						for (Iterator<Map.Entry<Long, UserAuthorizationFacade>> it = userAuthorizations.entrySet().iterator(); it.hasNext();) {
-							if (it.next().getValue().getProjectId().equals(id))
-								it.remove();
+						Collection<Long> userAuthorizationIds = userAuthorizationIdsByProject.get(id);
+						if (userAuthorizationIds != null) {
+							for (Long userAuthorizationId: new ArrayList<>(userAuthorizationIds))
+								userIds.add(uncacheUserAuthorization(userAuthorizationId).getUserId());
 						}
+						publishUserAuthorizations();
 					} finally {
 						userAuthorizationsLock.writeLock().unlock();
 					}
+					Collection<Long> groupIds = new HashSet<>();
 					groupAuthorizationsLock.writeLock().lock();
 					try {
-						for (Iterator<Map.Entry<Long, GroupAuthorizationFacade>> it = groupAuthorizations.entrySet().iterator(); it.hasNext();) {
-							if (it.next().getValue().getProjectId().equals(id))
-								it.remove();
+						Collection<Long> groupAuthorizationIds = groupAuthorizationIdsByProject.get(id);
+						if (groupAuthorizationIds != null) {
+							for (Long groupAuthorizationId: new ArrayList<>(groupAuthorizationIds))
+								groupIds.add(uncacheGroupAuthorization(groupAuthorizationId).getGroupId());
 						}
+						publishGroupAuthorizations();
 					} finally {
 						groupAuthorizationsLock.writeLock().unlock();
 					}
+					for (Long groupId: groupIds)
+						userIds.addAll(getMemberIds(groupId));
+					invalidateUserPrivileges(userIds);
+					invalidateAuthorizedUsers(Sets.newHashSet(id));
 					configurationsLock.writeLock().lock();
 					try {
-						for (Iterator<Map.Entry<Long, ConfigurationFacade>> it = configurations.entrySet().iterator(); it.hasNext();) {
-							ConfigurationFacade configuration = it.next().getValue();
-							if (configuration.getProjectId().equals(id)) {
-								it.remove();
+						Collection<Long> configurationIds = configurationIdsByProject.get(id);
+						if (configurationIds != null) {
+							for (Long configurationId: new ArrayList<>(configurationIds)) {
+								uncacheConfiguration(configurationId);
 								buildsLock.writeLock().lock();
 								try {
-									for (Iterator<Map.Entry<Long, BuildFacade>> it2 = builds.entrySet().iterator(); it2.hasNext();) {
-										if (it2.next().getValue().getConfigurationId().equals(configuration.getId()))
-											it2.remove();
-									}
+									uncacheBuildsOfConfiguration(configurationId);
 								} finally {
 									buildsLock.writeLock().unlock();
 								}
 							}
 						}
+						publishConfigurations();
 					} finally {
 						configurationsLock.writeLock().unlock();
 					}
 					issuesLock.writeLock().lock();
 					try {
-						for (Iterator<Map.Entry<Long, IssueFacade>> it = issues.entrySet().iterator(); it.hasNext();) {
-							IssueFacade issue = it.next().getValue();
-							if (issue.getProjectId().equals(id))
-								it.remove();
+						Collection<Long> issueIds = issueIdsByProject.get(id);
+						if (issueIds != null) {
+							for (Long issueId: new ArrayList<>(issueIds))
+								uncacheIssue(issueId);
 						}
 					} finally {
 						issuesLock.writeLock().unlock();
@@ -337,166 +448,530 @@ public class DefaultCacheManager implements CacheManager {
 						users.remove(id);
 						userIdsByName.inverse().remove(id);
 						userIdsByEmail.inverse().remove(id);
+						publishUsers();
 					} finally {
 						usersLock.writeLock().unlock();
 					}
 					userAuthorizationsLock.writeLock().lock();
 					try {
-						for (Iterator<Map.Entry<Long, UserAuthorizationFacade>> it = userAuthorizations.entrySet().iterator(); it.hasNext();) {
-							if (it.next().getValue().getUserId().equals(id))
-								it.remove();
+						Collection<Long> userAuthorizationIds = userAuthorizationIdsByUser.get(id);
+						if (userAuthorizationIds != null) {
+							for (Long userAuthorizationId: new ArrayList<>(userAuthorizationIds))
+								uncacheUserAuthorization(userAuthorizationId);
 						}
+						publishUserAuthorizations();
 					} finally {
 						userAuthorizationsLock.writeLock().unlock();
 					}
 					membershipsLock.writeLock().lock();
 					try {
-						for (Iterator<Map.Entry<Long, MembershipFacade>> it = memberships.entrySet().iterator(); it.hasNext();) {
-							if (it.next().getValue().getUserId().equals(id))
-								it.remove();
+						Collection<Long> membershipIds = membershipIdsByUser.get(id);
+						if (membershipIds != null) {
+							for (Long membershipId: new ArrayList<>(membershipIds))
+								uncacheMembership(membershipId);
 						}
+						publishMemberships();
 					} finally {
 						membershipsLock.writeLock().unlock();
 					}
+					invalidateUserPrivileges(Sets.newHashSet(id));
+					invalidateAuthorizedUsers(null);
 				} else if (Group.class.isAssignableFrom(clazz)) {
 					groupsLock.writeLock().lock();
 					try {
 						groups.remove(id);
 						groupIdsByName.inverse().remove(id);
+						publishGroups();
 					} finally {
 						groupsLock.writeLock().unlock();
 					}
 					groupAuthorizationsLock.writeLock().lock();
 					try {
-						for (Iterator<Map.Entry<Long, GroupAuthorizationFacade>> it = groupAuthorizations.entrySet().iterator(); it.hasNext();) {
-							if (it.next().getValue().getGroupId().equals(id))
-								it.remove();
+						Collection<Long> groupAuthorizationIds = groupAuthorizationIdsByGroup.get(id);
+						if (groupAuthorizationIds != null) {
+							for (Long groupAuthorizationId: new ArrayList<>(groupAuthorizationIds))
+								uncacheGroupAuthorization(groupAuthorizationId);
 						}
+						publishGroupAuthorizations();
 					} finally {
 						groupAuthorizationsLock.writeLock().unlock();
 					}
+					Collection<Long> userIds = new HashSet<>();
 					membershipsLock.writeLock().lock();
 					try {
-						for (Iterator<Map.Entry<Long, MembershipFacade>> it = memberships.entrySet().iterator(); it.hasNext();) {
-							if (it.next().getValue().getGroupId().equals(id))
-								it.remove();
+						Collection<Long> membershipIds = membershipIdsByGroup.get(id);
+						if (membershipIds != null) {
+							for (Long membershipId: new ArrayList<>(membershipIds))
+								userIds.add(uncacheMembership(membershipId).getUserId());
 						}
+						publishMemberships();
 					} finally {
 						membershipsLock.writeLock().unlock();
 					}
+					invalidateUserPrivileges(userIds);
+					invalidateAuthorizedUsers(null);
 				} else if (Configuration.class.isAssignableFrom(clazz)) {
 					configurationsLock.writeLock().lock();
 					try {
-						configurations.remove(id);
+						uncacheConfiguration(id);
+						publishConfigurations();
 					} finally {
 						configurationsLock.writeLock().unlock();
 					}
 					buildsLock.writeLock().lock();
 					try {
-						for (Iterator<Map.Entry<Long, BuildFacade>> it = builds.entrySet().iterator(); it.hasNext();) {
-							if (it.next().getValue().getConfigurationId().equals(id))
-								it.remove();
-						}
+						uncacheBuildsOfConfiguration(id);
 					} finally {
 						buildsLock.writeLock().unlock();
 					}
 				} else if (Build.class.isAssignableFrom(clazz)) {
 					buildsLock.writeLock().lock();
 					try {
-						builds.remove(id);
+						uncacheBuild(id);
 					} finally {
 						buildsLock.writeLock().unlock();
 					}
 				} else if (Issue.class.isAssignableFrom(clazz)) {
 					issuesLock.writeLock().lock();
 					try {
-						issues.remove(id);
+						uncacheIssue(id);
 					} finally {
 						issuesLock.writeLock().unlock();
 					}
 				} else if (Membership.class.isAssignableFrom(clazz)) {
+					MembershipFacade membership;
 					membershipsLock.writeLock().lock();
 					try {
-						memberships.remove(id);
+						membership = uncacheMembership(id);
+						publishMemberships();
 					} finally {
 						membershipsLock.writeLock().unlock();
 					}
+					if (membership != null) {
+						invalidateUserPrivileges(Sets.newHashSet(membership.getUserId()));
+						invalidateAuthorizedUsers(getAuthorizedProjectIds(Sets.newHashSet(membership.getGroupId())));
+					}
 				} else if (UserAuthorization.class.isAssignableFrom(clazz)) {
+					UserAuthorizationFacade userAuthorization;
 					userAuthorizationsLock.writeLock().lock();
 					try {
-						userAuthorizations.remove(id);
+						userAuthorization = uncacheUserAuthorization(id);
+						publishUserAuthorizations();
 					} finally {
 						userAuthorizationsLock.writeLock().unlock();
 					}
+					if (userAuthorization != null) {
+						invalidateUserPrivileges(Sets.newHashSet(userAuthorization.getUserId()));
+						invalidateAuthorizedUsers(Sets.newHashSet(userAuthorization.getProjectId()));
+					}
 				} else if (GroupAuthorization.class.isAssignableFrom(clazz)) {
+					GroupAuthorizationFacade groupAuthorization;
 					groupAuthorizationsLock.writeLock().lock();
 					try {
-						groupAuthorizations.remove(id);
+						groupAuthorization = uncacheGroupAuthorization(id);
+						publishGroupAuthorizations();
 					} finally {
 						groupAuthorizationsLock.writeLock().unlock();
 					}
+					if (groupAuthorization != null) {
+						invalidateUserPrivileges(getMemberIds(groupAuthorization.getGroupId()));
+						invalidateAuthorizedUsers(Sets.newHashSet(groupAuthorization.getProjectId()));
+					}
 				}
 			}
 		});
 	}
 
-	@Override
-	public Map<Long, ProjectFacade> getProjects() {
-		projectsLock.readLock().lock();
+	private static <K> void addToIndex(Map<K, Collection<Long>> index, K key, Long value) {
+		Collection<Long> values = index.get(key);
+		if (values == null) {
+			values = new HashSet<>();
+			index.put(key, values);
+		}
+		values.add(value);
+	}
+	
+	private static <K> void removeFromIndex(Map<K, Collection<Long>> index, K key, Long value) {
+		Collection<Long> values = index.get(key);
+		if (values != null) {
+			values.remove(value);
+			if (values.isEmpty())
+				index.remove(key);
+		}
+	}
+	
+	private void cacheConfiguration(ConfigurationFacade configuration) {
+		ConfigurationFacade prevConfiguration = configurations.put(configuration.getId(), configuration);
+		if (prevConfiguration != null) 
+			removeFromIndex(configurationIdsByProject, prevConfiguration.getProjectId(), prevConfiguration.getId());
+		addToIndex(configurationIdsByProject, configuration.getProjectId(), configuration.getId());
+	}
+	
+	private void uncacheConfiguration(Long configurationId) {
+		ConfigurationFacade configuration = configurations.remove(configurationId);
+		if (configuration != null)
+			removeFromIndex(configurationIdsByProject, configuration.getProjectId(), configurationId);
+	}
+	
+	private void cacheBuild(BuildFacade build) {
+		BuildFacade prevBuild = builds.put(build.getId(), build);
+		if (prevBuild != null) {
+			removeFromIndex(buildIdsByConfiguration, prevBuild.getConfigurationId(), prevBuild.getId());
+			removeFromIndex(buildIdsByCommit, prevBuild.getCommitHash(), prevBuild.getId());
+		}
+		addToIndex(buildIdsByConfiguration, build.getConfigurationId(), build.getId());
+		addToIndex(buildIdsByCommit, build.getCommitHash(), build.getId());
+	}
+	
+	private void uncacheBuild(Long buildId) {
+		BuildFacade build = builds.remove(buildId);
+		if (build != null) {
+			removeFromIndex(buildIdsByConfiguration, build.getConfigurationId(), buildId);
+			removeFromIndex(buildIdsByCommit, build.getCommitHash(), buildId);
+		}
+	}
+	
+	private void uncacheBuildsOfConfiguration(Long configurationId) {
+		Collection<Long> buildIds = buildIdsByConfiguration.get(configurationId);
+		if (buildIds != null) {
+			for (Long buildId: new ArrayList<>(buildIds))
+				uncacheBuild(buildId);
+		}
+	}
+	
+	private void cacheIssue(IssueFacade issue) {
+		IssueFacade prevIssue = issues.put(issue.getId(), issue);
+		if (prevIssue != null)
+			removeFromIndex(issueIdsByProject, prevIssue.getProjectId(), prevIssue.getId());
+		addToIndex(issueIdsByProject, issue.getProjectId(), issue.getId());
+	}
+	
+	private void uncacheIssue(Long issueId) {
+		IssueFacade issue = issues.remove(issueId);
+		if (issue != null)
+			removeFromIndex(issueIdsByProject, issue.getProjectId(), issueId);
+	}
+	
+	private MembershipFacade cacheMembership(MembershipFacade membership) {
+		MembershipFacade prevMembership = memberships.put(membership.getId(), membership);
+		if (prevMembership != null) {
+			removeFromIndex(membershipIdsByUser, prevMembership.getUserId(), prevMembership.getId());
+			removeFromIndex(membershipIdsByGroup, prevMembership.getGroupId(), prevMembership.getId());
+		}
+		addToIndex(membershipIdsByUser, membership.getUserId(), membership.getId());
+		addToIndex(membershipIdsByGroup, membership.getGroupId(), membership.getId());
+		return prevMembership;
+	}
+	
+	@Nullable
+	private MembershipFacade uncacheMembership(Long membershipId) {
+		MembershipFacade membership = memberships.remove(membershipId);
+		if (membership != null) {
+			removeFromIndex(membershipIdsByUser, membership.getUserId(), membershipId);
+			removeFromIndex(membershipIdsByGroup, membership.getGroupId(), membershipId);
+		}
+		return membership;
+	}
+	
+	private UserAuthorizationFacade cacheUserAuthorization(UserAuthorizationFacade userAuthorization) {
+		UserAuthorizationFacade prevUserAuthorization = userAuthorizations.put(userAuthorization.getId(), userAuthorization);
+		if (prevUserAuthorization != null) {
+			removeFromIndex(userAuthorizationIdsByUser, prevUserAuthorization.getUserId(), prevUserAuthorization.getId());
+			removeFromIndex(userAuthorizationIdsByProject, prevUserAuthorization.getProjectId(), prevUserAuthorization.getId());
+		}
+		addToIndex(userAuthorizationIdsByUser, userAuthorization.getUserId(), userAuthorization.getId());
+		addToIndex(userAuthorizationIdsByProject, userAuthorization.getProjectId(), userAuthorization.getId());
+		return prevUserAuthorization;
+	}
+	
+	@Nullable
+	private UserAuthorizationFacade uncacheUserAuthorization(Long userAuthorizationId) {
+		UserAuthorizationFacade userAuthorization = userAuthorizations.remove(userAuthorizationId);
+		if (userAuthorization != null) {
+			removeFromIndex(userAuthorizationIdsByUser, userAuthorization.getUserId(), userAuthorizationId);
+			removeFromIndex(userAuthorizationIdsByProject, userAuthorization.getProjectId(), userAuthorizationId);
+		}
+		return userAuthorization;
+	}
+	
+	private GroupAuthorizationFacade cacheGroupAuthorization(GroupAuthorizationFacade groupAuthorization) {
+		GroupAuthorizationFacade prevGroupAuthorization = groupAuthorizations.put(groupAuthorization.getId(), groupAuthorization);
+		if (prevGroupAuthorization != null) {
+			removeFromIndex(groupAuthorizationIdsByGroup, prevGroupAuthorization.getGroupId(), prevGroupAuthorization.getId());
+			removeFromIndex(groupAuthorizationIdsByProject, prevGroupAuthorization.getProjectId(), prevGroupAuthorization.getId());
+		}
+		addToIndex(groupAuthorizationIdsByGroup, groupAuthorization.getGroupId(), groupAuthorization.getId());
+		addToIndex(groupAuthorizationIdsByProject, groupAuthorization.getProjectId(), groupAuthorization.getId());
+		return prevGroupAuthorization;
+	}
+	
+	@Nullable
+	private GroupAuthorizationFacade uncacheGroupAuthorization(Long groupAuthorizationId) {
+		GroupAuthorizationFacade groupAuthorization = groupAuthorizations.remove(groupAuthorizationId);
+		if (groupAuthorization != null) {
+			removeFromIndex(groupAuthorizationIdsByGroup, groupAuthorization.getGroupId(), groupAuthorizationId);
+			removeFromIndex(groupAuthorizationIdsByProject, groupAuthorization.getProjectId(), groupAuthorizationId);
+		}
+		return groupAuthorization;
+	}
+	
+	private Collection<Long> getMemberIds(Long groupId) {
+		Collection<Long> memberIds = new HashSet<>();
+		membershipsLock.readLock().lock();
 		try {
-			return new HashMap<>(projects);
+			Collection<Long> membershipIds = membershipIdsByGroup.get(groupId);
+			if (membershipIds != null) {
+				for (Long membershipId: membershipIds)
+					memberIds.add(memberships.get(membershipId).getUserId());
+			}
 		} finally {
-			projectsLock.readLock().unlock();
+			membershipsLock.readLock().unlock();
 		}
+		return memberIds;
 	}
-
-	@Override
-	public Map<Long, UserFacade> getUsers() {
-		usersLock.readLock().lock();
+	
+	private void invalidateUserPrivileges(Collection<Long> userIds) {
+		userPrivilegesStamp.incrementAndGet();
+		for (Long userId: userIds)
+			userPrivileges.remove(userId);
+	}
+	
+	/**
+	 * Get ids of projects the specified groups are authorized on
+	 * 
+	 * @return
+	 * 			ids of authorized projects, or <tt>null</tt> if any of the groups is administrator 
+	 * 			and thus authorized on all projects
+	 */
+	@Nullable
+	private Collection<Long> getAuthorizedProjectIds(Collection<Long> groupIds) {
+		Collection<Long> projectIds = new HashSet<>();
+		for (Long groupId: groupIds) {
+			if (administratorGroupIdsSnapshot.contains(groupId))
+				return null;
+		}
+		groupAuthorizationsLock.readLock().lock();
 		try {
-			return new HashMap<>(users);
+			for (Long groupId: groupIds) {
+				Collection<Long> groupAuthorizationIds = groupAuthorizationIdsByGroup.get(groupId);
+				if (groupAuthorizationIds != null) {
+					for (Long groupAuthorizationId: groupAuthorizationIds)
+						projectIds.add(groupAuthorizations.get(groupAuthorizationId).getProjectId());
+				}
+			}
 		} finally {
-			usersLock.readLock().unlock();
+			groupAuthorizationsLock.readLock().unlock();
 		}
+		return projectIds;
 	}
-
-	public Map<Long, GroupFacade> getGroups() {
-		groupsLock.readLock().lock();
+	
+	/**
+	 * @param projectIds
+	 * 			ids of projects to invalidate authorized users, <tt>null</tt> to invalidate all projects
+	 */
+	private void invalidateAuthorizedUsers(@Nullable Collection<Long> projectIds) {
+		authorizedUserIdsStamp.incrementAndGet();
+		if (projectIds != null) {
+			for (Long projectId: projectIds)
+				authorizedUserIds.remove(projectId);
+		} else {
+			authorizedUserIds.clear();
+		}
+	}
+	
+	private Map<ProjectPrivilege, Collection<Long>> computeAuthorizedUserIds(Long projectId) {
+		Map<ProjectPrivilege, Collection<Long>> userIdsByPrivilege = new EnumMap<>(ProjectPrivilege.class);
+		for (ProjectPrivilege privilege: ProjectPrivilege.values()) {
+			Collection<Long> userIds = new HashSet<>();
+			userIds.add(User.ROOT_ID);
+			userIdsByPrivilege.put(privilege, userIds);
+		}
+		
+		Map<ProjectPrivilege, Collection<Long>> groupIdsByPrivilege = new EnumMap<>(ProjectPrivilege.class);
+		for (ProjectPrivilege privilege: ProjectPrivilege.values())
+			groupIdsByPrivilege.put(privilege, new HashSet<>(administratorGroupIdsSnapshot));
+		groupAuthorizationsLock.readLock().lock();
 		try {
-			return new HashMap<>(groups);
+			Collection<Long> groupAuthorizationIds = groupAuthorizationIdsByProject.get(projectId);
+			if (groupAuthorizationIds != null) {
+				for (Long groupAuthorizationId: groupAuthorizationIds) {
+					GroupAuthorizationFacade groupAuthorization = groupAuthorizations.get(groupAuthorizationId);
+					for (ProjectPrivilege privilege: ProjectPrivilege.values()) {
+						if (groupAuthorization.getPrivilege().implies(privilege))
+							groupIdsByPrivilege.get(privilege).add(groupAuthorization.getGroupId());
+					}
+				}
+			}
 		} finally {
-			groupsLock.readLock().unlock();
+			groupAuthorizationsLock.readLock().unlock();
 		}
+		
+		membershipsLock.readLock().lock();
+		try {
+			for (ProjectPrivilege privilege: ProjectPrivilege.values()) {
+				for (Long groupId: groupIdsByPrivilege.get(privilege)) {
+					Collection<Long> membershipIds = membershipIdsByGroup.get(groupId);
+					if (membershipIds != null) {
+						for (Long membershipId: membershipIds)
+							userIdsByPrivilege.get(privilege).add(memberships.get(membershipId).getUserId());
+					}
+				}
+			}
+		} finally {
+			membershipsLock.readLock().unlock();
+		}
+		
+		userAuthorizationsLock.readLock().lock();
+		try {
+			Collection<Long> userAuthorizationIds = userAuthorizationIdsByProject.get(projectId);
+			if (userAuthorizationIds != null) {
+				for (Long userAuthorizationId: userAuthorizationIds) {
+					UserAuthorizationFacade userAuthorization = userAuthorizations.get(userAuthorizationId);
+					for (ProjectPrivilege privilege: ProjectPrivilege.values()) {
+						if (userAuthorization.getPrivilege().implies(privilege))
+							userIdsByPrivilege.get(privilege).add(userAuthorization.getUserId());
+					}
+				}
+			}
+		} finally {
+			userAuthorizationsLock.readLock().unlock();
+		}
+		
+		for (Map.Entry<ProjectPrivilege, Collection<Long>> entry: userIdsByPrivilege.entrySet())
+			entry.setValue(ImmutableSet.copyOf(entry.getValue()));
+		return userIdsByPrivilege;
 	}
 	
-	@Override
-	public Map<Long, MembershipFacade> getMemberships() {
+	private static void mergePrivilege(Map<Long, ProjectPrivilege> projectPrivileges, 
+			Long projectId, ProjectPrivilege privilege) {
+		ProjectPrivilege prevPrivilege = projectPrivileges.get(projectId);
+		if (prevPrivilege == null || privilege.implies(prevPrivilege))
+			projectPrivileges.put(projectId, privilege);
+	}
+	
+	private UserPrivileges computeUserPrivileges(Long userId) {
+		Collection<Long> groupIds = new HashSet<>();
 		membershipsLock.readLock().lock();
 		try {
-			return new HashMap<>(memberships);
+			Collection<Long> membershipIds = membershipIdsByUser.get(userId);
+			if (membershipIds != null) {
+				for (Long membershipId: membershipIds)
+					groupIds.add(memberships.get(membershipId).getGroupId());
+			}
 		} finally {
 			membershipsLock.readLock().unlock();
 		}
+		
+		boolean administrator = false;
+		boolean canCreateProjects = false;
+		for (Long groupId: groupIds) {
+			GroupFacade group = groupsSnapshot.get(groupId);
+			if (group != null) {
+				administrator = administrator || group.isAdministrator();
+				canCreateProjects = canCreateProjects || group.isCanCreateProjects();
+			}
+		}
+		
+		Map<Long, ProjectPrivilege> projectPrivileges = new HashMap<>();
+		groupAuthorizationsLock.readLock().lock();
+		try {
+			for (Long groupId: groupIds) {
+				Collection<Long> groupAuthorizationIds = groupAuthorizationIdsByGroup.get(groupId);
+				if (groupAuthorizationIds != null) {
+					for (Long groupAuthorizationId: groupAuthorizationIds) {
+						GroupAuthorizationFacade groupAuthorization = groupAuthorizations.get(groupAuthorizationId);
+						mergePrivilege(projectPrivileges, groupAuthorization.getProjectId(), groupAuthorization.getPrivilege());
+					}
+				}
+			}
+		} finally {
+			groupAuthorizationsLock.readLock().unlock();
+		}
+		
+		userAuthorizationsLock.readLock().lock();
+		try {
+			Collection<Long> userAuthorizationIds = userAuthorizationIdsByUser.get(userId);
+			if (userAuthorizationIds != null) {
+				for (Long userAuthorizationId: userAuthorizationIds) {
+					UserAuthorizationFacade userAuthorization = userAuthorizations.get(userAuthorizationId);
+					mergePrivilege(projectPrivileges, userAuthorization.getProjectId(), userAuthorization.getPrivilege());
+				}
+			}
+		} finally {
+			userAuthorizationsLock.readLock().unlock();
+		}
+		
+		return new UserPrivileges(administrator, canCreateProjects, projectPrivileges);
+	}
+	
+	private void publishProjects() {
+		projectsSnapshot = ImmutableMap.copyOf(projects);
+		projectIdsSnapshot = ImmutableMap.copyOf(projectIdsByName);
+		ImmutableMap.Builder<Long, ProjectPrivilege> defaultPrivilegesBuilder = ImmutableMap.builder();
+		for (ProjectFacade project: projects.values()) {
+			if (project.getDefaultPrivilege() != null)
+				defaultPrivilegesBuilder.put(project.getId(), project.getDefaultPrivilege().getProjectPrivilege());
+		}
+		defaultPrivilegesSnapshot = defaultPrivilegesBuilder.build();
+	}
+	
+	private void publishUsers() {
+		usersSnapshot = ImmutableMap.copyOf(users);
+	}
+	
+	private void publishGroups() {
+		groupsSnapshot = ImmutableMap.copyOf(groups);
+		ImmutableSet.Builder<Long> administratorGroupIdsBuilder = ImmutableSet.builder();
+		for (GroupFacade group: groups.values()) {
+			if (group.isAdministrator())
+				administratorGroupIdsBuilder.add(group.getId());
+		}
+		administratorGroupIdsSnapshot = administratorGroupIdsBuilder.build();
+	}
+	
+	private void publishMemberships() {
+		membershipsSnapshot = ImmutableMap.copyOf(memberships);
+	}
+	
+	private void publishConfigurations() {
+		configurationsSnapshot = ImmutableMap.copyOf(configurations);
+	}
+	
+	private void publishUserAuthorizations() {
+		userAuthorizationsSnapshot = ImmutableMap.copyOf(userAuthorizations);
+	}
+	
+	private void publishGroupAuthorizations() {
+		groupAuthorizationsSnapshot = ImmutableMap.copyOf(groupAuthorizations);
+	}
+	
+	@Override
+	public Map<Long, ProjectFacade> getProjects() {
+		return projectsSnapshot;
+	}
+
+	@Override
+	public Map<Long, UserFacade> getUsers() {
+		return usersSnapshot;
+	}
+
+	public Map<Long, GroupFacade> getGroups() {
+		return groupsSnapshot;
+	}
+	
+	@Override
+	public Map<Long, MembershipFacade> getMemberships() {
+		return membershipsSnapshot;
 	}
 
 	@Override
 	public ProjectFacade getProject(Long id) {
-		projectsLock.readLock().lock();
-		try {
-			return projects.get(id);
-		} finally {
-			projectsLock.readLock().unlock();
-		}
+		return projectsSnapshot.get(id);
 	}
 
 	@Override
 	public UserFacade getUser(Long id) {
-		usersLock.readLock().lock();
-		try {
-			return users.get(id);
-		} finally {
-			usersLock.readLock().unlock();
-		}
+		return usersSnapshot.get(id);
 	}
 	
 	@Override
@@ -521,22 +996,12 @@ public class DefaultCacheManager implements CacheManager {
 	
 	@Override
 	public Long getProjectIdByName(String name) {
-		projectsLock.readLock().lock();
-		try {
-			return projectIdsByName.get(name);
-		} finally {
-			projectsLock.readLock().unlock();
-		}
+		return projectIdsSnapshot.get(name);
 	}
 	
 	@Override
 	public Map<String, Long> getProjectIds() {
-		projectsLock.readLock().lock();
-		try {
-			return new HashMap<>(projectIdsByName);
-		} finally {
-			projectsLock.readLock().unlock();
-		}
+		return projectIdsSnapshot;
 	}
 	
 	@Override
@@ -551,22 +1016,12 @@ public class DefaultCacheManager implements CacheManager {
 	
 	@Override
 	public GroupFacade getGroup(Long id) {
-		groupsLock.readLock().lock();
-		try {
-			return groups.get(id);
-		} finally {
-			groupsLock.readLock().unlock();
-		}
+		return groupsSnapshot.get(id);
 	}
 
 	@Override
 	public MembershipFacade getMembership(Long id) {
-		membershipsLock.readLock().lock();
-		try {
-			return memberships.get(id);
-		} finally {
-			membershipsLock.readLock().unlock();
-		}
+		return membershipsSnapshot.get(id);
 	}
 
 	@Override
@@ -574,9 +1029,10 @@ public class DefaultCacheManager implements CacheManager {
 		issuesLock.readLock().lock();
 		try {
 			Collection<Long> issueNumbers = new HashSet<>();
-			for (IssueFacade issue: issues.values()) {
-				if (projectId.equals(issue.getProjectId()))
-					issueNumbers.add(issue.getNumber());
+			Collection<Long> issueIds = issueIdsByProject.get(projectId);
+			if (issueIds != null) {
+				for (Long issueId: issueIds)
+					issueNumbers.add(issues.get(issueId).getNumber());
 			}
 			return issueNumbers;
 		} finally {
@@ -590,10 +1046,13 @@ public class DefaultCacheManager implements CacheManager {
 		configurationsLock.readLock().lock();
 		try {
 			Collection<Long> buildIds = new HashSet<>();
-			for (BuildFacade build: builds.values()) {
-				ConfigurationFacade configuration = configurations.get(build.getConfigurationId());
-				if (configuration != null && configuration.getProjectId().equals(projectId))
-					buildIds.add(build.getId());
+			Collection<Long> configurationIds = configurationIdsByProject.get(projectId);
+			if (configurationIds != null) {
+				for (Long configurationId: configurationIds) {
+					Collection<Long> buildIdsOfConfiguration = buildIdsByConfiguration.get(configurationId);
+					if (buildIdsOfConfiguration != null)
+						buildIds.addAll(buildIdsOfConfiguration);
+				}
 			}
 			return buildIds;
 		} finally {
@@ -606,12 +1065,11 @@ public class DefaultCacheManager implements CacheManager {
 	public Collection<Long> getBuildIdsByConfiguration(Long configurationId) {
 		buildsLock.readLock().lock();
 		try {
-			Collection<Long> buildIds = new HashSet<>();
-			for (BuildFacade build: builds.values()) {
-				if (build.getConfigurationId().equals(configurationId))
-					buildIds.add(build.getId());
-			}
-			return buildIds;
+			Collection<Long> buildIds = buildIdsByConfiguration.get(configurationId);
+			if (buildIds != null)
+				return new HashSet<>(buildIds);
+			else
+				return new HashSet<>();
 		} finally {
 			buildsLock.readLock().unlock();
 		}
@@ -623,11 +1081,14 @@ public class DefaultCacheManager implements CacheManager {
 		configurationsLock.readLock().lock();
 		try {
 			Collection<Long> buildIds = new HashSet<>();
-			for (BuildFacade build: builds.values()) {
-				ConfigurationFacade configuration = configurations.get(build.getConfigurationId());
-				if (configuration != null && configuration.getProjectId().equals(projectId) 
-						&& commitHashes.contains(build.getCommitHash())) {
-					buildIds.add(build.getId());
+			for (String commitHash: commitHashes) {
+				Collection<Long> buildIdsOfCommit = buildIdsByCommit.get(commitHash);
+				if (buildIdsOfCommit != null) {
+					for (Long buildId: buildIdsOfCommit) {
+						ConfigurationFacade configuration = configurations.get(builds.get(buildId).getConfigurationId());
+						if (configuration != null && configuration.getProjectId().equals(projectId)) 
+							buildIds.add(buildId);
+					}
 				}
 			}
 			return buildIds;
@@ -639,52 +1100,62 @@ public class DefaultCacheManager implements CacheManager {
 
 	@Override
 	public Map<Long, ConfigurationFacade> getConfigurations() {
-		configurationsLock.readLock().lock();
-		try {
-			return new HashMap<>(configurations);
-		} finally {
-			configurationsLock.readLock().unlock();
-		}
+		return configurationsSnapshot;
 	}
 
 	@Override
 	public Map<Long, UserAuthorizationFacade> getUserAuthorizations() {
-		userAuthorizationsLock.readLock().lock();
-		try {
-			return new HashMap<>(userAuthorizations);
-		} finally {
-			userAuthorizationsLock.readLock().unlock();
-		}
+		return userAuthorizationsSnapshot;
 	}
 
 	@Override
 	public Map<Long, GroupAuthorizationFacade> getGroupAuthorizations() {
-		groupAuthorizationsLock.readLock().lock();
-		try {
-			return new HashMap<>(groupAuthorizations);
-		} finally {
-			groupAuthorizationsLock.readLock().unlock();
-		}
+		return groupAuthorizationsSnapshot;
 	}
 	
 	@Override
 	public UserAuthorizationFacade getUserAuthorization(Long id) {
-		userAuthorizationsLock.readLock().lock();
-		try {
-			return userAuthorizations.get(id);
-		} finally {
-			userAuthorizationsLock.readLock().unlock();
-		}
+		return userAuthorizationsSnapshot.get(id);
 	}
 
 	@Override
 	public GroupAuthorizationFacade getGroupAuthorization(Long id) {
-		groupAuthorizationsLock.readLock().lock();
-		try {
-			return groupAuthorizations.get(id);
-		} finally {
-			groupAuthorizationsLock.readLock().unlock();
+		return groupAuthorizationsSnapshot.get(id);
+	}
+
+	@Override
+	public Map<Long, ProjectPrivilege> getDefaultPrivileges() {
+		return defaultPrivilegesSnapshot;
+	}
+
+	@Override
+	public UserPrivileges getUserPrivileges(Long userId) {
+		UserPrivileges privileges = userPrivileges.get(userId);
+		if (privileges == null) {
+			long stamp = userPrivilegesStamp.get();
+			privileges = computeUserPrivileges(userId);
+			userPrivileges.put(userId, privileges);
+			if (userPrivilegesStamp.get() != stamp)
+				userPrivileges.remove(userId, privileges);
 		}
+		return privileges;
 	}
 
+	@Override
+	public Collection<Long> getAuthorizedUserIds(Long projectId, ProjectPrivilege privilege) {
+		ProjectPrivilege defaultPrivilege = defaultPrivilegesSnapshot.get(projectId);
+		if (defaultPrivilege != null && defaultPrivilege.implies(privilege))
+			return null;
+		
+		Map<ProjectPrivilege, Collection<Long>> userIdsByPrivilege = authorizedUserIds.get(projectId);
+		if (userIdsByPrivilege == null) {
+			long stamp = authorizedUserIdsStamp.get();
+			userIdsByPrivilege = computeAuthorizedUserIds(projectId);
+			authorizedUserIds.put(projectId, userIdsByPrivilege);
+			if (authorizedUserIdsStamp.get() != stamp)
+				authorizedUserIds.remove(projectId, userIdsByPrivilege);
+		}
+		return userIdsByPrivilege.get(privilege);
+	}
+	
 }
@@ -15,11 +15,12 @@ import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
-import java.util.Stack;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.Lock;
 
 import javax.inject.Inject;
 import javax.inject.Singleton;
@@ -38,11 +39,15 @@ import org.slf4j.LoggerFactory;
 
 import com.google.common.base.Charsets;
 import com.google.common.base.Splitter;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.Weigher;
 
 import io.onedev.commons.launcher.loader.Listen;
 import io.onedev.commons.launcher.loader.ListenerRegistry;
 import io.onedev.commons.utils.ExceptionUtils;
 import io.onedev.commons.utils.FileUtils;
+import io.onedev.commons.utils.LockUtils;
 import io.onedev.commons.utils.PathUtils;
 import io.onedev.commons.utils.StringUtils;
 import io.onedev.commons.utils.concurrent.Prioritized;
@@ -77,6 +82,7 @@ import jetbrains.exodus.ByteIterable;
 import jetbrains.exodus.backup.BackupStrategy;
 import jetbrains.exodus.backup.BackupStrategy.FileDescriptor;
 import jetbrains.exodus.backup.VirtualFileDescriptor;
+import jetbrains.exodus.env.Cursor;
 import jetbrains.exodus.env.Environment;
 import jetbrains.exodus.env.Store;
 import jetbrains.exodus.env.Transaction;
@@ -88,7 +94,7 @@ public class DefaultCommitInfoManager extends AbstractEnvironmentManager impleme
 
 	private static final Logger logger = LoggerFactory.getLogger(DefaultCommitInfoManager.class);
 	
-	private static final int INFO_VERSION = 7;
+	private static final int INFO_VERSION = 9;
 	
 	private static final long LOG_FILE_SIZE = 256*1024;
 	
@@ -100,6 +106,12 @@ public class DefaultCommitInfoManager extends AbstractEnvironmentManager impleme
 	
 	private static final String INFO_DIR = "commit";
 	
+	private static final String COMMIT_GRAPH_FILE = "commit-graph";
+	
+	private static final int MAX_COMMIT_GRAPHS_WEIGHT = 256*1024*1024;
+	
+	private static final int COMMIT_GRAPH_EXPIRE_MINUTES = 60;
+	
 	private static final String DEFAULT_STORE = "default";
 	
 	private static final String COMMITS_STORE = "commits";
@@ -120,6 +132,12 @@ public class DefaultCommitInfoManager extends AbstractEnvironmentManager impleme
 	
 	private static final String DAILY_CONTRIBUTIONS_STORE = "dailyContributions";
 	
+	private static final String USERS_STORE = "users";
+	
+	private static final String FILES_STORE = "files";
+	
+	private static final String FILES_BY_TIME_STORE = "filesByTime";
+	
 	private static final ByteIterable NEXT_PATH_INDEX_KEY = new StringByteIterable("nextPathIndex");
 	
 	private static final ByteIterable NEXT_USER_INDEX_KEY = new StringByteIterable("nextUserIndex");
@@ -130,9 +148,9 @@ public class DefaultCommitInfoManager extends AbstractEnvironmentManager impleme
 	
 	private static final ByteIterable LINE_STATS_KEY = new StringByteIterable("lineStats");
 	
-	private static final ByteIterable USERS_KEY = new StringByteIterable("users");
+	private static final ByteIterable FILE_COUNT_KEY = new StringByteIterable("fileCount");
 	
-	private static final ByteIterable FILES_KEY = new StringByteIterable("files");
+	private static final ByteIterable EMPTY_VALUE = new ArrayByteIterable(new byte[0]);
 	
 	private static final ByteIterable OVERALL_CONTRIBUTIONS_KEY = new StringByteIterable("overallContributions");
 	
@@ -292,6 +310,20 @@ public class DefaultCommitInfoManager extends AbstractEnvironmentManager impleme
 	
 	private final Map<Long, List<NameAndEmail>> usersCache = new ConcurrentHashMap<>();
 	
+	// weighed by memory of graphs, and reweighed when graphs are updated
+	private final Cache<Long, CommitGraph> commitGraphs = CacheBuilder.newBuilder()
+			.maximumWeight(MAX_COMMIT_GRAPHS_WEIGHT)
+			.weigher(new Weigher<Long, CommitGraph>() {
+
+				@Override
+				public int weigh(Long key, CommitGraph value) {
+					return value.getWeight();
+				}
+				
+			})
+			.expireAfterAccess(COMMIT_GRAPH_EXPIRE_MINUTES, TimeUnit.MINUTES)
+			.build();
+	
 	@Inject
 	public DefaultCommitInfoManager(ProjectManager projectManager, StorageManager storageManager, 
 			BatchWorkManager batchWorkManager, SessionManager sessionManager, ExecutorService executorService, 
@@ -325,11 +357,16 @@ public class DefaultCommitInfoManager extends AbstractEnvironmentManager impleme
 		Store indexToUserStore = getStore(env, INDEX_TO_USER_STORE);
 		Store dailyContributionsStore = getStore(env, DAILY_CONTRIBUTIONS_STORE);	
 		Store fixCommitsStore = getStore(env, FIX_COMMITS_STORE);
+		Store usersStore = getStore(env, USERS_STORE);
+		Store filesStore = getStore(env, FILES_STORE);
+		Store filesByTimeStore = getStore(env, FILES_BY_TIME_STORE);
 		
 		Repository repository = project.getRepository();
 
 		Collection<Long> fixedIssueNumbers = new HashSet<>();
 		
+		List<RevCommit> collectedCommits = new ArrayList<>();
+		
 		env.executeInTransaction(new TransactionalExecutable() {
 			
 			@Override
@@ -368,6 +405,7 @@ public class DefaultCommitInfoManager extends AbstractEnvironmentManager impleme
 								commitsStore.put(txn, nextCommitKey, new ArrayByteIterable(newNextCommitBytes));
 								
 								commitCount++;
+								collectedCommits.add(nextCommit);
 								
 								for (RevCommit parentCommit: nextCommit.getParents()) {
 									ByteIterable parentCommitKey = new CommitByteIterable(parentCommit);
@@ -418,6 +456,9 @@ public class DefaultCommitInfoManager extends AbstractEnvironmentManager impleme
 			
 		});			
 		
+		if (!collectedCommits.isEmpty())
+			updateCommitGraph(project.getId(), collectedCommits);
+		
 		for (Long issueNumber: fixedIssueNumbers) {
 			Issue issue = issueManager.find(project, issueNumber);
 			if (issue != null)
@@ -500,19 +541,12 @@ public class DefaultCommitInfoManager extends AbstractEnvironmentManager impleme
 							
 							Map<Long, Integer> editsCache = new HashMap<>();
 							
-							Set<NameAndEmail> users;
-							byte[] userBytes = readBytes(defaultStore, txn, USERS_KEY);
-							if (userBytes != null)
-								users = (Set<NameAndEmail>) SerializationUtils.deserialize(userBytes);
-							else
-								users = new HashSet<>();
-
-							Map<String, Long> files;
-							byte[] fileBytes = readBytes(defaultStore, txn, FILES_KEY);
-							if (fileBytes != null)
-								files = (Map<String, Long>) SerializationUtils.deserialize(fileBytes);
-							else
-								files = new HashMap<>();
+							/*
+							 * Users and files are stored as individual keys, so only record those 
+							 * encountered in this batch and write them incrementally at end of the batch 
+							 */
+							Set<NameAndEmail> users = new HashSet<>();
+							Map<String, Long> files = new HashMap<>();
 							
 							Map<Integer, Map<String, Integer>> lineStats;
 							byte[] bytesOfLineStats = readBytes(defaultStore, txn, LINE_STATS_KEY);
@@ -739,19 +773,42 @@ public class DefaultCommitInfoManager extends AbstractEnvironmentManager impleme
 							writeInt(defaultStore, txn, NEXT_USER_INDEX_KEY, nextIndex.user);
 							writeInt(defaultStore, txn, NEXT_PATH_INDEX_KEY, nextIndex.path);
 							
-							userBytes = SerializationUtils.serialize((Serializable) users);
-							defaultStore.put(txn, USERS_KEY, new ArrayByteIterable(userBytes));
-							usersCache.remove(project.getId());
+							boolean usersChanged = false;
+							for (NameAndEmail user: users) {
+								ByteIterable userKey = new StringByteIterable(getUserKey(user));
+								if (usersStore.get(txn, userKey) == null) {
+									usersStore.put(txn, userKey, EMPTY_VALUE);
+									usersChanged = true;
+								}
+							}
+							if (usersChanged)
+								usersCache.remove(project.getId());
 							
-							if (files.size() > MAX_COLLECTING_FILES) {
-								List<String> fileList = new ArrayList<>(files.keySet());
-								fileList.sort((file1, file2)->files.get(file1).compareTo(files.get(file2)));
-								for (int i=0; i<fileList.size() - MAX_COLLECTING_FILES; i++)
-									files.remove(fileList.get(i));
+							if (!files.isEmpty()) {
+								int fileCount = readInt(defaultStore, txn, FILE_COUNT_KEY, 0);
+								for (Map.Entry<String, Long> entry: files.entrySet()) {
+									String file = entry.getKey();
+									long time = entry.getValue();
+									ByteIterable fileKey = new StringByteIterable(file);
+									ByteIterable timeValue = filesStore.get(txn, fileKey);
+									if (timeValue == null) {
+										fileCount++;
+									} else {
+										long oldTime = readLong(timeValue);
+										if (oldTime == time)
+											continue;
+										filesByTimeStore.delete(txn, getFileByTimeKey(oldTime, file));
+									}
+									filesStore.put(txn, fileKey, new LongByteIterable(time));
+									filesByTimeStore.put(txn, getFileByTimeKey(time, file), EMPTY_VALUE);
+								}
+								if (fileCount > MAX_COLLECTING_FILES) {
+									fileCount -= removeOldestFiles(filesStore, filesByTimeStore, txn, 
+											fileCount - MAX_COLLECTING_FILES);
+								}
+								writeInt(defaultStore, txn, FILE_COUNT_KEY, fileCount);
+								filesCache.remove(project.getId());
 							}
-							fileBytes = SerializationUtils.serialize((Serializable) files);
-							defaultStore.put(txn, FILES_KEY, new ArrayByteIterable(fileBytes));
-							filesCache.remove(project.getId());
 							
 							for (Map.Entry<Long, Integer> entry: editsCache.entrySet()) 
 								writeInt(editsStore, txn, new LongByteIterable(entry.getKey()), entry.getValue());
@@ -777,6 +834,57 @@ public class DefaultCommitInfoManager extends AbstractEnvironmentManager impleme
 		contributions.put(key, contribution);
 	}
 	
+	private String getUserKey(NameAndEmail user) {
+		// '<' is not allowed in name of git identity 
+		return user.getName() + "<" + user.getEmailAddress();
+	}
+	
+	private NameAndEmail getUser(String userKey) {
+		return new NameAndEmail(StringUtils.substringBefore(userKey, "<"), StringUtils.substringAfter(userKey, "<"));
+	}
+	
+	private String getString(ByteIterable bytes) {
+		return new String(bytes.getBytesUnsafe(), 0, bytes.getLength(), Charsets.UTF_8);
+	}
+	
+	private long readLong(ByteIterable bytes) {
+		return ByteBuffer.wrap(bytes.getBytesUnsafe(), 0, bytes.getLength()).getLong();
+	}
+	
+	/*
+	 * Key of files by time store is commit time followed by file path. Sign bit of time is 
+	 * flipped so that keys compared as unsigned bytes are ordered by time 
+	 */
+	private ByteIterable getFileByTimeKey(long time, String file) {
+		byte[] fileBytes = file.getBytes(Charsets.UTF_8);
+		ByteBuffer buffer = ByteBuffer.allocate(Long.BYTES + fileBytes.length);
+		buffer.putLong(time ^ Long.MIN_VALUE);
+		buffer.put(fileBytes);
+		return new ArrayByteIterable(buffer.array());
+	}
+	
+	/*
+	 * Remove files with oldest commit time by walking from head of files by time store, so 
+	 * that only removed entries are touched 
+	 */
+	private int removeOldestFiles(Store filesStore, Store filesByTimeStore, Transaction txn, int count) {
+		int removed = 0;
+		Cursor cursor = filesByTimeStore.openCursor(txn);
+		try {
+			while (removed < count && cursor.getNext()) {
+				ByteIterable key = cursor.getKey();
+				String file = new String(key.getBytesUnsafe(), Long.BYTES, key.getLength()-Long.BYTES, 
+						Charsets.UTF_8);
+				filesStore.delete(txn, new StringByteIterable(file));
+				cursor.deleteCurrent();
+				removed++;
+			}
+		} finally {
+			cursor.close();
+		}
+		return removed;
+	}
+	
 	private int getPathIndex(Store pathToIndexStore, Store indexToPathStore, Transaction txn, 
 			NextIndex nextIndex, String path) {
 		StringByteIterable pathKey = new StringByteIterable(path);
@@ -805,22 +913,22 @@ public class DefaultCommitInfoManager extends AbstractEnvironmentManager impleme
 		List<NameAndEmail> users = usersCache.get(project.getId());
 		if (users == null) {
 			Environment env = getEnv(project.getId().toString());
-			Store store = getStore(env, DEFAULT_STORE);
+			Store store = getStore(env, USERS_STORE);
 
 			users = env.computeInReadonlyTransaction(new TransactionalComputable<List<NameAndEmail>>() {
 
-				@SuppressWarnings("unchecked")
 				@Override
 				public List<NameAndEmail> compute(Transaction txn) {
-					byte[] bytes = readBytes(store, txn, USERS_KEY);
-					if (bytes != null) { 
-						List<NameAndEmail> users = 
-								new ArrayList<>((Set<NameAndEmail>) SerializationUtils.deserialize(bytes));
-						Collections.sort(users);
-						return users;
-					} else { 
-						return new ArrayList<>();
+					List<NameAndEmail> users = new ArrayList<>();
+					Cursor cursor = store.openCursor(txn);
+					try {
+						while (cursor.getNext())
+							users.add(getUser(getString(cursor.getKey())));
+					} finally {
+						cursor.close();
 					}
+					Collections.sort(users);
+					return users;
 				}
 				
 			});
@@ -834,34 +942,34 @@ public class DefaultCommitInfoManager extends AbstractEnvironmentManager impleme
 		List<String> files = filesCache.get(project.getId());
 		if (files == null) {
 			Environment env = getEnv(project.getId().toString());
-			final Store store = getStore(env, DEFAULT_STORE);
+			final Store store = getStore(env, FILES_STORE);
 
 			files = env.computeInReadonlyTransaction(new TransactionalComputable<List<String>>() {
 
-				@SuppressWarnings("unchecked")
 				@Override
 				public List<String> compute(Transaction txn) {
-					byte[] bytes = readBytes(store, txn, FILES_KEY);
-					if (bytes != null) {
-						List<String> files = new ArrayList<>(
-								((Map<String, Long>)SerializationUtils.deserialize(bytes)).keySet());
-						Map<String, List<String>> segmentsMap = new HashMap<>();
-						Splitter splitter = Splitter.on("/");
-						for (String file: files) {
-							segmentsMap.put(file, splitter.splitToList(file));
-						}
-						files.sort(new Comparator<String>() {
-
-							@Override
-							public int compare(String o1, String o2) {
-								return PathUtils.compare(segmentsMap.get(o1), segmentsMap.get(o2));
-							}
-							
-						});
-						return files;
-					} else {
-						return new ArrayList<>();
+					List<String> files = new ArrayList<>();
+					Cursor cursor = store.openCursor(txn);
+					try {
+						while (cursor.getNext())
+							files.add(getString(cursor.getKey()));
+					} finally {
+						cursor.close();
 					}
+					Map<String, List<String>> segmentsMap = new HashMap<>();
+					Splitter splitter = Splitter.on("/");
+					for (String file: files) {
+						segmentsMap.put(file, splitter.splitToList(file));
+					}
+					files.sort(new Comparator<String>() {
+
+						@Override
+						public int compare(String o1, String o2) {
+							return PathUtils.compare(segmentsMap.get(o1), segmentsMap.get(o2));
+						}
+						
+					});
+					return files;
 				}
 			});
 			filesCache.put(project.getId(), files);
@@ -922,48 +1030,121 @@ public class DefaultCommitInfoManager extends AbstractEnvironmentManager impleme
 	
 	@Override
 	public Collection<ObjectId> getDescendants(Project project, Collection<ObjectId> ancestors) {
-		Environment env = getEnv(project.getId().toString());
-		final Store store = getStore(env, COMMITS_STORE);
-
-		return env.computeInReadonlyTransaction(new TransactionalComputable<Set<ObjectId>>() {
+		return getCommitGraph(project.getId()).getDescendants(ancestors);
+	}
+	
+	@Override
+	public Boolean isAncestor(Project project, ObjectId ancestor, ObjectId descendant) {
+		return getCommitGraph(project.getId()).isAncestor(ancestor, descendant);
+	}
+	
+	@Override
+	public ObjectId getMergeBase(Project project, ObjectId commit1, ObjectId commit2) {
+		return getCommitGraph(project.getId()).getMergeBase(commit1, commit2);
+	}
+	
+	private File getCommitGraphFile(Long projectId) {
+		return new File(storageManager.getProjectInfoDir(projectId), COMMIT_GRAPH_FILE);
+	}
+	
+	private String getCommitGraphLockKey(Long projectId) {
+		return "commit-graph:" + projectId;
+	}
+	
+	private CommitGraph getCommitGraph(Long projectId) {
+		CommitGraph commitGraph = commitGraphs.getIfPresent(projectId);
+		if (commitGraph == null) {
+			Lock lock = LockUtils.getLock(getCommitGraphLockKey(projectId));
+			lock.lock();
+			try {
+				commitGraph = commitGraphs.getIfPresent(projectId);
+				if (commitGraph == null) {
+					commitGraph = loadCommitGraph(projectId);
+					commitGraphs.put(projectId, commitGraph);
+				}
+			} finally {
+				lock.unlock();
+			}
+		}
+		return commitGraph;
+	}
+	
+	/*
+	 * Load commit graph from graph file, or rebuild it from commits store if graph file 
+	 * does not exist or is out of sync with the store
+	 */
+	private CommitGraph loadCommitGraph(Long projectId) {
+		Environment env = getEnv(projectId.toString());
+		Store defaultStore = getStore(env, DEFAULT_STORE);
+		Store commitsStore = getStore(env, COMMITS_STORE);
+		File file = getCommitGraphFile(projectId);
+		
+		return env.computeInReadonlyTransaction(new TransactionalComputable<CommitGraph>() {
 
 			@Override
-			public Set<ObjectId> compute(Transaction txn) {
-				Set<ObjectId> descendants = new HashSet<>();
-				
-				// Use stack instead of recursion to avoid StackOverflowException
-				Stack<ObjectId> stack = new Stack<>();
-				descendants.addAll(ancestors);
-				stack.addAll(ancestors);
-				while (!stack.isEmpty()) {
-					ObjectId current = stack.pop();
-					byte[] valueBytes = readBytes(store, txn, new CommitByteIterable(current));
-					if (valueBytes != null) {
-						if (valueBytes.length % 20 == 0) {
-							for (int i=0; i<valueBytes.length/20; i++) {
-								ObjectId child = ObjectId.fromRaw(valueBytes, i*20);
-								if (!descendants.contains(child)) {
-									descendants.add(child);
-									stack.push(child);
-								}
-							}
-						} else { 
-							for (int i=0; i<(valueBytes.length-1)/20; i++) {
-								ObjectId child = ObjectId.fromRaw(valueBytes, i*20+1);
-								if (!descendants.contains(child)) {
-									descendants.add(child);
-									stack.push(child);
-								}
+			public CommitGraph compute(Transaction txn) {
+				try {
+					int commitCount = readInt(defaultStore, txn, COMMIT_COUNT_KEY, 0);
+					if (file.exists()) {
+						CommitGraph commitGraph = CommitGraph.readFrom(file);
+						if (commitGraph.getCollectedCount() == commitCount)
+							return commitGraph;
+					}
+					
+					CommitGraph commitGraph = new CommitGraph();
+					Cursor cursor = commitsStore.openCursor(txn);
+					try {
+						while (cursor.getNext()) {
+							ByteIterable key = cursor.getKey();
+							ObjectId commit = ObjectId.fromRaw(key.getBytesUnsafe());
+							ByteIterable value = cursor.getValue();
+							byte[] valueBytes = value.getBytesUnsafe();
+							int offset;
+							if (value.getLength() % 20 == 0) {
+								offset = 0;
+							} else {
+								offset = 1;
+								commitGraph.markCollected(commit);
 							}
+							for (; offset+20<=value.getLength(); offset+=20) 
+								commitGraph.addParent(ObjectId.fromRaw(valueBytes, offset), commit);
 						}
+					} finally {
+						cursor.close();
 					}
+					commitGraph.writeTo(file);
+					logger.debug("Rebuilt commit graph (project id: {}, commits: {})", projectId, commitGraph.size());
+					return commitGraph;
+				} catch (IOException e) {
+					throw new RuntimeException(e);
 				}
-				
-				return descendants;
 			}
 			
 		});
 	}
+	
+	private void updateCommitGraph(Long projectId, List<RevCommit> commits) {
+		Lock lock = LockUtils.getLock(getCommitGraphLockKey(projectId));
+		lock.lock();
+		try {
+			CommitGraph commitGraph = commitGraphs.getIfPresent(projectId);
+			if (commitGraph != null) {
+				for (RevCommit commit: commits)
+					commitGraph.addCommit(commit, commit.getParents());
+				commitGraphs.put(projectId, commitGraph);
+			}
+			File file = getCommitGraphFile(projectId);
+			if (file.exists()) {
+				try {
+					CommitGraph.append(file, commits);
+				} catch (IOException e) {
+					throw new RuntimeException(e);
+				}
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
 
 	@Listen
 	public void on(EntityRemoved event) {
@@ -973,6 +1154,7 @@ public class DefaultCommitInfoManager extends AbstractEnvironmentManager impleme
 			filesCache.remove(projectId);
 			commitCountCache.remove(projectId);
 			usersCache.remove(projectId);
+			commitGraphs.invalidate(projectId);
 		}
 	}
 	
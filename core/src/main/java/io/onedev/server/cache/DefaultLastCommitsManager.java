@@ -0,0 +1,272 @@
+package io.onedev.server.cache;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.Nullable;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.revwalk.LastCommitsOfChildren;
+import org.eclipse.jgit.revwalk.LastCommitsOfChildren.Value;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.Weigher;
+
+import io.onedev.commons.launcher.loader.Listen;
+import io.onedev.commons.utils.FileUtils;
+import io.onedev.commons.utils.concurrent.Prioritized;
+import io.onedev.server.entitymanager.ProjectManager;
+import io.onedev.server.event.RefUpdated;
+import io.onedev.server.event.entity.EntityRemoved;
+import io.onedev.server.git.GitUtils;
+import io.onedev.server.model.Project;
+import io.onedev.server.persistence.SessionManager;
+import io.onedev.server.storage.StorageManager;
+import io.onedev.server.util.work.BatchWorkManager;
+import io.onedev.server.util.work.BatchWorker;
+
+/**
+ * Caches last commits of children in two tiers: a size-bounded in-memory LRU of decoded
+ * results, backed by per-project directories of compactly encoded results whose total size
+ * over all projects is capped by evicting least recently used files.
+ */
+@Singleton
+public class DefaultLastCommitsManager implements LastCommitsManager {
+
+	private static final String CACHE_DIR = "last-commits";
+
+	private static final String LEGACY_CACHE_DIR = "last_commits";
+
+	// only results taking longer than this many milliseconds to calculate are stored on disk
+	private static final long DISK_THRESHOLD = 1000;
+
+	// maximum number of children entries of all results held in memory
+	private static final long MAX_MEMORY_ENTRIES = 200000;
+
+	// maximum total bytes of results stored on disk for all projects
+	private static final long MAX_DISK_SIZE = 64*1024*1024L;
+
+	// maximum number of first parents to search for a cached result to calculate incrementally from
+	private static final int MAX_INCREMENTAL_DEPTH = 100;
+
+	private static final int PREWARM_PRIORITY = 50;
+
+	private final StorageManager storageManager;
+
+	private final ProjectManager projectManager;
+
+	private final SessionManager sessionManager;
+
+	private final BatchWorkManager batchWorkManager;
+
+	private final Cache<String, Map<String, Value>> memoryCache;
+
+	private final LastCommitsDiskStore diskStore = new LastCommitsDiskStore(MAX_DISK_SIZE);
+
+	private final Map<Long, File> cacheDirs = new ConcurrentHashMap<>();
+
+	private final AtomicLong memoryHits = new AtomicLong(0);
+
+	private final AtomicLong diskHits = new AtomicLong(0);
+
+	private final AtomicLong misses = new AtomicLong(0);
+
+	private final AtomicLong computeTime = new AtomicLong(0);
+
+	@Inject
+	public DefaultLastCommitsManager(StorageManager storageManager, ProjectManager projectManager, 
+			SessionManager sessionManager, BatchWorkManager batchWorkManager) {
+		this.storageManager = storageManager;
+		this.projectManager = projectManager;
+		this.sessionManager = sessionManager;
+		this.batchWorkManager = batchWorkManager;
+		memoryCache = CacheBuilder.newBuilder()
+				.maximumWeight(MAX_MEMORY_ENTRIES)
+				.weigher(new Weigher<String, Map<String, Value>>() {
+
+					@Override
+					public int weigh(String key, Map<String, Value> value) {
+						return value.size() + 1;
+					}
+
+				})
+				.build();
+	}
+
+	private String normalizePath(@Nullable String path) {
+		path = GitUtils.normalizePath(path);
+		return path!=null?path:"";
+	}
+
+	private String getFileName(ObjectId commitId, String path) {
+		return commitId.name() + "-" + DigestUtils.md5Hex(path);
+	}
+
+	private String getMemoryKey(Long projectId, String fileName) {
+		return projectId + ":" + fileName;
+	}
+
+	private File getCacheFile(Long projectId, String fileName) {
+		File cacheDir = cacheDirs.get(projectId);
+		if (cacheDir == null) {
+			synchronized (cacheDirs) {
+				cacheDir = cacheDirs.get(projectId);
+				if (cacheDir == null) {
+					File infoDir = storageManager.getProjectInfoDir(projectId);
+					File legacyDir = new File(infoDir, LEGACY_CACHE_DIR);
+					if (legacyDir.exists())
+						FileUtils.deleteDir(legacyDir);
+					cacheDir = new File(infoDir, CACHE_DIR);
+					diskStore.load(cacheDir);
+					cacheDirs.put(projectId, cacheDir);
+				}
+			}
+		}
+		return new File(cacheDir, fileName);
+	}
+
+	@Nullable
+	private Map<String, Value> getCached(Long projectId, String fileName, boolean countHits) {
+		String key = getMemoryKey(projectId, fileName);
+		Map<String, Value> lastCommits = memoryCache.getIfPresent(key);
+		if (lastCommits != null) {
+			if (countHits)
+				memoryHits.incrementAndGet();
+		} else {
+			lastCommits = diskStore.read(getCacheFile(projectId, fileName));
+			if (lastCommits != null) {
+				memoryCache.put(key, lastCommits);
+				if (countHits)
+					diskHits.incrementAndGet();
+			}
+		}
+		return lastCommits;
+	}
+
+	@Override
+	public Map<String, Value> getLastCommitsOfChildren(Project project, ObjectId commitId, @Nullable String path) {
+		path = normalizePath(path);
+		String fileName = getFileName(commitId, path);
+		Map<String, Value> lastCommits = getCached(project.getId(), fileName, true);
+		if (lastCommits == null) {
+			long time = System.currentTimeMillis();
+			LastCommitsOfChildren.Cache cache = getCache(project, path);
+			RevCommit base = null;
+			Map<String, Value> lastCommitsOfBase = null;
+			try (RevWalk revWalk = new RevWalk(project.getRepository())) {
+				RevCommit commit = revWalk.parseCommit(commitId);
+				for (int i=0; i<MAX_INCREMENTAL_DEPTH && commit.getParentCount() != 0; i++) {
+					commit = revWalk.parseCommit(commit.getParent(0));
+					lastCommitsOfBase = getCached(project.getId(), getFileName(commit, path), false);
+					if (lastCommitsOfBase != null) {
+						base = commit;
+						break;
+					}
+				}
+			} catch (IOException e) {
+				throw new RuntimeException(e);
+			}
+			if (base != null) {
+				lastCommits = Collections.unmodifiableMap(new LastCommitsOfChildren(
+						project.getRepository(), commitId, path, base, lastCommitsOfBase, cache));
+			} else {
+				lastCommits = Collections.unmodifiableMap(new LastCommitsOfChildren(
+						project.getRepository(), commitId, path, cache));
+			}
+			long elapsed = System.currentTimeMillis() - time;
+			misses.incrementAndGet();
+			computeTime.addAndGet(elapsed);
+
+			memoryCache.put(getMemoryKey(project.getId(), fileName), lastCommits);
+			if (elapsed > DISK_THRESHOLD)
+				diskStore.write(getCacheFile(project.getId(), fileName), lastCommits);
+		}
+		return lastCommits;
+	}
+
+	@Override
+	public LastCommitsOfChildren.Cache getCache(Project project, @Nullable String path) {
+		Long projectId = project.getId();
+		String normalizedPath = normalizePath(path);
+		return new LastCommitsOfChildren.Cache() {
+
+			@Override
+			public Map<String, Value> getLastCommitsOfChildren(ObjectId commitId) {
+				return getCached(projectId, getFileName(commitId, normalizedPath), false);
+			}
+
+		};
+	}
+
+	@Override
+	public LastCommitsMetrics getMetrics() {
+		return new LastCommitsMetrics(memoryHits.get(), diskHits.get(), misses.get(), computeTime.get(),
+				memoryCache.size(), diskStore.getTotalSize());
+	}
+
+	/*
+	 * Calculate last commits of root directory for new head of default branch, so that 
+	 * project home page is served from cache. Multiple pushes are coalesced into a single 
+	 * calculation against latest head
+	 */
+	@Listen
+	public void on(RefUpdated event) {
+		Project project = event.getProject();
+		if (!event.getNewCommitId().equals(ObjectId.zeroId()) 
+				&& project.getDefaultBranch() != null
+				&& event.getRefName().equals(GitUtils.branch2ref(project.getDefaultBranch()))) {
+			batchWorkManager.submit(getPrewarmWorker(project.getId()), new Prioritized(PREWARM_PRIORITY));
+		}
+	}
+
+	private BatchWorker getPrewarmWorker(Long projectId) {
+		return new BatchWorker("project-" + projectId + "-prewarmLastCommits") {
+
+			@Override
+			public void doWorks(Collection<Prioritized> works) {
+				sessionManager.run(new Runnable() {
+
+					@Override
+					public void run() {
+						Project project = projectManager.get(projectId);
+						if (project != null && project.getDefaultBranch() != null) {
+							ObjectId commitId = project.getObjectId(project.getDefaultBranch(), false);
+							if (commitId != null)
+								getLastCommitsOfChildren(project, commitId, null);
+						}
+					}
+
+				});
+			}
+
+		};
+	}
+
+	@Listen
+	public void on(EntityRemoved event) {
+		if (event.getEntity() instanceof Project) {
+			Long projectId = event.getEntity().getId();
+			File cacheDir = cacheDirs.remove(projectId);
+			if (cacheDir != null)
+				diskStore.unload(cacheDir);
+			String keyPrefix = projectId + ":";
+			for (Iterator<String> it = memoryCache.asMap().keySet().iterator(); it.hasNext();) {
+				if (it.next().startsWith(keyPrefix))
+					it.remove();
+			}
+		}
+	}
+
+}
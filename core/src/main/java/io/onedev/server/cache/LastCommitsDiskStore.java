@@ -0,0 +1,249 @@
+package io.onedev.server.cache;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+import javax.annotation.Nullable;
+
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.PersonIdent;
+import org.eclipse.jgit.revwalk.LastCommitsOfChildren.Value;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.onedev.commons.utils.FileUtils;
+
+/*
+ * Compactly encoded last commits results stored in files of multiple directories (one per
+ * project). Total size of files in all directories is capped by evicting least recently used
+ * files regardless of the directory they reside in
+ */
+class LastCommitsDiskStore {
+
+	private static final Logger logger = LoggerFactory.getLogger(LastCommitsDiskStore.class);
+
+	private static final String TEMP_SUFFIX = ".tmp";
+
+	private static final int FORMAT_VERSION = 1;
+
+	private final long maxSize;
+
+	private final Set<File> dirs = new HashSet<>();
+
+	private final LinkedHashMap<File, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+	private long totalSize;
+
+	LastCommitsDiskStore(long maxSize) {
+		this.maxSize = maxSize;
+	}
+
+	/**
+	 * Start to track files of specified directory. Files are merged into the global LRU order
+	 * by their last modified time, which is touched each time a file is read
+	 */
+	synchronized void load(File dir) {
+		if (!dirs.add(dir))
+			return;
+		File[] files = dir.listFiles();
+		if (files != null && files.length != 0) {
+			List<Map.Entry<File, Entry>> allEntries = new ArrayList<>(entries.entrySet());
+			for (File file: files) {
+				if (file.getName().endsWith(TEMP_SUFFIX)) {
+					FileUtils.deleteFile(file);
+				} else {
+					Entry entry = new Entry(file.length(), file.lastModified());
+					allEntries.add(new AbstractMap.SimpleEntry<>(file, entry));
+					totalSize += entry.size;
+				}
+			}
+			allEntries.sort(Comparator.comparingLong(it->it.getValue().accessTime));
+			entries.clear();
+			for (Map.Entry<File, Entry> entry: allEntries)
+				entries.put(entry.getKey(), entry.getValue());
+			evict(null);
+		}
+	}
+
+	/**
+	 * Stop tracking files of specified directory, for instance when the project is deleted
+	 */
+	synchronized void unload(File dir) {
+		if (dirs.remove(dir)) {
+			for (Iterator<Map.Entry<File, Entry>> it = entries.entrySet().iterator(); it.hasNext();) {
+				Map.Entry<File, Entry> entry = it.next();
+				if (entry.getKey().getParentFile().equals(dir)) {
+					totalSize -= entry.getValue().size;
+					it.remove();
+				}
+			}
+		}
+	}
+
+	synchronized long getTotalSize() {
+		return totalSize;
+	}
+
+	synchronized int getFileCount() {
+		return entries.size();
+	}
+
+	@Nullable
+	Map<String, Value> read(File file) {
+		long accessTime = System.currentTimeMillis();
+		synchronized (this) {
+			Entry entry = entries.get(file);
+			if (entry == null)
+				return null;
+			entry.accessTime = accessTime;
+		}
+		try {
+			Map<String, Value> lastCommits = decode(Files.readAllBytes(file.toPath()));
+			if (lastCommits != null) {
+				file.setLastModified(accessTime);
+				return lastCommits;
+			}
+		} catch (IOException e) {
+			logger.warn("Error reading last commits cache file '" + file.getAbsolutePath() + "'", e);
+		}
+		remove(file);
+		return null;
+	}
+
+	void write(File file, Map<String, Value> lastCommits) {
+		byte[] bytes = encode(lastCommits);
+		File dir = file.getParentFile();
+		File tempFile = new File(dir, file.getName() + "." + Thread.currentThread().getId() + TEMP_SUFFIX);
+		try {
+			FileUtils.createDir(dir);
+			Files.write(tempFile.toPath(), bytes);
+			Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		} catch (IOException e) {
+			FileUtils.deleteFile(tempFile);
+			logger.error("Error writing last commits cache file '" + file.getAbsolutePath() + "'", e);
+			return;
+		}
+
+		synchronized (this) {
+			Entry oldEntry = entries.put(file, new Entry(bytes.length, System.currentTimeMillis()));
+			totalSize += bytes.length - (oldEntry!=null?oldEntry.size:0);
+			evict(file);
+		}
+	}
+
+	synchronized void remove(File file) {
+		Entry entry = entries.remove(file);
+		if (entry != null) {
+			FileUtils.deleteFile(file);
+			totalSize -= entry.size;
+		}
+	}
+
+	private void evict(@Nullable File excludeFile) {
+		for (Iterator<Map.Entry<File, Entry>> it = entries.entrySet().iterator();
+				totalSize > maxSize && it.hasNext();) {
+			Map.Entry<File, Entry> eldest = it.next();
+			if (!eldest.getKey().equals(excludeFile)) {
+				FileUtils.deleteFile(eldest.getKey());
+				totalSize -= eldest.getValue().size;
+				it.remove();
+			}
+		}
+	}
+
+	private static void writeString(DataOutputStream os, String string) throws IOException {
+		byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+		os.writeInt(bytes.length);
+		os.write(bytes);
+	}
+
+	private static String readString(DataInputStream is) throws IOException {
+		byte[] bytes = new byte[is.readInt()];
+		is.readFully(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	static byte[] encode(Map<String, Value> lastCommits) {
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		try (DataOutputStream os = new DataOutputStream(new DeflaterOutputStream(baos))) {
+			os.writeByte(FORMAT_VERSION);
+			os.writeInt(lastCommits.size());
+			byte[] idBytes = new byte[Constants.OBJECT_ID_LENGTH];
+			for (Map.Entry<String, Value> entry: lastCommits.entrySet()) {
+				Value value = entry.getValue();
+				writeString(os, entry.getKey());
+				value.getId().copyRawTo(idBytes, 0);
+				os.write(idBytes);
+				writeString(os, value.getAuthor().getName());
+				writeString(os, value.getAuthor().getEmailAddress());
+				os.writeLong(value.getAuthor().getWhen().getTime());
+				os.writeInt(value.getAuthor().getTimeZoneOffset());
+				os.writeLong(value.getCommitDate().getTime());
+				writeString(os, value.getSummary());
+			}
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+		return baos.toByteArray();
+	}
+
+	@Nullable
+	static Map<String, Value> decode(byte[] bytes) throws IOException {
+		try (DataInputStream is = new DataInputStream(new InflaterInputStream(new ByteArrayInputStream(bytes)))) {
+			if (is.readByte() != FORMAT_VERSION)
+				return null;
+			int size = is.readInt();
+			Map<String, Value> lastCommits = new HashMap<>(size*4/3+1);
+			byte[] idBytes = new byte[Constants.OBJECT_ID_LENGTH];
+			for (int i=0; i<size; i++) {
+				String child = readString(is);
+				is.readFully(idBytes);
+				String authorName = readString(is);
+				String authorEmail = readString(is);
+				long authorWhen = is.readLong();
+				int authorTimeZone = is.readInt();
+				PersonIdent author = new PersonIdent(authorName, authorEmail, authorWhen, authorTimeZone);
+				Date commitDate = new Date(is.readLong());
+				String summary = readString(is);
+				lastCommits.put(child, new Value(ObjectId.fromRaw(idBytes), author, commitDate, summary));
+			}
+			return Collections.unmodifiableMap(lastCommits);
+		}
+	}
+
+	private static class Entry {
+
+		final long size;
+
+		long accessTime;
+
+		Entry(long size, long accessTime) {
+			this.size = size;
+			this.accessTime = accessTime;
+		}
+
+	}
+
+}
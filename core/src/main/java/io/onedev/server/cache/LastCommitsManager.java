@@ -0,0 +1,45 @@
+package io.onedev.server.cache;
+
+import java.util.Map;
+
+import javax.annotation.Nullable;
+
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.revwalk.LastCommitsOfChildren;
+
+import io.onedev.server.model.Project;
+
+public interface LastCommitsManager {
+	
+	/**
+	 * Get last commits of children of specified path, consulting cached results first
+	 * 
+	 * @param project
+	 * 			project to get last commits
+	 * @param commitId
+	 * 			get last commits no newer than this commit
+	 * @param path
+	 * 			parent directory to get last commits of children under, use <tt>null</tt> 
+	 * 			or empty string to refer to repository root
+	 * @return
+	 * 			unmodifiable map of child name to last commit of the child
+	 */
+	Map<String, LastCommitsOfChildren.Value> getLastCommitsOfChildren(Project project, 
+			ObjectId commitId, @Nullable String path);
+	
+	/**
+	 * Get a cache to speed up last commits calculation of specified path
+	 * 
+	 * @param project
+	 * 			project to get cache for
+	 * @param path
+	 * 			parent directory to get cache for, use <tt>null</tt> or empty string to refer 
+	 * 			to repository root
+	 * @return
+	 * 			cache backed by previously calculated results
+	 */
+	LastCommitsOfChildren.Cache getCache(Project project, @Nullable String path);
+	
+	LastCommitsMetrics getMetrics();
+	
+}
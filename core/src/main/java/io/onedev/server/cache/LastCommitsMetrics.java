@@ -0,0 +1,79 @@
+package io.onedev.server.cache;
+
+import java.io.Serializable;
+
+public class LastCommitsMetrics implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	private final long memoryHits;
+	
+	private final long diskHits;
+	
+	private final long misses;
+	
+	private final long computeTime;
+	
+	private final long memoryEntries;
+	
+	private final long diskSize;
+	
+	public LastCommitsMetrics(long memoryHits, long diskHits, long misses, long computeTime, 
+			long memoryEntries, long diskSize) {
+		this.memoryHits = memoryHits;
+		this.diskHits = diskHits;
+		this.misses = misses;
+		this.computeTime = computeTime;
+		this.memoryEntries = memoryEntries;
+		this.diskSize = diskSize;
+	}
+
+	/**
+	 * @return
+	 * 			number of requests served from in-memory cache since server start
+	 */
+	public long getMemoryHits() {
+		return memoryHits;
+	}
+
+	/**
+	 * @return
+	 * 			number of requests served from on-disk cache since server start
+	 */
+	public long getDiskHits() {
+		return diskHits;
+	}
+
+	/**
+	 * @return
+	 * 			number of requests requiring calculation since server start
+	 */
+	public long getMisses() {
+		return misses;
+	}
+
+	/**
+	 * @return
+	 * 			total milliseconds spent on calculation since server start
+	 */
+	public long getComputeTime() {
+		return computeTime;
+	}
+
+	/**
+	 * @return
+	 * 			number of results currently held in memory
+	 */
+	public long getMemoryEntries() {
+		return memoryEntries;
+	}
+
+	/**
+	 * @return
+	 * 			total bytes of results currently stored on disk
+	 */
+	public long getDiskSize() {
+		return diskSize;
+	}
+	
+}
@@ -0,0 +1,40 @@
+package io.onedev.server.cache;
+
+import java.util.Map;
+
+import com.google.common.collect.ImmutableMap;
+
+import io.onedev.server.security.permission.ProjectPrivilege;
+
+public class UserPrivileges {
+
+	private final boolean administrator;
+	
+	private final boolean canCreateProjects;
+	
+	private final Map<Long, ProjectPrivilege> projectPrivileges;
+	
+	public UserPrivileges(boolean administrator, boolean canCreateProjects, 
+			Map<Long, ProjectPrivilege> projectPrivileges) {
+		this.administrator = administrator;
+		this.canCreateProjects = canCreateProjects;
+		this.projectPrivileges = ImmutableMap.copyOf(projectPrivileges);
+	}
+
+	public boolean isAdministrator() {
+		return administrator;
+	}
+
+	public boolean isCanCreateProjects() {
+		return canCreateProjects;
+	}
+
+	/**
+	 * @return
+	 * 			map of project id to the strongest privilege granted on the project
+	 */
+	public Map<Long, ProjectPrivilege> getProjectPrivileges() {
+		return projectPrivileges;
+	}
+	
+}
@@ -0,0 +1,28 @@
+package io.onedev.server.ci;
+
+import javax.annotation.Nullable;
+
+import org.eclipse.jgit.lib.ObjectId;
+
+import io.onedev.server.model.Project;
+
+public interface CISpecManager {
+
+	/**
+	 * Get CI spec of specified commit. Parsed specs are shared across projects and sessions,
+	 * and should not be modified by callers
+	 *
+	 * @param project
+	 * 			project containing the commit
+	 * @param commitId
+	 * 			commit id to get CI spec for
+	 * @return
+	 * 			CI spec of specified commit, or <tt>null</tt> if no CI spec is defined and
+	 * 			auto-detection also can not provide an appropriate CI spec
+	 * @throws
+	 * 			InvalidCISpecException when CI spec is defined but not valid
+	 */
+	@Nullable
+	CISpec getCISpec(Project project, ObjectId commitId);
+
+}
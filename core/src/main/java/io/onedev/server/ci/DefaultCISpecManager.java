@@ -0,0 +1,76 @@
+package io.onedev.server.ci;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import javax.inject.Singleton;
+
+import org.eclipse.jgit.lib.FileMode;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.treewalk.TreeWalk;
+
+import com.google.common.base.Optional;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+import io.onedev.server.OneDev;
+import io.onedev.server.ci.detect.CISpecDetector;
+import io.onedev.server.model.Project;
+
+@Singleton
+public class DefaultCISpecManager implements CISpecManager {
+
+	private static final int MAX_PARSED_SPECS = 1000;
+
+	private static final int MAX_UNDETECTED_TREES = 10000;
+
+	// parsed CI specs keyed by blob id of CI spec file
+	private final Cache<ObjectId, Optional<CISpec>> parsedSpecs = CacheBuilder.newBuilder()
+			.maximumSize(MAX_PARSED_SPECS)
+			.build();
+
+	/*
+	 * Root tree ids of commits without CI spec file, for which no detector provides a CI spec. 
+	 * Detected CI specs are not cached as detectors may take project into account 
+	 */
+	private final Cache<ObjectId, Boolean> undetectedTrees = CacheBuilder.newBuilder()
+			.maximumSize(MAX_UNDETECTED_TREES)
+			.build();
+
+	@Override
+	public CISpec getCISpec(Project project, ObjectId commitId) {
+		RevCommit commit = project.getRevCommit(commitId);
+		try (TreeWalk treeWalk = TreeWalk.forPath(project.getRepository(), CISpec.BLOB_PATH, commit.getTree())) {
+			if (treeWalk != null && (treeWalk.getRawMode(0) & FileMode.TYPE_MASK) == FileMode.TYPE_FILE) {
+				ObjectId blobId = treeWalk.getObjectId(0);
+				Optional<CISpec> ciSpecOpt = parsedSpecs.getIfPresent(blobId);
+				if (ciSpecOpt == null) {
+					ciSpecOpt = Optional.fromNullable(CISpec.parse(treeWalk.getObjectReader().open(blobId).getBytes()));
+					if (ciSpecOpt.isPresent())
+						ciSpecOpt.get().getJobMap();
+					parsedSpecs.put(blobId, ciSpecOpt);
+				}
+				return ciSpecOpt.orNull();
+			}
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+
+		ObjectId treeId = commit.getTree().copy();
+		if (undetectedTrees.getIfPresent(treeId) == null) {
+			List<CISpecDetector> detectors = new ArrayList<>(OneDev.getExtensions(CISpecDetector.class));
+			detectors.sort(Comparator.comparing(CISpecDetector::getPriority));
+			for (CISpecDetector detector: detectors) {
+				CISpec ciSpec = detector.detect(project, commitId);
+				if (ciSpec != null) 
+					return ciSpec;
+			}
+			undetectedTrees.put(treeId, Boolean.TRUE);
+		}
+		return null;
+	}
+
+}
@@ -2,19 +2,23 @@ package io.onedev.server.ci.job;
 
 import java.io.File;
 import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.PriorityQueue;
 import java.util.Set;
 import java.util.concurrent.Callable;
 import java.util.concurrent.CancellationException;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
 
 import javax.annotation.Nullable;
 import javax.inject.Inject;
@@ -74,7 +78,7 @@ import io.onedev.server.util.patternset.PatternSet;
 @Singleton
 public class DefaultJobScheduler implements JobScheduler, Runnable, SchedulableTask {
 
-	private static final int CHECK_INTERVAL = 1000; // check internal in milli-seconds
+	private static final int SWEEP_INTERVAL = 60000; // consistency sweep interval in milli-seconds
 	
 	private static final Logger logger = LoggerFactory.getLogger(DefaultJobScheduler.class);
 	
@@ -82,6 +86,35 @@ public class DefaultJobScheduler implements JobScheduler, Runnable, SchedulableT
 	
 	private final Map<Long, JobExecution> jobExecutions = new ConcurrentHashMap<>();
 	
+	// builds submitted or finished since last check
+	private final Set<Long> changedBuildIds = ConcurrentHashMap.newKeySet();
+	
+	// builds whose job execution is done since last check
+	private final Set<Long> completedBuildIds = ConcurrentHashMap.newKeySet();
+	
+	// below three fields are only accessed from the scheduling thread
+	
+	// pending builds in submission order, waiting for executor capacity
+	private final Set<Long> readyBuildIds = new LinkedHashSet<>();
+	
+	// number of unfinished dependencies of waiting builds
+	private final Map<Long, Integer> dependencyCountdowns = new HashMap<>();
+	
+	// job executions ordered by deadline
+	private final PriorityQueue<JobExecution> timeouts = new PriorityQueue<>(new Comparator<JobExecution>() {
+
+		@Override
+		public int compare(JobExecution o1, JobExecution o2) {
+			return Long.compare(o1.getDeadline(), o2.getDeadline());
+		}
+		
+	});
+	
+	private boolean signaled;
+	
+	// set when executor capacity may be available again 
+	private volatile boolean retryReady;
+	
 	private final ProjectManager projectManager;
 	
 	private final Build2Manager buildManager;
@@ -257,7 +290,11 @@ public class DefaultJobScheduler implements JobScheduler, Runnable, SchedulableT
 		return null;
 	}
 
-	private void run(Build2 build) {
+	/*
+	 * Run specified pending build. Return false if there is no capacity to run the build and 
+	 * it should be retried later
+	 */
+	private boolean run(Build2 build) {
 		ObjectId commitId = ObjectId.fromString(build.getCommitHash());
 		try {
 			CISpec ciSpec = build.getProject().getCISpec(commitId);
@@ -281,7 +318,7 @@ public class DefaultJobScheduler implements JobScheduler, Runnable, SchedulableT
 							Logger logger = logManager.getLogger(build.getProject().getId(), build.getId(), job.getLogLevel()); 
 							
 							Long buildId = build.getId();
-							JobExecution execution = new JobExecution(executorService.submit(new Runnable() {
+							FutureTask<Void> future = new FutureTask<Void>(new Runnable() {
 
 								@Override
 								public void run() {
@@ -344,12 +381,28 @@ public class DefaultJobScheduler implements JobScheduler, Runnable, SchedulableT
 									}
 								}
 								
-							}), job.getTimeout() * 1000L);
+							}, null) {
+
+								@Override
+								protected void done() {
+									completedBuildIds.add(buildId);
+									signal();
+								}
+								
+							};
 							
+							JobExecution execution = new JobExecution(future, 
+									build.getRunningDate().getTime() + job.getTimeout() * 1000L);
 							JobExecution prevExecution = jobExecutions.put(build.getId(), execution);
 							
-							if (prevExecution != null)
+							if (prevExecution != null) {
+								timeouts.remove(prevExecution);
 								prevExecution.getFuture().cancel(true);
+							}
+							timeouts.add(execution);
+							executorService.execute(future);
+						} else {
+							return false;
 						}
 					} else {
 						markBuildError(build, "No applicable job executor");
@@ -363,6 +416,7 @@ public class DefaultJobScheduler implements JobScheduler, Runnable, SchedulableT
 		} catch (InvalidCISpecException e) {
 			markBuildError(build, e.getMessage());
 		}
+		return true;
 	}
 	
 	private void markBuildError(Build2 build, String errorMessage) {
@@ -423,13 +477,46 @@ public class DefaultJobScheduler implements JobScheduler, Runnable, SchedulableT
 			execution.getFuture().cancel(true);
 	}
 	
+	@Listen
+	public void on(BuildSubmitted event) {
+		checkAfterCommit(event.getBuild());
+	}
+	
+	@Listen
+	public void on(BuildFinished event) {
+		checkAfterCommit(event.getBuild());
+	}
+	
+	private void checkAfterCommit(Build2 build) {
+		Long buildId = build.getId();
+		if (buildId != null) {
+			transactionManager.runAfterCommit(new Runnable() {
+
+				@Override
+				public void run() {
+					changedBuildIds.add(buildId);
+					signal();
+				}
+				
+			});
+		}
+	}
+	
+	private synchronized void signal() {
+		signaled = true;
+		notify();
+	}
+	
 	@SuppressWarnings("unchecked")
 	@Listen
 	public void on(EntityPersisted event) {
 		if (event.getEntity() instanceof Setting) {
 			Setting setting = (Setting) event.getEntity();
-			if (setting.getKey() == Key.JOB_EXECUTORS)
+			if (setting.getKey() == Key.JOB_EXECUTORS) {
 				jobExecutors = (List<JobExecutor>) setting.getValue();
+				retryReady = true;
+				signal();
+			}
 		}
 	}
 	
@@ -447,9 +534,7 @@ public class DefaultJobScheduler implements JobScheduler, Runnable, SchedulableT
 		if (status == Status.STARTED) {
 			status = Status.STOPPING;
 			while (status == Status.STOPPING) {
-				synchronized (this) {
-					notify();
-				}
+				signal();
 				try {
 					Thread.sleep(1000);
 				} catch (InterruptedException e) {
@@ -459,76 +544,31 @@ public class DefaultJobScheduler implements JobScheduler, Runnable, SchedulableT
 	}
 
 	@Override
-	public synchronized void run() {
+	public void run() {
+		long nextSweepTime = 0;
 		while (true) {
-			try {
-				wait(CHECK_INTERVAL);
-			} catch (InterruptedException e) {
+			long waitTime = nextSweepTime - System.currentTimeMillis();
+			JobExecution earliestExecution = timeouts.peek();
+			if (earliestExecution != null)
+				waitTime = Math.min(waitTime, earliestExecution.getDeadline() - System.currentTimeMillis());
+			synchronized (this) {
+				if (!signaled && waitTime > 0) {
+					try {
+						wait(waitTime);
+					} catch (InterruptedException e) {
+					}
+				}
+				signaled = false;
 			}
+			boolean sweep = System.currentTimeMillis() >= nextSweepTime;
+			if (sweep)
+				nextSweepTime = System.currentTimeMillis() + SWEEP_INTERVAL;
 			try {
 				boolean hasRunnings = transactionManager.call(new Callable<Boolean>() {
 	
 					@Override
 					public Boolean call() {
-						for (Build2 build: buildManager.queryUnfinished()) {
-							if (build.getStatus() == Build2.Status.PENDING) {
-								if (status == Status.STARTED) 
-									run(build);									
-							} else if (build.getStatus() == Build2.Status.RUNNING) {
-								JobExecution execution = jobExecutions.get(build.getId());
-								if (execution != null) {
-									if (System.currentTimeMillis() - build.getRunningDate().getTime() > execution.getTimeout())
-										execution.getFuture().cancel(true);
-								} else {
-									markBuildError(build, "Stopped for unknown reason");
-								}
-							} else if (build.getStatus() == Build2.Status.WAITING) {
-								boolean hasUnsuccessful = false;
-								boolean hasUnfinished = false;
-								
-								for (BuildDependence dependence: build.getDependencies()) {
-									Build2 dependency = dependence.getDependency();
-									
-									if (dependency.getStatus() == Build2.Status.SUCCESSFUL)
-										continue;
-									else if (dependency.isFinished())
-										hasUnsuccessful = true;
-									else
-										hasUnfinished = true;
-								}
-								
-								if (hasUnsuccessful) {
-									markBuildError(build, "There are failed dependency jobs");
-								} else if (!hasUnfinished) {
-									build.setStatus(Build2.Status.PENDING);
-									build.setPendingDate(new Date());
-									listenerRegistry.post(new BuildPending(build));
-								}
-							}
-						}
-						for (Iterator<Map.Entry<Long, JobExecution>> it = jobExecutions.entrySet().iterator(); it.hasNext();) {
-							Map.Entry<Long, JobExecution> entry = it.next();
-							Build2 build = buildManager.get(entry.getKey());
-							JobExecution execution = entry.getValue();
-							if (build == null || build.getStatus() != Build2.Status.RUNNING) {
-								it.remove();
-								execution.getFuture().cancel(true);
-							} else if (execution.getFuture().isDone()) {
-								it.remove();
-								try {
-									execution.getFuture().get();
-									build.setStatus(Build2.Status.SUCCESSFUL);
-								} catch (CancellationException e) {
-									build.setStatus(Build2.Status.CANCELLED);
-								} catch (Exception e) {
-									build.setStatus(Build2.Status.FAILED, e.getMessage());
-								} finally {
-									build.setFinishDate(new Date());
-									listenerRegistry.post(new BuildFinished(build));
-								}
-							}
-						}
-						return !jobExecutions.isEmpty();
+						return schedule(sweep);
 					}
 					
 				});
@@ -541,6 +581,143 @@ public class DefaultJobScheduler implements JobScheduler, Runnable, SchedulableT
 		status = Status.STOPPED;
 	}
 	
+	/*
+	 * Process builds changed since last check. Unfinished builds are only scanned when 
+	 * sweeping, to recover from missed events and to pick up builds left by previous run 
+	 * of the server 
+	 */
+	private boolean schedule(boolean sweep) {
+		for (Iterator<Long> it = completedBuildIds.iterator(); it.hasNext();) {
+			Long buildId = it.next();
+			it.remove();
+			JobExecution execution = jobExecutions.get(buildId);
+			if (execution != null && execution.getFuture().isDone()) {
+				jobExecutions.remove(buildId);
+				timeouts.remove(execution);
+				retryReady = true;
+				Build2 build = buildManager.get(buildId);
+				if (build != null && build.getStatus() == Build2.Status.RUNNING) {
+					try {
+						execution.getFuture().get();
+						build.setStatus(Build2.Status.SUCCESSFUL);
+					} catch (CancellationException e) {
+						build.setStatus(Build2.Status.CANCELLED);
+					} catch (Exception e) {
+						build.setStatus(Build2.Status.FAILED, e.getMessage());
+					} finally {
+						build.setFinishDate(new Date());
+						listenerRegistry.post(new BuildFinished(build));
+					}
+				}
+			}
+		}
+		
+		long now = System.currentTimeMillis();
+		while (!timeouts.isEmpty() && timeouts.peek().getDeadline() <= now) 
+			timeouts.poll().getFuture().cancel(true);
+		
+		boolean readyChanged = false;
+		if (sweep) {
+			readyBuildIds.clear();
+			dependencyCountdowns.clear();
+			for (Build2 build: buildManager.queryUnfinished()) {
+				if (build.getStatus() == Build2.Status.PENDING) {
+					readyBuildIds.add(build.getId());
+				} else if (build.getStatus() == Build2.Status.RUNNING) {
+					if (!jobExecutions.containsKey(build.getId()))
+						markBuildError(build, "Stopped for unknown reason");
+				} else if (build.getStatus() == Build2.Status.WAITING) {
+					checkDependencies(build);
+				}
+			}
+			for (Iterator<Map.Entry<Long, JobExecution>> it = jobExecutions.entrySet().iterator(); it.hasNext();) {
+				Map.Entry<Long, JobExecution> entry = it.next();
+				Build2 build = buildManager.get(entry.getKey());
+				if (build == null || build.getStatus() != Build2.Status.RUNNING) {
+					it.remove();
+					timeouts.remove(entry.getValue());
+					entry.getValue().getFuture().cancel(true);
+				}
+			}
+			readyChanged = true;
+		}
+		
+		for (Iterator<Long> it = changedBuildIds.iterator(); it.hasNext();) {
+			Long buildId = it.next();
+			it.remove();
+			Build2 build = buildManager.get(buildId);
+			if (build != null) {
+				if (build.getStatus() == Build2.Status.WAITING) {
+					if (checkDependencies(build))
+						readyChanged = true;
+				} else if (build.getStatus() == Build2.Status.PENDING) {
+					readyChanged |= readyBuildIds.add(buildId);
+				} else if (build.isFinished()) {
+					readyBuildIds.remove(buildId);
+					dependencyCountdowns.remove(buildId);
+					for (BuildDependence dependence: build.getDependents()) {
+						Build2 dependent = dependence.getDependent();
+						if (dependent.getStatus() == Build2.Status.WAITING) {
+							Integer countdown = dependencyCountdowns.get(dependent.getId());
+							if (countdown == null || countdown <= 1 || build.getStatus() != Build2.Status.SUCCESSFUL) {
+								if (checkDependencies(dependent))
+									readyChanged = true;
+							} else {
+								dependencyCountdowns.put(dependent.getId(), countdown-1);
+							}
+						}
+					}
+				}
+			}
+		}
+		
+		if (status == Status.STARTED && (readyChanged || retryReady)) {
+			retryReady = false;
+			for (Iterator<Long> it = readyBuildIds.iterator(); it.hasNext();) {
+				Build2 build = buildManager.get(it.next());
+				if (build == null || build.getStatus() != Build2.Status.PENDING || run(build))
+					it.remove();
+			}
+		}
+		return !jobExecutions.isEmpty();
+	}
+	
+	/*
+	 * Check dependencies of specified waiting build, and move it to pending state if all 
+	 * dependencies are successful. Return true if the build becomes pending
+	 */
+	private boolean checkDependencies(Build2 build) {
+		boolean hasUnsuccessful = false;
+		int unfinished = 0;
+		
+		for (BuildDependence dependence: build.getDependencies()) {
+			Build2 dependency = dependence.getDependency();
+			
+			if (dependency.getStatus() == Build2.Status.SUCCESSFUL)
+				continue;
+			else if (dependency.isFinished())
+				hasUnsuccessful = true;
+			else
+				unfinished++;
+		}
+		
+		if (hasUnsuccessful) {
+			dependencyCountdowns.remove(build.getId());
+			markBuildError(build, "There are failed dependency jobs");
+			return false;
+		} else if (unfinished == 0) {
+			dependencyCountdowns.remove(build.getId());
+			build.setStatus(Build2.Status.PENDING);
+			build.setPendingDate(new Date());
+			listenerRegistry.post(new BuildPending(build));
+			readyBuildIds.add(build.getId());
+			return true;
+		} else {
+			dependencyCountdowns.put(build.getId(), unfinished);
+			return false;
+		}
+	}
+	
 	@Override
 	public void execute() {
 		for (JobExecutor executor: jobExecutors)
@@ -556,19 +733,19 @@ public class DefaultJobScheduler implements JobScheduler, Runnable, SchedulableT
 		
 		private final Future<?> future;
 		
-		private final long timeout;
+		private final long deadline;
 		
-		public JobExecution(Future<?> future, long timeout) {
+		public JobExecution(Future<?> future, long deadline) {
 			this.future = future;
-			this.timeout = timeout;
+			this.deadline = deadline;
 		}
 
 		public Future<?> getFuture() {
 			return future;
 		}
 
-		public long getTimeout() {
-			return timeout;
+		public long getDeadline() {
+			return deadline;
 		}
 		
 	}
@@ -2,6 +2,10 @@ package io.onedev.server.ci.job.log;
 
 import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
 import java.io.EOFException;
 import java.io.File;
 import java.io.FileInputStream;
@@ -9,12 +13,16 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
+import java.io.RandomAccessFile;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Date;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.Lock;
 import java.util.regex.Pattern;
 
@@ -26,6 +34,8 @@ import org.apache.commons.lang3.StringUtils;
 import org.joda.time.DateTime;
 import org.joda.time.format.DateTimeFormat;
 import org.joda.time.format.DateTimeFormatter;
+import org.quartz.ScheduleBuilder;
+import org.quartz.SimpleScheduleBuilder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -35,15 +45,26 @@ import com.google.common.base.Throwables;
 
 import io.onedev.commons.launcher.loader.Listen;
 import io.onedev.commons.utils.ExceptionUtils;
+import io.onedev.commons.utils.FileUtils;
 import io.onedev.commons.utils.LockUtils;
+import io.onedev.commons.utils.schedule.SchedulableTask;
+import io.onedev.commons.utils.schedule.TaskScheduler;
 import io.onedev.server.event.build2.BuildFinished;
+import io.onedev.server.event.system.SystemStarted;
+import io.onedev.server.event.system.SystemStopping;
 import io.onedev.server.model.Build2;
 import io.onedev.server.persistence.annotation.Sessional;
 import io.onedev.server.storage.StorageManager;
 import io.onedev.server.web.websocket.WebSocketManager;
 
+/**
+ * Log entries of a build are appended to a data file, each entry being written as date, 
+ * level and UTF-8 message. An index file is maintained alongside the data file to record 
+ * position of each entry as a fixed size long, so that entries at any offset can be located 
+ * without reading all previous entries.
+ */
 @Singleton
-public class DefaultLogManager implements LogManager {
+public class DefaultLogManager implements LogManager, SchedulableTask {
 
 	private static final Logger logger = LoggerFactory.getLogger(DefaultLogManager.class);
 	
@@ -51,7 +72,19 @@ public class DefaultLogManager implements LogManager {
 
 	private static final int MAX_CACHE_ENTRIES = 10000;
 	
-	private static final String LOG_FILE = "build.log";
+	private static final int UPGRADE_BATCH_SIZE = 1000;
+	
+	private static final int NOTIFY_INTERVAL = 500;
+	
+	private static final int METRICS_INTERVAL = 60000;
+	
+	private static final String LEGACY_LOG_FILE = "build.log";
+	
+	private static final String LOG_FILE = "log.data";
+	
+	private static final String LOG_INDEX_FILE = "log.index";
+	
+	private static final int INDEX_ENTRY_SIZE = Long.BYTES;
 	
 	private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormat.forPattern("HH:mm:ss");	
 	
@@ -61,12 +94,29 @@ public class DefaultLogManager implements LogManager {
 	
 	private final WebSocketManager webSocketManager;
 	
+	private final TaskScheduler taskScheduler;
+	
 	private final Map<Long, LogSnippet> recentSnippets = new ConcurrentHashMap<>();
 	
+	// builds with log changed since last notification
+	private final Set<Long> changedBuildIds = ConcurrentHashMap.newKeySet();
+	
+	private final AtomicLong ingestedEntries = new AtomicLong(0);
+	
+	private final AtomicLong sentNotifications = new AtomicLong(0);
+	
+	private volatile LogMetrics logMetrics = new LogMetrics(0, 0, 0, 0);
+	
+	private long metricsTime = System.currentTimeMillis();
+	
+	private String taskId;
+	
 	@Inject
-	public DefaultLogManager(StorageManager storageManager, WebSocketManager webSocketManager) {
+	public DefaultLogManager(StorageManager storageManager, WebSocketManager webSocketManager, 
+			TaskScheduler taskScheduler) {
 		this.storageManager = storageManager;
 		this.webSocketManager = webSocketManager;
+		this.taskScheduler = taskScheduler;
 	}
 	
 	private File getLogFile(Long projectId, Long buildId) {
@@ -74,6 +124,10 @@ public class DefaultLogManager implements LogManager {
 		return new File(buildDir, LOG_FILE);
 	}
 	
+	private File getLogIndexFile(File logFile) {
+		return new File(logFile.getParentFile(), LOG_INDEX_FILE);
+	}
+	
 	@Override
 	public Logger getLogger(Long projectId, Long buildId, LogLevel loggerLevel) {
 		return new JobLogger(loggerLevel) {
@@ -103,19 +157,18 @@ public class DefaultLogManager implements LogManager {
 							if (snippet != null) {
 								snippet.entries.add(new LogEntry(new Date(), logLevel, message));
 								if (snippet.entries.size() > MAX_CACHE_ENTRIES) {
-									File logFile = getLogFile(projectId, buildId);
-									try (ObjectOutputStream oos = newOutputStream(logFile)) {
-										while (snippet.entries.size() > MIN_CACHE_ENTRIES) {
-											LogEntry entry = snippet.entries.remove(0);
-											oos.writeObject(entry);
-											snippet.offset++;
-										}
-									} catch (IOException e) {
-										throw new RuntimeException(e);
+									List<LogEntry> entriesToWrite = new ArrayList<>();
+									while (snippet.entries.size() > MIN_CACHE_ENTRIES) {
+										entriesToWrite.add(snippet.entries.remove(0));
+										snippet.offset++;
 									}
+									writeLogEntries(getLogFile(projectId, buildId), entriesToWrite);
 								}
 								
-								webSocketManager.notifyObservableChange(Build2.getLogWebSocketObservable(buildId), null);
+								ingestedEntries.incrementAndGet();
+								
+								// notify in batch to avoid flooding websocket connections with chatty builds 
+								changedBuildIds.add(buildId);
 							}
 						} finally {
 							lock.unlock();
@@ -132,22 +185,86 @@ public class DefaultLogManager implements LogManager {
 	private String getLockKey(Long buildId) {
 		return "build-log: " + buildId;
 	}
-
+	
+	private void writeLogEntries(File logFile, Collection<LogEntry> entries) {
+		long position = logFile.length();
+		try (	DataOutputStream os = new DataOutputStream(new BufferedOutputStream(
+						new FileOutputStream(logFile, true))); 
+				DataOutputStream indexOs = new DataOutputStream(new BufferedOutputStream(
+						new FileOutputStream(getLogIndexFile(logFile), true)))) {
+			for (LogEntry entry: entries) {
+				indexOs.writeLong(position);
+				position += writeLogEntry(os, entry);
+			}
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+	
+	private int writeLogEntry(DataOutput os, LogEntry entry) throws IOException {
+		os.writeLong(entry.getDate().getTime());
+		os.writeByte(entry.getLevel().ordinal());
+		if (entry.getMessage() != null) {
+			byte[] messageBytes = entry.getMessage().getBytes(Charsets.UTF_8);
+			os.writeInt(messageBytes.length);
+			os.write(messageBytes);
+			return Long.BYTES + 1 + Integer.BYTES + messageBytes.length;
+		} else {
+			os.writeInt(-1);
+			return Long.BYTES + 1 + Integer.BYTES;
+		}
+	}
+	
+	private LogEntry readLogEntry(DataInput is) throws IOException {
+		Date date = new Date(is.readLong());
+		LogLevel level = LogLevel.values()[is.readByte()];
+		int messageLength = is.readInt();
+		String message;
+		if (messageLength != -1) {
+			byte[] messageBytes = new byte[messageLength];
+			is.readFully(messageBytes);
+			message = new String(messageBytes, Charsets.UTF_8);
+		} else {
+			message = null;
+		}
+		return new LogEntry(date, level, message);
+	}
+	
+	private int getNumOfLogEntries(File logFile) {
+		File indexFile = getLogIndexFile(logFile);
+		if (logFile.exists() && indexFile.exists())
+			return (int) (indexFile.length() / INDEX_ENTRY_SIZE);
+		else
+			return 0;
+	}
+	
+	private DataInputStream openLogFile(File logFile, int from) throws IOException {
+		long position;
+		try (RandomAccessFile indexFile = new RandomAccessFile(getLogIndexFile(logFile), "r")) {
+			indexFile.seek((long)from * INDEX_ENTRY_SIZE);
+			position = indexFile.readLong();
+		}
+		FileInputStream fis = new FileInputStream(logFile);
+		try {
+			fis.getChannel().position(position);
+			return new DataInputStream(new BufferedInputStream(fis));
+		} catch (IOException e) {
+			fis.close();
+			throw e;
+		}
+	}
+	
 	private List<LogEntry> readLogEntries(File logFile, int from, int count) {
 		List<LogEntry> entries = new ArrayList<>();
-		if (logFile.exists()) {
-			try (ObjectInputStream ois = new ObjectInputStream(new BufferedInputStream(new FileInputStream(logFile)))) {
-				int numOfReadEntries = 0;
-				while (numOfReadEntries < from) {
-					ois.readObject();
-					numOfReadEntries++;
-				}
-				while (count == 0 || numOfReadEntries - from < count) {
-					entries.add((LogEntry) ois.readObject());
-					numOfReadEntries++;
-				}
-			} catch (EOFException e) {
-			} catch (IOException | ClassNotFoundException e) {
+		int numOfEntries = getNumOfLogEntries(logFile);
+		if (from < numOfEntries) {
+			int to = from + count;
+			if (to == from || to > numOfEntries)
+				to = numOfEntries;
+			try (DataInputStream is = openLogFile(logFile, from)) {
+				for (int i=from; i<to; i++)
+					entries.add(readLogEntry(is));
+			} catch (IOException e) {
 				throw new RuntimeException(e);
 			}
 		}
@@ -156,20 +273,10 @@ public class DefaultLogManager implements LogManager {
 	
 	private LogSnippet readLogSnippetReversely(File logFile, int count) {
 		LogSnippet snippet = new LogSnippet();
-		if (logFile.exists()) {
-			try (ObjectInputStream ois = new ObjectInputStream(new BufferedInputStream(new FileInputStream(logFile)))) {
-				while (true) {
-					snippet.entries.add((LogEntry) ois.readObject());
-					if (snippet.entries.size() > count) {
-						snippet.entries.remove(0);
-						snippet.offset ++;
-					}
-				}
-			} catch (EOFException e) {
-			} catch (IOException | ClassNotFoundException e) {
-				throw new RuntimeException(e);
-			}
-		}
+		int numOfEntries = getNumOfLogEntries(logFile);
+		snippet.offset = Math.max(0, numOfEntries - count);
+		if (snippet.offset < numOfEntries)
+			snippet.entries.addAll(readLogEntries(logFile, snippet.offset, numOfEntries - snippet.offset));
 		return snippet;
 	}
 	
@@ -184,9 +291,54 @@ public class DefaultLogManager implements LogManager {
 		}
 	}
 	
+	/**
+	 * Convert log written by old versions as a stream of serialized log entries into current 
+	 * format. This is done lazily when log of the build is accessed
+	 */
+	private void upgradeLogIfNecessary(Long projectId, Long buildId) {
+		File legacyLogFile = new File(storageManager.getBuildDir(projectId, buildId), LEGACY_LOG_FILE);
+		if (legacyLogFile.exists()) {
+			Lock lock = LockUtils.getReadWriteLock(getLockKey(buildId)).writeLock();
+			lock.lock();
+			try {
+				if (legacyLogFile.exists()) {
+					File logFile = getLogFile(projectId, buildId);
+					
+					// clean up files left by a previously interrupted upgrade
+					if (logFile.exists())
+						FileUtils.deleteFile(logFile);
+					File indexFile = getLogIndexFile(logFile);
+					if (indexFile.exists())
+						FileUtils.deleteFile(indexFile);
+					
+					List<LogEntry> entries = new ArrayList<>();
+					try (ObjectInputStream ois = new ObjectInputStream(new BufferedInputStream(new FileInputStream(legacyLogFile)))) {
+						while (true) {
+							entries.add((LogEntry) ois.readObject());
+							if (entries.size() >= UPGRADE_BATCH_SIZE) {
+								writeLogEntries(logFile, entries);
+								entries.clear();
+							}
+						}
+					} catch (EOFException e) {
+					} catch (IOException | ClassNotFoundException e) {
+						throw new RuntimeException(e);
+					}
+					if (!entries.isEmpty() || !logFile.exists())
+						writeLogEntries(logFile, entries);
+					FileUtils.deleteFile(legacyLogFile);
+					logger.info("Upgraded log of build (id: {})", buildId);
+				}
+			} finally {
+				lock.unlock();
+			}
+		}
+	}
+	
 	@Sessional
 	@Override
 	public List<LogEntry> readLogEntries(Build2 build, int from, int count) {
+		upgradeLogIfNecessary(build.getProject().getId(), build.getId());
 		Lock lock = LockUtils.getReadWriteLock(getLockKey(build.getId())).readLock();
 		lock.lock();
 		try {
@@ -215,6 +367,7 @@ public class DefaultLogManager implements LogManager {
 	@Sessional
 	@Override
 	public LogSnippet readLogSnippetReversely(Build2 build, int count) {
+		upgradeLogIfNecessary(build.getProject().getId(), build.getId());
 		Lock lock = LockUtils.getReadWriteLock(getLockKey(build.getId())).readLock();
 		lock.lock();
 		try {
@@ -239,25 +392,6 @@ public class DefaultLogManager implements LogManager {
 		}
 	}
 	
-	private ObjectOutputStream newOutputStream(File logFile) {
-		try {
-			if (logFile.exists()) {
-				return new ObjectOutputStream(new BufferedOutputStream(new FileOutputStream(logFile, true))) {
-
-					@Override
-					protected void writeStreamHeader() throws IOException {
-						reset();
-					}
-					
-				};
-			} else {
-				return new ObjectOutputStream(new BufferedOutputStream(new FileOutputStream(logFile)));
-			}
-		} catch (IOException e) {
-			throw new RuntimeException(e);
-		}
-	}
-	
 	@Sessional
 	@Listen
 	public void on(BuildFinished event) {
@@ -268,26 +402,69 @@ public class DefaultLogManager implements LogManager {
 			LogSnippet snippet = recentSnippets.remove(build.getId());
 			if (snippet != null) {
 				File logFile = getLogFile(build.getProject().getId(), build.getId());
-				try (ObjectOutputStream oos = newOutputStream(logFile)) {
-					for (LogEntry entry: snippet.entries)
-						oos.writeObject(entry);
-				} catch (IOException e) {
-					throw new RuntimeException(e);
-				} 
+				writeLogEntries(logFile, snippet.entries);
 			}
 		} finally {
 			lock.unlock();
 		}
 	}
 
+	@Listen
+	public void on(SystemStarted event) {
+		taskId = taskScheduler.schedule(this);
+	}
+	
+	@Listen
+	public void on(SystemStopping event) {
+		if (taskId != null)
+			taskScheduler.unschedule(taskId);
+	}
+	
+	@Override
+	public void execute() {
+		for (Iterator<Long> it = changedBuildIds.iterator(); it.hasNext();) {
+			Long buildId = it.next();
+			it.remove();
+			webSocketManager.notifyObservableChange(Build2.getLogWebSocketObservable(buildId), null);
+			sentNotifications.incrementAndGet();
+		}
+		
+		long currentTime = System.currentTimeMillis();
+		if (currentTime - metricsTime >= METRICS_INTERVAL) {
+			LogMetrics lastMetrics = logMetrics;
+			double seconds = (currentTime - metricsTime) / 1000.0;
+			long currentIngestedEntries = ingestedEntries.get();
+			long currentSentNotifications = sentNotifications.get();
+			logMetrics = new LogMetrics(currentIngestedEntries, currentSentNotifications, 
+					(currentIngestedEntries - lastMetrics.getIngestedEntries()) / seconds, 
+					(currentSentNotifications - lastMetrics.getSentNotifications()) / seconds);
+			metricsTime = currentTime;
+			logger.debug("Build log entries ingested per second: {}, notifications sent per second: {}", 
+					logMetrics.getIngestedEntriesPerSecond(), logMetrics.getSentNotificationsPerSecond());
+		}
+	}
+
+	@Override
+	public ScheduleBuilder<?> getScheduleBuilder() {
+		return SimpleScheduleBuilder.simpleSchedule().withIntervalInMilliseconds(NOTIFY_INTERVAL).repeatForever();
+	}
+	
+	@Override
+	public LogMetrics getLogMetrics() {
+		return logMetrics;
+	}
+	
 	@Override
 	public InputStream openLogStream(Build2 build) {
+		upgradeLogIfNecessary(build.getProject().getId(), build.getId());
 		return new LogStream(build);
 	}
 
 	class LogStream extends InputStream {
 
-		private ObjectInputStream ois;
+		private DataInputStream is;
+		
+		private int numOfRemainingEntries;
 		
 		private final Lock lock;
 
@@ -303,8 +480,9 @@ public class DefaultLogManager implements LogManager {
 			try {
 				File logFile = getLogFile(build.getProject().getId(), build.getId());
 				
-				if (logFile.exists())
-					ois = new ObjectInputStream(new BufferedInputStream(new FileInputStream(logFile)));
+				numOfRemainingEntries = getNumOfLogEntries(logFile);
+				if (numOfRemainingEntries != 0)
+					is = openLogFile(logFile, 0);
 				
 				LogSnippet snippet = recentSnippets.get(build.getId());
 				if (snippet != null) {
@@ -314,6 +492,7 @@ public class DefaultLogManager implements LogManager {
 					recentBuffer = builder.toString().getBytes(Charsets.UTF_8);
 				}
 			} catch (Exception e) {
+				IOUtils.closeQuietly(is);
 				lock.unlock();
 				throw ExceptionUtils.unchecked(e);
 			}
@@ -339,27 +518,19 @@ public class DefaultLogManager implements LogManager {
 		@Override
 		public int read() throws IOException {
 			if (pos == buffer.length) {
-				if (ois != null) {
-					try {
-						buffer = (renderAsText((LogEntry) ois.readObject()) + "\n").getBytes(Charsets.UTF_8);
-					} catch (EOFException e) {
-						IOUtils.closeQuietly(ois);
-						ois = null;
-						if (recentBuffer != null) {
-							buffer = recentBuffer;
-							recentBuffer = null;
-						} else {
-							return -1;
-						}
-					} catch (ClassNotFoundException e) {
-						throw new RuntimeException(e);
-					}
+				if (is != null && numOfRemainingEntries != 0) {
+					buffer = (renderAsText(readLogEntry(is)) + "\n").getBytes(Charsets.UTF_8);
+					numOfRemainingEntries--;
 				} else if (recentBuffer != null) {
+					IOUtils.closeQuietly(is);
+					is = null;
 					buffer = recentBuffer;
 					recentBuffer = null;
 				} else {
 					return -1;
 				}
+				if (buffer.length == 0)
+					return read();
 				pos = 1;
 				return buffer[0];
 			} else {
@@ -369,7 +540,7 @@ public class DefaultLogManager implements LogManager {
 		
 		@Override
 		public void close() throws IOException {
-			IOUtils.closeQuietly(ois);
+			IOUtils.closeQuietly(is);
 			lock.unlock();
 		}
 				
@@ -42,4 +42,9 @@ public interface LogManager {
 	
 	InputStream openLogStream(Build2 build);
 	
+	/**
+	 * Get metrics of live log streaming
+	 */
+	LogMetrics getLogMetrics();
+	
 }
@@ -0,0 +1,57 @@
+package io.onedev.server.ci.job.log;
+
+import java.io.Serializable;
+
+public class LogMetrics implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	private final long ingestedEntries;
+	
+	private final long sentNotifications;
+	
+	private final double ingestedEntriesPerSecond;
+	
+	private final double sentNotificationsPerSecond;
+	
+	public LogMetrics(long ingestedEntries, long sentNotifications, 
+			double ingestedEntriesPerSecond, double sentNotificationsPerSecond) {
+		this.ingestedEntries = ingestedEntries;
+		this.sentNotifications = sentNotifications;
+		this.ingestedEntriesPerSecond = ingestedEntriesPerSecond;
+		this.sentNotificationsPerSecond = sentNotificationsPerSecond;
+	}
+
+	/**
+	 * @return
+	 * 			total number of log entries ingested since server start
+	 */
+	public long getIngestedEntries() {
+		return ingestedEntries;
+	}
+
+	/**
+	 * @return
+	 * 			total number of log change notifications sent since server start
+	 */
+	public long getSentNotifications() {
+		return sentNotifications;
+	}
+
+	/**
+	 * @return
+	 * 			number of log entries ingested per second during last metrics interval
+	 */
+	public double getIngestedEntriesPerSecond() {
+		return ingestedEntriesPerSecond;
+	}
+
+	/**
+	 * @return
+	 * 			number of log change notifications sent per second during last metrics interval
+	 */
+	public double getSentNotificationsPerSecond() {
+		return sentNotificationsPerSecond;
+	}
+	
+}
@@ -404,9 +404,8 @@ public class DefaultPullRequestManager extends AbstractEntityManager<PullRequest
 
 	private void checkUpdate(PullRequest request) {
 		if (!request.getHeadCommitHash().equals(request.getSource().getObjectName())) {
-			ObjectId mergeBase = GitUtils.getMergeBase(
-					request.getTargetProject().getRepository(), request.getTarget().getObjectId(), 
-					request.getSourceProject().getRepository(), request.getSource().getObjectId(), 
+			ObjectId mergeBase = request.getTargetProject().getMergeBase(request.getTarget().getObjectId(), 
+					request.getSourceProject(), request.getSource().getObjectId(), 
 					GitUtils.branch2ref(request.getSourceBranch()));
 			if (mergeBase != null) {
 				PullRequestUpdate update = new PullRequestUpdate();
@@ -1012,9 +1011,8 @@ public class DefaultPullRequestManager extends AbstractEntityManager<PullRequest
 	@Override
 	public PullRequest open(ProjectAndBranch source, ProjectAndBranch target, MergeStrategy mergeStrategy, 
 			User submitter, String title) {
-		ObjectId baseCommitId = GitUtils.getMergeBase(
-				target.getProject().getRepository(), target.getObjectId(), 
-				source.getProject().getRepository(), source.getObjectId(), 
+		ObjectId baseCommitId = target.getProject().getMergeBase(target.getObjectId(), 
+				source.getProject(), source.getObjectId(), 
 				GitUtils.branch2ref(source.getBranch()));
 		if (baseCommitId != null) {
 			PullRequest request = new PullRequest();
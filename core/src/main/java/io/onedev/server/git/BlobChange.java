@@ -10,11 +10,15 @@ import javax.annotation.Nullable;
 
 import org.eclipse.jgit.diff.DiffEntry;
 import org.eclipse.jgit.diff.DiffEntry.ChangeType;
+import org.eclipse.jgit.lib.ObjectId;
 
 import com.google.common.base.Preconditions;
 
 import io.onedev.commons.jsyntax.Tokenized;
+import io.onedev.server.OneDev;
 import io.onedev.server.util.diff.DiffBlock;
+import io.onedev.server.util.diff.DiffCacheManager;
+import io.onedev.server.util.diff.DiffStat;
 import io.onedev.server.util.diff.DiffUtils;
 import io.onedev.server.util.diff.WhitespaceOption;
 import io.onedev.server.util.diff.DiffMatchPatch.Operation;
@@ -32,6 +36,8 @@ public abstract class BlobChange implements Serializable {
 	
 	private transient List<DiffBlock<Tokenized>> diffBlocks;
 	
+	private transient DiffStat diffStat;
+	
 	public BlobChange(String oldRev, String newRev, DiffEntry diffEntry, 
 			WhitespaceOption whitespaceOption) {
 		if (diffEntry.getChangeType() == ChangeType.RENAME 
@@ -86,51 +92,17 @@ public abstract class BlobChange implements Serializable {
 	public List<DiffBlock<Tokenized>> getDiffBlocks() {
 		if (diffBlocks == null) {
 			try {
-				if (type == ChangeType.ADD || type == ChangeType.COPY) {
-					if (getNewText() != null) {
-						List<String> newLines = getNewText().getLines();
-						if (newLines.size() <= DiffUtils.MAX_DIFF_SIZE) {
-							List<String> oldLines = new ArrayList<>();
-							diffBlocks = DiffUtils.diff(
-									oldLines, "a.txt", 
-									newLines, newBlobIdent.isFile()?newBlobIdent.path:"b.txt", 
-									WhitespaceOption.DEFAULT);
-						} else {
-							diffBlocks = new ArrayList<>();
-						}
-					} else {
-						diffBlocks = new ArrayList<>();
-					}
-				} else if (type == ChangeType.DELETE) {
-					if (getOldText() != null) {
-						List<String> oldLines = getOldText().getLines();
-						if (oldLines.size() <= DiffUtils.MAX_DIFF_SIZE) {
-							List<String> newLines = new ArrayList<>();
-							diffBlocks = DiffUtils.diff(
-									oldLines, oldBlobIdent.isFile()?oldBlobIdent.path:"a.txt", 
-									newLines, "b.txt", 
-									WhitespaceOption.DEFAULT);
-						} else {
-							diffBlocks = new ArrayList<>();
-						}
-					} else {
-						diffBlocks = new ArrayList<>();
-					}
-				} else {
-					if (getOldText() != null && getNewText() != null) {
-						List<String> oldLines = getOldText().getLines();
-						List<String> newLines = getNewText().getLines();
-						if (oldLines.size() + newLines.size() <= DiffUtils.MAX_DIFF_SIZE) {
-							diffBlocks = DiffUtils.diff(
-									oldLines, oldBlobIdent.isFile()?newBlobIdent.path:"a.txt", 
-									newLines, newBlobIdent.isFile()?newBlobIdent.path:"b.txt", 
-									whitespaceOption);
-						} else { 
-							diffBlocks = new ArrayList<>();
-						}
-					} else {
-						diffBlocks = new ArrayList<>();
-					}
+				ObjectId oldBlobId = getOldBlobId();
+				ObjectId newBlobId = getNewBlobId();
+				DiffCacheManager diffCacheManager = OneDev.getInstance(DiffCacheManager.class);
+				String oldFileName = getOldFileName();
+				String newFileName = getNewFileName();
+				diffBlocks = diffCacheManager.getDiffBlocks(oldBlobId, oldFileName, newBlobId, newFileName, 
+						getEffectiveWhitespaceOption());
+				if (diffBlocks == null) {
+					diffBlocks = calcDiffBlocks();
+					diffCacheManager.cacheDiffBlocks(oldBlobId, oldFileName, newBlobId, newFileName, 
+							getEffectiveWhitespaceOption(), diffBlocks);
 				}
 			} catch (Exception e) {
 				throw new RuntimeException("Error calculating diff of file: " + getPath(), e);
@@ -139,22 +111,160 @@ public abstract class BlobChange implements Serializable {
 		return diffBlocks;
 	}
 	
-	public int getAdditions() {
-		int additions = 0;
-		for (DiffBlock<Tokenized> diff: getDiffBlocks()) {
-			if (diff.getOperation() == Operation.INSERT)
-				additions += diff.getUnits().size();
+	private ObjectId getOldBlobId() {
+		return oldBlobIdent.path!=null?getOldBlob().getBlobId():ObjectId.zeroId();
+	}
+	
+	private ObjectId getNewBlobId() {
+		return newBlobIdent.path!=null?getNewBlob().getBlobId():ObjectId.zeroId();
+	}
+	
+	/*
+	 * Added and deleted files are always diffed with default whitespace option 
+	 */
+	private WhitespaceOption getEffectiveWhitespaceOption() {
+		if (type == ChangeType.ADD || type == ChangeType.COPY || type == ChangeType.DELETE)
+			return WhitespaceOption.DEFAULT;
+		else
+			return whitespaceOption;
+	}
+	
+	/*
+	 * File names used to pick syntax tokenizer of each side when calculating diff blocks 
+	 */
+	private String getOldFileName() {
+		if (type == ChangeType.ADD || type == ChangeType.COPY)
+			return "a.txt";
+		else if (type == ChangeType.DELETE)
+			return oldBlobIdent.isFile()?oldBlobIdent.path:"a.txt";
+		else
+			return oldBlobIdent.isFile()?newBlobIdent.path:"a.txt";
+	}
+	
+	private String getNewFileName() {
+		if (type == ChangeType.DELETE)
+			return "b.txt";
+		else
+			return newBlobIdent.isFile()?newBlobIdent.path:"b.txt";
+	}
+	
+	private List<DiffBlock<Tokenized>> calcDiffBlocks() {
+		List<DiffBlock<Tokenized>> diffBlocks;
+		if (type == ChangeType.ADD || type == ChangeType.COPY) {
+			if (getNewText() != null) {
+				List<String> newLines = getNewText().getLines();
+				if (newLines.size() <= DiffUtils.MAX_DIFF_SIZE) {
+					List<String> oldLines = new ArrayList<>();
+					diffBlocks = DiffUtils.diff(
+							oldLines, getOldFileName(), 
+							newLines, getNewFileName(), 
+							WhitespaceOption.DEFAULT);
+				} else {
+					diffBlocks = new ArrayList<>();
+				}
+			} else {
+				diffBlocks = new ArrayList<>();
+			}
+		} else if (type == ChangeType.DELETE) {
+			if (getOldText() != null) {
+				List<String> oldLines = getOldText().getLines();
+				if (oldLines.size() <= DiffUtils.MAX_DIFF_SIZE) {
+					List<String> newLines = new ArrayList<>();
+					diffBlocks = DiffUtils.diff(
+							oldLines, getOldFileName(), 
+							newLines, getNewFileName(), 
+							WhitespaceOption.DEFAULT);
+				} else {
+					diffBlocks = new ArrayList<>();
+				}
+			} else {
+				diffBlocks = new ArrayList<>();
+			}
+		} else {
+			if (getOldText() != null && getNewText() != null) {
+				List<String> oldLines = getOldText().getLines();
+				List<String> newLines = getNewText().getLines();
+				if (oldLines.size() + newLines.size() <= DiffUtils.MAX_DIFF_SIZE) {
+					diffBlocks = DiffUtils.diff(
+							oldLines, getOldFileName(), 
+							newLines, getNewFileName(), 
+							whitespaceOption);
+				} else { 
+					diffBlocks = new ArrayList<>();
+				}
+			} else {
+				diffBlocks = new ArrayList<>();
+			}
+		}
+		return diffBlocks;
+	}
+	
+	/**
+	 * Get number of added and deleted lines. This is much cheaper than {@link #getDiffBlocks()} 
+	 * as syntax tokenization is not involved, and the result is cached across sessions. 
+	 */
+	public DiffStat getDiffStat() {
+		if (diffStat == null) {
+			if (diffBlocks != null) {
+				int additions = 0;
+				int deletions = 0;
+				for (DiffBlock<Tokenized> diff: diffBlocks) {
+					if (diff.getOperation() == Operation.INSERT)
+						additions += diff.getUnits().size();
+					else if (diff.getOperation() == Operation.DELETE)
+						deletions += diff.getUnits().size();
+				}
+				diffStat = new DiffStat(additions, deletions);
+			} else {
+				try {
+					WhitespaceOption effectiveWhitespaceOption = getEffectiveWhitespaceOption();
+					ObjectId oldBlobId = getOldBlobId();
+					ObjectId newBlobId = getNewBlobId();
+					DiffCacheManager diffCacheManager = OneDev.getInstance(DiffCacheManager.class);
+					diffStat = diffCacheManager.getDiffStat(oldBlobId, newBlobId, effectiveWhitespaceOption);
+					if (diffStat == null) {
+						diffStat = calcDiffStat(effectiveWhitespaceOption);
+						diffCacheManager.cacheDiffStat(oldBlobId, newBlobId, effectiveWhitespaceOption, diffStat);
+					}
+				} catch (Exception e) {
+					throw new RuntimeException("Error calculating diff stat of file: " + getPath(), e);
+				}
+			}
 		}
-		return additions;
+		return diffStat;
+	}
+	
+	private DiffStat calcDiffStat(WhitespaceOption effectiveWhitespaceOption) {
+		List<String> oldLines;
+		List<String> newLines;
+		if (type == ChangeType.ADD || type == ChangeType.COPY) {
+			if (getNewText() == null)
+				return new DiffStat(0, 0);
+			oldLines = new ArrayList<>();
+			newLines = getNewText().getLines();
+		} else if (type == ChangeType.DELETE) {
+			if (getOldText() == null)
+				return new DiffStat(0, 0);
+			oldLines = getOldText().getLines();
+			newLines = new ArrayList<>();
+		} else {
+			if (getOldText() == null || getNewText() == null)
+				return new DiffStat(0, 0);
+			oldLines = getOldText().getLines();
+			newLines = getNewText().getLines();
+		}
+		if (oldLines.size() + newLines.size() <= DiffUtils.MAX_DIFF_SIZE)
+			return DiffUtils.getDiffStat(oldLines, newLines, effectiveWhitespaceOption);
+		else
+			return new DiffStat(0, 0);
+	}
+	
+	public int getAdditions() {
+		return getDiffStat().getAdditions();
 	}
 
 	public int getDeletions() {
-		int deletions = 0;
-		for (DiffBlock<Tokenized> diff: getDiffBlocks()) {
-			if (diff.getOperation() == Operation.DELETE)
-				deletions += diff.getUnits().size();
-		}
-		return deletions;
+		return getDiffStat().getDeletions();
 	}
 	
 	public Blob getOldBlob() {
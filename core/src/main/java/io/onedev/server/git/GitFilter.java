@@ -4,7 +4,14 @@ import java.io.File;
 import java.io.IOException;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import javax.inject.Inject;
 import javax.inject.Singleton;
@@ -25,14 +32,16 @@ import org.eclipse.jgit.transport.PacketLineOut;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import io.onedev.commons.utils.concurrent.PrioritizedRunnable;
+import com.google.common.io.CountingInputStream;
+import com.google.common.io.CountingOutputStream;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
 import io.onedev.server.OneDev;
 import io.onedev.server.entitymanager.ProjectManager;
 import io.onedev.server.entitymanager.SettingManager;
 import io.onedev.server.git.command.AdvertiseReceiveRefsCommand;
 import io.onedev.server.git.command.AdvertiseUploadRefsCommand;
 import io.onedev.server.git.command.ReceiveCommand;
-import io.onedev.server.git.command.UploadCommand;
 import io.onedev.server.git.exception.GitException;
 import io.onedev.server.model.Project;
 import io.onedev.server.model.User;
@@ -40,14 +49,13 @@ import io.onedev.server.persistence.annotation.Sessional;
 import io.onedev.server.security.SecurityUtils;
 import io.onedev.server.storage.StorageManager;
 import io.onedev.server.util.serverconfig.ServerConfig;
-import io.onedev.server.util.work.WorkExecutor;
 
 @Singleton
 public class GitFilter implements Filter {
 	
 	private static final Logger logger = LoggerFactory.getLogger(GitFilter.class);
 
-	private static final int PRIORITY = 2;
+	private static final int SC_TOO_MANY_REQUESTS = 429;
 	
 	private static final String INFO_REFS = "info/refs";
 	
@@ -57,21 +65,50 @@ public class GitFilter implements Filter {
 	
 	private final ProjectManager projectManager;
 	
-	private final WorkExecutor workExecutor;
-	
 	private final ServerConfig serverConfig;
 	
 	private final SettingManager configManager;
 	
+	private final UploadPackCache uploadPackCache;
+	
+	/*
+	 * Git transports are served by a dedicated pool so that slow clones and pushes do not 
+	 * occupy threads used by background works such as code indexing
+	 */
+	private final ExecutorService transportExecutor;
+	
+	// permits for transports being served or waiting for a transport thread
+	private final Semaphore transportPermits;
+	
+	/*
+	 * Number of concurrent transports of each user, keyed by user id, or by client address 
+	 * for anonymous users. Entries are removed when their transports finish
+	 */
+	private final Map<String, Integer> userTransports = new HashMap<>();
+	
+	private final AtomicInteger activeUploads = new AtomicInteger(0);
+	
+	private final AtomicInteger activeReceives = new AtomicInteger(0);
+	
+	private final AtomicLong rejectedTransports = new AtomicLong(0);
+	
+	private final AtomicLong bytesServed = new AtomicLong(0);
+	
+	private final AtomicLong bytesReceived = new AtomicLong(0);
+	
 	@Inject
 	public GitFilter(OneDev oneDev, StorageManager storageManager, ProjectManager projectManager, 
-			WorkExecutor workManager, ServerConfig serverConfig, SettingManager configManager) {
+			ServerConfig serverConfig, SettingManager configManager, UploadPackCache uploadPackCache) {
 		this.oneDev = oneDev;
 		this.storageManager = storageManager;
 		this.projectManager = projectManager;
-		this.workExecutor = workManager;
 		this.serverConfig = serverConfig;
 		this.configManager = configManager;
+		this.uploadPackCache = uploadPackCache;
+		
+		transportExecutor = Executors.newFixedThreadPool(serverConfig.getGitTransportThreads(), 
+				new ThreadFactoryBuilder().setNameFormat("git-transport-%d").setDaemon(true).build());
+		transportPermits = new Semaphore(serverConfig.getGitTransportThreads() + serverConfig.getGitTransportQueueSize());
 	}
 	
 	private String getPathInfo(HttpServletRequest request) {
@@ -137,46 +174,114 @@ public class GitFilter implements Filter {
 		
 		File gitDir = storageManager.getProjectGitDir(project.getId());
 
-		if (GitSmartHttpTools.isUploadPack(request)) {
+		boolean upload = GitSmartHttpTools.isUploadPack(request);
+		if (upload) {
 			if (!SecurityUtils.canReadCode(project.getFacade()))
 				throw new UnauthorizedException("You do not have permission to pull from this project.");
-			workExecutor.submit(new PrioritizedRunnable(PRIORITY) {
-				
-				@Override
-				public void run() {
-					try {
-						new UploadCommand(gitDir, environments)
-								.input(ServletUtils.getInputStream(request))
-								.output(response.getOutputStream())
-								.call();
-					} catch (IOException e) {
-						throw new RuntimeException(e);
-					}
-				}
-				
-			}).get();
 		} else {
 			if (!SecurityUtils.canWriteCode(project.getFacade())) {
 				throw new UnauthorizedException("You do not have permission to push to this project.");
 			}
-			workExecutor.submit(new PrioritizedRunnable(PRIORITY) {
-				
-				@Override
-				public void run() {
-					try {
-						new ReceiveCommand(gitDir, environments)
-								.input(ServletUtils.getInputStream(request))
-								.output(response.getOutputStream())
-								.call();
-					} catch (IOException e) {
-						throw new RuntimeException(e);
+		}
+		
+		String userKey = getUserKey(request);
+		if (!acquireUserTransport(userKey)) {
+			rejectedTransports.incrementAndGet();
+			GitSmartHttpTools.sendError(request, response, SC_TOO_MANY_REQUESTS, 
+					"Too many concurrent git requests of current user, please retry later");
+			return;
+		}
+		try {
+			if (!transportPermits.tryAcquire()) {
+				rejectedTransports.incrementAndGet();
+				GitSmartHttpTools.sendError(request, response, HttpServletResponse.SC_SERVICE_UNAVAILABLE, 
+						"Server is busy serving git requests, please retry later");
+				return;
+			}
+			try {
+				CountingInputStream input = new CountingInputStream(ServletUtils.getInputStream(request));
+				Long projectId = project.getId();
+				Future<Long> future = transportExecutor.submit(new Callable<Long>() {
+					
+					@Override
+					public Long call() throws IOException {
+						AtomicInteger activeTransports = upload?activeUploads:activeReceives;
+						activeTransports.incrementAndGet();
+						try {
+							if (upload) {
+								return uploadPackCache.upload(projectId, gitDir, environments, 
+										input, response.getOutputStream());
+							} else {
+								CountingOutputStream output = new CountingOutputStream(response.getOutputStream());
+								new ReceiveCommand(gitDir, environments).input(input).output(output).call();
+								return output.getCount();
+							}
+						} finally {
+							activeTransports.decrementAndGet();
+						}
 					}
+					
+				});
+				try {
+					bytesServed.addAndGet(future.get());
+				} finally {
+					future.cancel(true);
+					bytesReceived.addAndGet(input.getCount());
 				}
-				
-			}).get();
+			} finally {
+				transportPermits.release();
+			}
+		} finally {
+			releaseUserTransport(userKey);
 		}
 	}
 	
+	/*
+	 * All anonymous requests have the same user id, key them by client address instead so 
+	 * that they do not share a single limit. Forwarding headers are not used here as they 
+	 * are controlled by the client, and can be rotated to get around the limit
+	 */
+	private String getUserKey(HttpServletRequest request) {
+		Long userId = User.getCurrentId();
+		if (userId != 0L) {
+			return "user:" + userId;
+		} else {
+			return "address:" + request.getRemoteAddr();
+		}
+	}
+	
+	private boolean acquireUserTransport(String userKey) {
+		synchronized (userTransports) {
+			Integer count = userTransports.get(userKey);
+			if (count == null) 
+				count = 0;
+			if (count < serverConfig.getGitTransportsPerUser()) {
+				userTransports.put(userKey, count+1);
+				return true;
+			} else {
+				return false;
+			}
+		}
+	}
+	
+	private void releaseUserTransport(String userKey) {
+		synchronized (userTransports) {
+			Integer count = userTransports.get(userKey);
+			if (count != null && count > 1)
+				userTransports.put(userKey, count-1);
+			else
+				userTransports.remove(userKey);
+		}
+	}
+	
+	public GitTransportMetrics getMetrics() {
+		int active = activeUploads.get() + activeReceives.get();
+		int admitted = serverConfig.getGitTransportThreads() + serverConfig.getGitTransportQueueSize() 
+				- transportPermits.availablePermits();
+		return new GitTransportMetrics(activeUploads.get(), activeReceives.get(), Math.max(admitted-active, 0), 
+				rejectedTransports.get(), uploadPackCache.getHits(), bytesServed.get(), bytesReceived.get());
+	}
+	
 	private void writeInitial(HttpServletResponse response, String service) throws IOException {
 		doNotCache(response);
 		response.setHeader("Content-Type", "application/x-" + service + "-advertisement");			
@@ -244,6 +349,7 @@ public class GitFilter implements Filter {
 
 	@Override
 	public void destroy() {
+		transportExecutor.shutdownNow();
 	}
 	
 }
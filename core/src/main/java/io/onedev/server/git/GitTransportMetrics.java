@@ -0,0 +1,90 @@
+package io.onedev.server.git;
+
+import java.io.Serializable;
+
+public class GitTransportMetrics implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	private final int activeUploads;
+	
+	private final int activeReceives;
+	
+	private final int waitingTransports;
+	
+	private final long rejectedTransports;
+	
+	private final long cachedUploads;
+	
+	private final long bytesServed;
+	
+	private final long bytesReceived;
+	
+	public GitTransportMetrics(int activeUploads, int activeReceives, int waitingTransports, 
+			long rejectedTransports, long cachedUploads, long bytesServed, long bytesReceived) {
+		this.activeUploads = activeUploads;
+		this.activeReceives = activeReceives;
+		this.waitingTransports = waitingTransports;
+		this.rejectedTransports = rejectedTransports;
+		this.cachedUploads = cachedUploads;
+		this.bytesServed = bytesServed;
+		this.bytesReceived = bytesReceived;
+	}
+
+	/**
+	 * @return
+	 * 			number of clones/fetches being served currently
+	 */
+	public int getActiveUploads() {
+		return activeUploads;
+	}
+
+	/**
+	 * @return
+	 * 			number of pushes being served currently
+	 */
+	public int getActiveReceives() {
+		return activeReceives;
+	}
+
+	/**
+	 * @return
+	 * 			number of admitted transports waiting for a transport thread
+	 */
+	public int getWaitingTransports() {
+		return waitingTransports;
+	}
+
+	/**
+	 * @return
+	 * 			number of transports rejected due to concurrency limits since server start
+	 */
+	public long getRejectedTransports() {
+		return rejectedTransports;
+	}
+
+	/**
+	 * @return
+	 * 			number of clones/fetches served from upload pack cache since server start
+	 */
+	public long getCachedUploads() {
+		return cachedUploads;
+	}
+
+	/**
+	 * @return
+	 * 			total bytes sent to git clients for completed transports since server start
+	 */
+	public long getBytesServed() {
+		return bytesServed;
+	}
+
+	/**
+	 * @return
+	 * 			total bytes received from git clients for completed transports since server start
+	 */
+	public long getBytesReceived() {
+		return bytesReceived;
+	}
+	
+}
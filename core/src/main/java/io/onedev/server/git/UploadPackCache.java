@@ -0,0 +1,370 @@
+package io.onedev.server.git;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.SequenceInputStream;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.Nullable;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.eclipse.jetty.server.HttpOutput;
+import org.eclipse.jgit.lib.ObjectId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.io.ByteStreams;
+
+import io.onedev.commons.launcher.loader.Listen;
+import io.onedev.commons.utils.FileUtils;
+import io.onedev.server.event.RefUpdated;
+import io.onedev.server.event.entity.EntityRemoved;
+import io.onedev.server.git.command.UploadCommand;
+import io.onedev.server.model.Project;
+import io.onedev.server.storage.StorageManager;
+import io.onedev.server.util.serverconfig.ServerConfig;
+
+/**
+ * Caches results of upload pack requests on disk, so that repeated clones/fetches with
+ * identical negotiation can be served from cached pack streams without running git
+ * upload-pack again. Cached results of a project are discarded whenever a ref of the
+ * project is updated, and least recently used results are evicted when total size
+ * exceeds the budget specified by {@link ServerConfig#getUploadPackCacheSize()}.
+ */
+@Singleton
+public class UploadPackCache {
+
+	private static final Logger logger = LoggerFactory.getLogger(UploadPackCache.class);
+
+	private static final String CACHE_DIR = "upload-pack-cache";
+
+	private static final String TEMP_SUFFIX = ".tmp";
+
+	// requests larger than this are not cached, as they normally carry lots of haves
+	private static final int MAX_REQUEST_SIZE = 64*1024;
+
+	private final StorageManager storageManager;
+
+	private final long maxSize;
+
+	// cached files in access order
+	private final LinkedHashMap<File, Long> fileSizes = new LinkedHashMap<>(16, 0.75f, true);
+
+	private final Set<Long> initedProjectIds = ConcurrentHashMap.newKeySet();
+
+	// increased each time cached results of a project are cleared, guarded by fileSizes
+	private final Map<Long, Long> generations = new HashMap<>();
+
+	private long totalSize;
+
+	private final AtomicLong hits = new AtomicLong(0);
+
+	@Inject
+	public UploadPackCache(StorageManager storageManager, ServerConfig serverConfig) {
+		this.storageManager = storageManager;
+		maxSize = serverConfig.getUploadPackCacheSize() * 1024L * 1024L;
+	}
+
+	/**
+	 * Run upload pack for specified request, using cached result if possible.
+	 *
+	 * @return
+	 * 			number of bytes written to output
+	 */
+	public long upload(Long projectId, File gitDir, Map<String, String> environments,
+			InputStream input, OutputStream output) throws IOException {
+		if (maxSize == 0)
+			return doUpload(gitDir, environments, input, output);
+
+		byte[] requestBytes = ByteStreams.toByteArray(ByteStreams.limit(input, MAX_REQUEST_SIZE+1));
+		input = new SequenceInputStream(new ByteArrayInputStream(requestBytes), input);
+		String key = requestBytes.length<=MAX_REQUEST_SIZE?getKey(requestBytes):null;
+		if (key == null)
+			return doUpload(gitDir, environments, input, output);
+
+		File dir = getCacheDir(projectId);
+		File file = new File(dir, key);
+		Long size;
+		synchronized (fileSizes) {
+			size = fileSizes.get(file);
+		}
+		if (size != null) {
+			try (FileChannel channel = FileChannel.open(file.toPath())) {
+				if (output instanceof HttpOutput)
+					((HttpOutput)output).sendContent(channel);
+				else
+					Files.copy(file.toPath(), output);
+				hits.incrementAndGet();
+				return size;
+			} catch (NoSuchFileException e) {
+				// evicted concurrently, run upload pack again
+			}
+		}
+
+		/*
+		 * Refs may be updated while upload pack is running, in which case its result reflects
+		 * old refs and should not be cached
+		 */
+		long generation = getGeneration(projectId);
+		File tempFile = new File(dir, key + "." + Thread.currentThread().getId() + TEMP_SUFFIX);
+		FileUtils.createDir(dir);
+		CachingOutputStream cachingOutput = new CachingOutputStream(output, tempFile, maxSize/4);
+		try {
+			try {
+				new UploadCommand(gitDir, environments).input(input).output(cachingOutput).call();
+			} finally {
+				cachingOutput.close();
+			}
+			if (cachingOutput.isCached()) {
+				try {
+					add(projectId, generation, tempFile, file);
+				} catch (IOException e) {
+					logger.error("Error caching upload pack result", e);
+				}
+			}
+		} finally {
+			FileUtils.deleteFile(tempFile);
+		}
+		return cachingOutput.getCount();
+	}
+
+	private long doUpload(File gitDir, Map<String, String> environments, InputStream input,
+			OutputStream output) {
+		CountingOutputStream countingOutput = new CountingOutputStream(output);
+		new UploadCommand(gitDir, environments).input(input).output(countingOutput).call();
+		return countingOutput.getCount();
+	}
+
+	/*
+	 * Calculate cache key of an upload pack request, with wants, haves and capabilities
+	 * sorted. Return null if the request is not the final round of negotiation, or can
+	 * not be parsed
+	 */
+	@Nullable
+	private String getKey(byte[] requestBytes) {
+		Set<String> wants = new TreeSet<>();
+		Set<String> haves = new TreeSet<>();
+		Set<String> capabilities = new TreeSet<>();
+		Set<String> others = new TreeSet<>();
+		boolean done = false;
+		int pos = 0;
+		while (pos + 4 <= requestBytes.length) {
+			int length;
+			try {
+				length = Integer.parseInt(new String(requestBytes, pos, 4, StandardCharsets.US_ASCII), 16);
+			} catch (NumberFormatException e) {
+				return null;
+			}
+			if (length == 0) {
+				pos += 4;
+				continue;
+			} else if (length < 4 || pos + length > requestBytes.length) {
+				return null;
+			}
+			String line = new String(requestBytes, pos+4, length-4, StandardCharsets.UTF_8).trim();
+			pos += length;
+			if (line.startsWith("want ")) {
+				String[] fields = line.substring("want ".length()).split(" ");
+				if (!ObjectId.isId(fields[0]))
+					return null;
+				wants.add(fields[0]);
+				for (int i=1; i<fields.length; i++)
+					capabilities.add(fields[i]);
+			} else if (line.startsWith("have ")) {
+				haves.add(line.substring("have ".length()));
+			} else if (line.equals("done")) {
+				done = true;
+			} else {
+				others.add(line);
+			}
+		}
+		if (pos != requestBytes.length || !done || wants.isEmpty())
+			return null;
+
+		StringBuilder builder = new StringBuilder();
+		builder.append("wants:").append(wants).append("\n");
+		builder.append("haves:").append(haves).append("\n");
+		builder.append("capabilities:").append(capabilities).append("\n");
+		builder.append("others:").append(others).append("\n");
+		return DigestUtils.sha1Hex(builder.toString().getBytes(StandardCharsets.UTF_8));
+	}
+
+	private File getCacheDir(Long projectId) {
+		File dir = new File(storageManager.getProjectInfoDir(projectId), CACHE_DIR);
+
+		// cached results are not tracked across server restarts
+		if (initedProjectIds.add(projectId) && dir.exists())
+			FileUtils.cleanDir(dir);
+		return dir;
+	}
+
+	private long getGeneration(Long projectId) {
+		synchronized (fileSizes) {
+			return generations.getOrDefault(projectId, 0L);
+		}
+	}
+
+	private void add(Long projectId, long generation, File tempFile, File file) throws IOException {
+		synchronized (fileSizes) {
+			if (getGeneration(projectId) != generation)
+				return;
+			Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+			long size = file.length();
+			Long oldSize = fileSizes.put(file, size);
+			totalSize += size - (oldSize!=null?oldSize:0);
+			for (Iterator<Map.Entry<File, Long>> it = fileSizes.entrySet().iterator();
+					totalSize > maxSize && it.hasNext();) {
+				Map.Entry<File, Long> eldest = it.next();
+				FileUtils.deleteFile(eldest.getKey());
+				totalSize -= eldest.getValue();
+				it.remove();
+			}
+		}
+	}
+
+	private void clear(Long projectId) {
+		if (maxSize != 0) {
+			File dir = new File(storageManager.getProjectInfoDir(projectId), CACHE_DIR);
+			synchronized (fileSizes) {
+				generations.put(projectId, getGeneration(projectId)+1);
+				for (Iterator<Map.Entry<File, Long>> it = fileSizes.entrySet().iterator(); it.hasNext();) {
+					Map.Entry<File, Long> entry = it.next();
+					if (entry.getKey().getParentFile().equals(dir)) {
+						FileUtils.deleteFile(entry.getKey());
+						totalSize -= entry.getValue();
+						it.remove();
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * @return
+	 * 			number of upload pack requests served from cache since server start
+	 */
+	public long getHits() {
+		return hits.get();
+	}
+
+	@Listen
+	public void on(RefUpdated event) {
+		clear(event.getProject().getId());
+	}
+
+	@Listen
+	public void on(EntityRemoved event) {
+		if (event.getEntity() instanceof Project)
+			clear(event.getEntity().getId());
+	}
+
+	private static class CountingOutputStream extends OutputStream {
+
+		protected final OutputStream output;
+
+		private long count;
+
+		CountingOutputStream(OutputStream output) {
+			this.output = output;
+		}
+
+		@Override
+		public void write(int b) throws IOException {
+			output.write(b);
+			count++;
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			output.write(b, off, len);
+			count += len;
+		}
+
+		@Override
+		public void flush() throws IOException {
+			output.flush();
+		}
+
+		long getCount() {
+			return count;
+		}
+
+	}
+
+	/*
+	 * Writes to both the client and a cache file. Caching is abandoned once the stream
+	 * grows beyond specified limit
+	 */
+	private static class CachingOutputStream extends CountingOutputStream {
+
+		private final long limit;
+
+		private OutputStream cacheOutput;
+
+		private boolean cached = true;
+
+		CachingOutputStream(OutputStream output, File cacheFile, long limit) throws IOException {
+			super(output);
+			this.limit = limit;
+			cacheOutput = new FileOutputStream(cacheFile);
+		}
+
+		@Override
+		public void write(int b) throws IOException {
+			super.write(b);
+			if (cacheOutput != null) {
+				cacheOutput.write(b);
+				checkLimit();
+			}
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			super.write(b, off, len);
+			if (cacheOutput != null) {
+				cacheOutput.write(b, off, len);
+				checkLimit();
+			}
+		}
+
+		private void checkLimit() throws IOException {
+			if (getCount() > limit) {
+				cacheOutput.close();
+				cacheOutput = null;
+				cached = false;
+			}
+		}
+
+		@Override
+		public void close() throws IOException {
+			if (cacheOutput != null) {
+				cacheOutput.close();
+				cacheOutput = null;
+			}
+		}
+
+		boolean isCached() {
+			return cached;
+		}
+
+	}
+
+}
@@ -9,12 +9,9 @@ import java.util.Collections;
 import java.util.Comparator;
 import java.util.Date;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.locks.ReadWriteLock;
 import java.util.stream.Collectors;
 
 import javax.annotation.Nullable;
@@ -31,14 +28,12 @@ import javax.persistence.Table;
 import javax.persistence.Version;
 import javax.validation.Valid;
 
-import org.apache.commons.lang3.SerializationUtils;
 import org.apache.shiro.subject.Subject;
 import org.apache.shiro.util.ThreadContext;
 import org.eclipse.jgit.api.CreateBranchCommand;
 import org.eclipse.jgit.api.Git;
 import org.eclipse.jgit.api.TagCommand;
 import org.eclipse.jgit.api.errors.GitAPIException;
-import org.eclipse.jgit.lib.AnyObjectId;
 import org.eclipse.jgit.lib.Constants;
 import org.eclipse.jgit.lib.FileMode;
 import org.eclipse.jgit.lib.ObjectId;
@@ -47,7 +42,6 @@ import org.eclipse.jgit.lib.PersonIdent;
 import org.eclipse.jgit.lib.Ref;
 import org.eclipse.jgit.lib.RefUpdate;
 import org.eclipse.jgit.lib.Repository;
-import org.eclipse.jgit.revwalk.LastCommitsOfChildren;
 import org.eclipse.jgit.revwalk.LastCommitsOfChildren.Value;
 import org.eclipse.jgit.revwalk.RevCommit;
 import org.eclipse.jgit.revwalk.RevTree;
@@ -64,14 +58,14 @@ import com.google.common.base.Preconditions;
 
 import io.onedev.commons.launcher.loader.ListenerRegistry;
 import io.onedev.commons.utils.ExceptionUtils;
-import io.onedev.commons.utils.FileUtils;
-import io.onedev.commons.utils.LockUtils;
 import io.onedev.commons.utils.Range;
 import io.onedev.commons.utils.StringUtils;
 import io.onedev.commons.utils.stringmatch.ChildAwareMatcher;
 import io.onedev.server.OneDev;
+import io.onedev.server.cache.CommitInfoManager;
+import io.onedev.server.cache.LastCommitsManager;
 import io.onedev.server.ci.CISpec;
-import io.onedev.server.ci.detect.CISpecDetector;
+import io.onedev.server.ci.CISpecManager;
 import io.onedev.server.entitymanager.BuildQuerySettingManager;
 import io.onedev.server.entitymanager.CodeCommentQuerySettingManager;
 import io.onedev.server.entitymanager.CommitQuerySettingManager;
@@ -122,7 +116,6 @@ public class Project extends AbstractEntity {
 
 	private static final long serialVersionUID = 1L;
 	
-	private static final int LAST_COMMITS_CACHE_THRESHOLD = 1000;
 	
 	public static final int MAX_UPLOAD_SIZE = 10; // In mega bytes
 	
@@ -652,99 +645,15 @@ public class Project extends AbstractEntity {
 			ciSpecCache = new HashMap<>();
 		Optional<CISpec> ciSpecOpt = ciSpecCache.get(commitId);
 		if (ciSpecOpt == null) {
-			try {
-				Blob blob = getBlob(new BlobIdent(commitId.name(), CISpec.BLOB_PATH, FileMode.TYPE_FILE));
-				ciSpecOpt = Optional.of(CISpec.parse(blob.getBytes()));
-			} catch (ObjectNotFoundException e) {
-				List<CISpecDetector> detectors = new ArrayList<>(OneDev.getExtensions(CISpecDetector.class));
-				detectors.sort(Comparator.comparing(CISpecDetector::getPriority));
-				CISpec ciSpec = null;
-				for (CISpecDetector detector: detectors) {
-					ciSpec = detector.detect(this, commitId);
-					if (ciSpec != null) 
-						break;
-				}
-				ciSpecOpt = Optional.fromNullable(ciSpec);
-			}
+			ciSpecOpt = Optional.fromNullable(OneDev.getInstance(CISpecManager.class).getCISpec(this, commitId));
 			ciSpecCache.put(commitId, ciSpecOpt);
 		}
 		return ciSpecOpt.orNull();
 	}
 	
-	public LastCommitsOfChildren getLastCommitsOfChildren(String revision, @Nullable String path) {
-		if (path == null)
-			path = "";
-		
-		final File cacheDir = new File(
-				OneDev.getInstance(StorageManager.class).getProjectInfoDir(getId()), 
-				"last_commits/" + path + "/onedev_last_commits");
-		
-		final ReadWriteLock lock;
-		try {
-			lock = LockUtils.getReadWriteLock(cacheDir.getCanonicalPath());
-		} catch (IOException e) {
-			throw new RuntimeException(e);
-		}
-		
-		final Set<ObjectId> commitIds = new HashSet<>(); 
-		
-		lock.readLock().lock();
-		try {
-			if (cacheDir.exists()) {
-				for (String each: cacheDir.list()) 
-					commitIds.add(ObjectId.fromString(each));
-			} 	
-		} finally {
-			lock.readLock().unlock();
-		}
-		
-		org.eclipse.jgit.revwalk.LastCommitsOfChildren.Cache cache;
-		if (!commitIds.isEmpty()) {
-			cache = new org.eclipse.jgit.revwalk.LastCommitsOfChildren.Cache() {
-	
-				@SuppressWarnings("unchecked")
-				@Override
-				public Map<String, Value> getLastCommitsOfChildren(ObjectId commitId) {
-					if (commitIds.contains(commitId)) {
-						lock.readLock().lock();
-						try {
-							byte[] bytes = FileUtils.readFileToByteArray(new File(cacheDir, commitId.name()));
-							return (Map<String, Value>) SerializationUtils.deserialize(bytes);
-						} catch (IOException e) {
-							throw new RuntimeException(e);
-						} finally {
-							lock.readLock().unlock();
-						}
-					} else {
-						return null;
-					}
-				}
-				
-			};
-		} else {
-			cache = null;
-		}
-
-		final AnyObjectId commitId = getObjectId(revision);
-		
-		long time = System.currentTimeMillis();
-		LastCommitsOfChildren lastCommits = new LastCommitsOfChildren(getRepository(), commitId, path, cache);
-		long elapsed = System.currentTimeMillis()-time;
-		if (elapsed > LAST_COMMITS_CACHE_THRESHOLD) {
-			lock.writeLock().lock();
-			try {
-				if (!cacheDir.exists())
-					FileUtils.createDir(cacheDir);
-				FileUtils.writeByteArrayToFile(
-						new File(cacheDir, commitId.name()), 
-						SerializationUtils.serialize(lastCommits));
-			} catch (IOException e) {
-				throw new RuntimeException(e);
-			} finally {
-				lock.writeLock().unlock();
-			}
-		}
-		return lastCommits;
+	public Map<String, Value> getLastCommitsOfChildren(String revision, @Nullable String path) {
+		return OneDev.getInstance(LastCommitsManager.class).getLastCommitsOfChildren(this, 
+				getObjectId(revision), path);
 	}
 
 	@Nullable
@@ -819,6 +728,44 @@ public class Project extends AbstractEntity {
 		return getRevCommit(revId, true);
 	}
 	
+	/**
+	 * Check if base commit is merged into tip commit. Cached commit graph is consulted 
+	 * first, and repository will only be walked if it can not decide
+	 */
+	public boolean isMergedInto(ObjectId base, ObjectId tip) {
+		Boolean mergedInto = OneDev.getInstance(CommitInfoManager.class).isAncestor(this, base, tip);
+		if (mergedInto != null)
+			return mergedInto;
+		else
+			return GitUtils.isMergedInto(getRepository(), null, base, tip);
+	}
+	
+	/**
+	 * Get merge base of specified commits. Cached commit graph is consulted first, and 
+	 * repository will only be walked if it can not decide
+	 */
+	@Nullable
+	public ObjectId getMergeBase(ObjectId commit1, ObjectId commit2) {
+		ObjectId mergeBase = OneDev.getInstance(CommitInfoManager.class).getMergeBase(this, commit1, commit2);
+		if (mergeBase != null)
+			return mergeBase;
+		else
+			return GitUtils.getMergeBase(getRepository(), commit1, commit2);
+	}
+	
+	/**
+	 * Get merge base of specified commit of this project and specified commit of other project. 
+	 * Cached commit graph is used if both commits belong to this project 
+	 */
+	@Nullable
+	public ObjectId getMergeBase(ObjectId commit, Project otherProject, ObjectId otherCommit, 
+			@Nullable String otherRef) {
+		if (equals(otherProject))
+			return getMergeBase(commit, otherCommit);
+		else
+			return GitUtils.getMergeBase(getRepository(), commit, otherProject.getRepository(), otherCommit, otherRef);
+	}
+	
 	public List<Ref> getRefs(String prefix) {
 		try {
 			return getRepository().getRefDatabase().getRefsByPrefix(prefix);
@@ -697,7 +697,7 @@ public class PullRequest extends AbstractEntity implements Referenceable {
 	
 	public boolean isMergeIntoTarget() {
 		if (mergedIntoTarget == null) { 
-			mergedIntoTarget = GitUtils.isMergedInto(getTargetProject().getRepository(), null, 
+			mergedIntoTarget = getTargetProject().isMergedInto(
 					ObjectId.fromString(getHeadCommitHash()), getTarget().getObjectId());
 		}
 		return mergedIntoTarget;
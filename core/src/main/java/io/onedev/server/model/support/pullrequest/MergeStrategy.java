@@ -32,7 +32,7 @@ public enum MergeStrategy {
 			Repository repository = request.getTargetProject().getRepository();
 			ObjectId requestHead = request.getHeadCommit();
 			ObjectId targetHead = request.getTarget().getObjectId();
-			if (GitUtils.isMergedInto(repository, null, targetHead, requestHead)) {
+			if (request.getTargetProject().isMergedInto(targetHead, requestHead)) {
 				return requestHead;
 			} else {
 				PersonIdent user = new PersonIdent(OneDev.NAME, "");
@@ -2,8 +2,7 @@ package io.onedev.server.model.support.usermatcher;
 
 import io.onedev.server.model.Project;
 import io.onedev.server.model.User;
-import io.onedev.server.security.permission.ProjectPermission;
-import io.onedev.server.security.permission.ProjectPrivilege;
+import io.onedev.server.security.SecurityUtils;
 import io.onedev.server.web.editable.annotation.Editable;
 
 @Editable(order=200, name="Users allowed to read code")
@@ -13,7 +12,7 @@ public class CodeReaders implements UserMatcher {
 
 	@Override
 	public boolean matches(Project project, User user) {
-		return user.asSubject().isPermitted(new ProjectPermission(project.getFacade(), ProjectPrivilege.CODE_READ));
+		return SecurityUtils.canReadCode(user.getFacade(), project.getFacade());
 	}
 
 }
@@ -9,6 +9,9 @@ import java.util.stream.Collectors;
 import javax.inject.Inject;
 import javax.inject.Singleton;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
 import io.onedev.commons.launcher.loader.Listen;
 import io.onedev.server.cache.UserInfoManager;
 import io.onedev.server.entitymanager.IssueWatchManager;
@@ -22,6 +25,7 @@ import io.onedev.server.event.issue.IssueOpened;
 import io.onedev.server.model.Group;
 import io.onedev.server.model.Issue;
 import io.onedev.server.model.IssueWatch;
+import io.onedev.server.model.Project;
 import io.onedev.server.model.User;
 import io.onedev.server.model.support.NamedQuery;
 import io.onedev.server.model.support.QuerySetting;
@@ -36,6 +40,8 @@ import jersey.repackaged.com.google.common.collect.Lists;
 @Singleton
 public class IssueNotificationManager {
 	
+	private static final Logger logger = LoggerFactory.getLogger(IssueNotificationManager.class);
+	
 	private final MailManager mailManager;
 	
 	private final UrlManager urlManager;
@@ -63,13 +69,18 @@ public class IssueNotificationManager {
 			Issue issue = event.getIssue();
 			User user = event.getUser();
 
-			for (Map.Entry<User, Boolean> entry: new QueryWatchBuilder<Issue>() {
+			QueryWatchBuilder<Issue> watchBuilder = new QueryWatchBuilder<Issue>() {
 
 				@Override
 				protected Issue getEntity() {
 					return issue;
 				}
 
+				@Override
+				protected Project getProject() {
+					return issue.getProject();
+				}
+
 				@Override
 				protected Collection<? extends QuerySetting<?>> getQuerySettings() {
 					return issue.getProject().getIssueQuerySettings();
@@ -85,9 +96,11 @@ public class IssueNotificationManager {
 					return issue.getProject().getIssueSetting().getSavedQuery(name);
 				}
 				
-			}.getWatches().entrySet()) {
+			};
+			logger.debug("Evaluated {} watched queries for issue #{} of project '{}'", 
+					watchBuilder.getEvaluationCount(), issue.getNumber(), issue.getProject().getName());
+			for (Map.Entry<User, Boolean> entry: watchBuilder.getWatches().entrySet()) 
 				watch(issue, entry.getKey(), entry.getValue());
-			}
 			
 			if (user != null)
 				watch(issue, user, true);
@@ -12,6 +12,8 @@ import javax.inject.Singleton;
 
 import org.hibernate.CallbackException;
 import org.hibernate.type.Type;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import com.google.common.collect.Lists;
 
@@ -31,6 +33,7 @@ import io.onedev.server.event.pullrequest.PullRequestEvent;
 import io.onedev.server.event.pullrequest.PullRequestMergePreviewCalculated;
 import io.onedev.server.event.pullrequest.PullRequestUpdated;
 import io.onedev.server.model.Build;
+import io.onedev.server.model.Project;
 import io.onedev.server.model.PullRequest;
 import io.onedev.server.model.PullRequestReview;
 import io.onedev.server.model.PullRequestWatch;
@@ -54,6 +57,8 @@ import io.onedev.server.util.markdown.MentionParser;
 @Singleton
 public class PullRequestNotificationManager implements PersistListener {
 	
+	private static final Logger logger = LoggerFactory.getLogger(PullRequestNotificationManager.class);
+	
 	private final MailManager mailManager;
 	
 	private final UrlManager urlManager;
@@ -82,13 +87,18 @@ public class PullRequestNotificationManager implements PersistListener {
 			PullRequest request = event.getRequest();
 			User user = event.getUser();
 			
-			for(Map.Entry<User, Boolean> entry: new QueryWatchBuilder<PullRequest>() {
+			QueryWatchBuilder<PullRequest> watchBuilder = new QueryWatchBuilder<PullRequest>() {
 
 				@Override
 				protected PullRequest getEntity() {
 					return request;
 				}
 
+				@Override
+				protected Project getProject() {
+					return request.getTargetProject();
+				}
+
 				@Override
 				protected Collection<? extends QuerySetting<?>> getQuerySettings() {
 					return request.getTargetProject().getPullRequestQuerySettings();
@@ -104,9 +114,11 @@ public class PullRequestNotificationManager implements PersistListener {
 					return request.getTargetProject().getSavedPullRequestQuery(name);
 				}
 				
-			}.getWatches().entrySet()) {
-				watch(request, entry.getKey(), entry.getValue());
 			};
+			logger.debug("Evaluated {} watched queries for pull request #{} of project '{}'", 
+					watchBuilder.getEvaluationCount(), request.getNumber(), request.getTargetProject().getName());
+			for (Map.Entry<User, Boolean> entry: watchBuilder.getWatches().entrySet()) 
+				watch(request, entry.getKey(), entry.getValue());
 			
 			if (user != null)
 				watch(request, user, true);
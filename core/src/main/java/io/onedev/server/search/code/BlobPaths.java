@@ -0,0 +1,98 @@
+package io.onedev.server.search.code;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import javax.annotation.Nullable;
+
+import org.eclipse.jgit.lib.FileMode;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevTree;
+import org.eclipse.jgit.treewalk.TreeWalk;
+
+/**
+ * Sorted paths of all files in a git tree, together with their blob ids. It is built with 
+ * a single recursive tree walk, and answers existence of paths via binary search.  
+ */
+public class BlobPaths {
+
+	private final String[] paths;
+	
+	private final ObjectId[] blobIds;
+	
+	private BlobPaths(String[] paths, ObjectId[] blobIds) {
+		this.paths = paths;
+		this.blobIds = blobIds;
+	}
+	
+	public static BlobPaths of(Repository repository, RevTree tree) throws IOException {
+		List<String> paths = new ArrayList<>();
+		List<ObjectId> blobIds = new ArrayList<>();
+		try (TreeWalk treeWalk = new TreeWalk(repository)) {
+			treeWalk.addTree(tree);
+			treeWalk.setRecursive(true);
+			while (treeWalk.next()) {
+				if ((treeWalk.getRawMode(0) & FileMode.TYPE_MASK) == FileMode.TYPE_FILE) {
+					paths.add(treeWalk.getPathString());
+					blobIds.add(treeWalk.getObjectId(0));
+				}
+			}
+		}
+		
+		/*
+		 * Tree walk order is not necessarily the natural order of path strings, so sort 
+		 * explicitly for binary search
+		 */
+		List<Integer> indexes = new ArrayList<>();
+		for (int i=0; i<paths.size(); i++)
+			indexes.add(i);
+		Collections.sort(indexes, new Comparator<Integer>() {
+
+			@Override
+			public int compare(Integer o1, Integer o2) {
+				return paths.get(o1).compareTo(paths.get(o2));
+			}
+			
+		});
+		
+		String[] sortedPaths = new String[indexes.size()];
+		ObjectId[] sortedBlobIds = new ObjectId[indexes.size()];
+		for (int i=0; i<indexes.size(); i++) {
+			sortedPaths[i] = paths.get(indexes.get(i));
+			sortedBlobIds[i] = blobIds.get(indexes.get(i));
+		}
+		return new BlobPaths(sortedPaths, sortedBlobIds);
+	}
+	
+	/**
+	 * Get id of blob at specified path
+	 * 
+	 * @return
+	 * 			id of blob at specified path, or <tt>null</tt> if there is no file at specified path
+	 */
+	@Nullable
+	public ObjectId getBlobId(String path) {
+		int index = Arrays.binarySearch(paths, path);
+		return index>=0?blobIds[index]:null;
+	}
+	
+	public int size() {
+		return paths.length;
+	}
+	
+	/**
+	 * Estimate memory used by this object, in bytes
+	 */
+	public int getWeight() {
+		long weight = 0;
+		for (String path: paths)
+			weight += 2*path.length() + 120;
+		return (int) Math.min(weight, Integer.MAX_VALUE);
+	}
+	
+}
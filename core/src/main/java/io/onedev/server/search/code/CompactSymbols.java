@@ -0,0 +1,569 @@
+package io.onedev.server.search.code;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import javax.annotation.Nullable;
+
+import org.apache.commons.lang.SerializationUtils;
+
+import io.onedev.commons.jsymbol.Symbol;
+
+/**
+ * Compact encoding of symbols extracted from a blob.
+ * <p>
+ * Names and flags of symbols are stored in a header using a string table and variable
+ * length integers, so that symbol queries can be evaluated without decoding any symbol
+ * object. Each symbol object is then stored as a separate chunk, so that accessing a
+ * symbol via {@link #getSymbol(int)} only decodes that symbol and its parents. All symbol
+ * objects are additionally stored as a single deflated stream, so that {@link #getSymbols()}
+ * (used to render outline for instance) decodes them in one pass without per chunk overhead.
+ * <p>
+ * Symbol objects come from the jsymbol library and have no schema of their own, so chunks
+ * still use java serialization, with below adjustments to keep them small:
+ * <ul>
+ * <li>class descriptors are written as indexes into a class name table in the header
+ * <li>symbol name is written as a reference to the name in the header
+ * <li>references to preceding symbols (normally parents) are written as symbol indexes,
+ * 		so that identity of parent symbols is kept after decoding
+ * <li>chunks are deflated with a preset dictionary stored in the header, which consists of
+ * 		the first chunk of each symbol class. This way content repeated between chunks, such
+ * 		as field layouts, enum names and type strings, is stored only once while each chunk
+ * 		can still be inflated on its own
+ * <li>the single stream is written with plain java serialization apart from the class 
+ * 		descriptors, so that it decodes as fast as the old format. It is much smaller than chunks
+ * 		after deflating, as content repeated between symbols is compressed away
+ * </ul>
+ * Layout of encoded bytes:
+ * <pre>
+ * format version (byte)
+ * string count (varint), followed by each string as length (varint) and UTF-8 bytes
+ * class count (varint), followed by each class name as length (varint) and UTF-8 bytes
+ * dictionary length (varint), followed by dictionary bytes
+ * symbol count (varint), followed by each symbol as name index plus one (varint, 0 for
+ * 		null name), flags (byte) and deflated chunk length (varint)
+ * deflated chunks of all symbols
+ * deflated stream of all symbols
+ * </pre>
+ * Bytes of symbols written by old versions via plain java serialization are also accepted
+ * by {@link #decode(byte[], int, int)}.
+ */
+public class CompactSymbols {
+
+	private static final int FORMAT_VERSION = 3;
+
+	private static final int FLAG_PRIMARY = 0x1;
+
+	private static final int FLAG_SEARCHABLE = 0x2;
+
+	private static final int FLAG_LOCAL_IN_HIERARCHY = 0x4;
+
+	private static final int MAX_DICTIONARY_SIZE = 4096;
+
+	private final String[] names;
+
+	private final byte[] flags;
+
+	private final String[] classNames;
+
+	private final ObjectStreamClass[] classDescs;
+
+	private final byte[] bytes;
+
+	private final int dictionaryOffset;
+
+	private final int dictionaryLength;
+
+	// offset of each chunk in bytes, plus end offset of last chunk
+	private final int[] chunkOffsets;
+
+	// end offset of the single stream, which starts at end offset of last chunk
+	private final int streamEnd;
+
+	private final Symbol[] symbols;
+
+	private boolean decoded;
+
+	private CompactSymbols(String[] names, byte[] flags, String[] classNames, byte[] bytes,
+			int dictionaryOffset, int dictionaryLength, int[] chunkOffsets, int streamEnd) {
+		this.names = names;
+		this.flags = flags;
+		this.classNames = classNames;
+		classDescs = new ObjectStreamClass[classNames.length];
+		this.bytes = bytes;
+		this.dictionaryOffset = dictionaryOffset;
+		this.dictionaryLength = dictionaryLength;
+		this.chunkOffsets = chunkOffsets;
+		this.streamEnd = streamEnd;
+		symbols = new Symbol[names.length];
+	}
+
+	private CompactSymbols(List<Symbol> symbols) {
+		names = new String[symbols.size()];
+		flags = new byte[symbols.size()];
+		for (int i=0; i<symbols.size(); i++) {
+			names[i] = symbols.get(i).getName();
+			flags[i] = getFlags(symbols.get(i));
+		}
+		classNames = null;
+		classDescs = null;
+		bytes = null;
+		dictionaryOffset = 0;
+		dictionaryLength = 0;
+		chunkOffsets = null;
+		streamEnd = 0;
+		this.symbols = symbols.toArray(new Symbol[0]);
+		decoded = true;
+	}
+
+	private static byte getFlags(Symbol symbol) {
+		int flags = 0;
+		if (symbol.isPrimary())
+			flags |= FLAG_PRIMARY;
+		if (symbol.isSearchable())
+			flags |= FLAG_SEARCHABLE;
+		if (symbol.isLocalInHierarchy())
+			flags |= FLAG_LOCAL_IN_HIERARCHY;
+		return (byte) flags;
+	}
+
+	public int size() {
+		return names.length;
+	}
+
+	@Nullable
+	public String getName(int index) {
+		return names[index];
+	}
+
+	public boolean isPrimary(int index) {
+		return (flags[index] & FLAG_PRIMARY) != 0;
+	}
+
+	public boolean isSearchable(int index) {
+		return (flags[index] & FLAG_SEARCHABLE) != 0;
+	}
+
+	public boolean isLocalInHierarchy(int index) {
+		return (flags[index] & FLAG_LOCAL_IN_HIERARCHY) != 0;
+	}
+
+	/**
+	 * Get symbol at specified index. Only the chunk of this symbol and chunks of symbols
+	 * it refers to are decoded
+	 */
+	public Symbol getSymbol(int index) {
+		if (symbols[index] == null) {
+			Inflater inflater = new Inflater(true);
+			try {
+				getSymbol(index, inflater);
+			} finally {
+				inflater.end();
+			}
+		}
+		return symbols[index];
+	}
+
+	private Symbol getSymbol(int index, Inflater inflater) {
+		if (symbols[index] == null) {
+			decoded = true;
+			byte[] chunk = inflate(chunkOffsets[index], chunkOffsets[index+1], true, inflater);
+			try (SymbolInputStream is = new SymbolInputStream(new ByteArrayInputStream(chunk), inflater)) {
+				symbols[index] = (Symbol) is.readObject();
+			} catch (IOException | ClassNotFoundException e) {
+				throw new RuntimeException(e);
+			}
+		}
+		return symbols[index];
+	}
+
+	private byte[] inflate(int from, int to, boolean useDictionary, Inflater inflater) {
+		try {
+			inflater.reset();
+			if (useDictionary)
+				inflater.setDictionary(bytes, dictionaryOffset, dictionaryLength);
+			inflater.setInput(bytes, from, to - from);
+			ByteArrayOutputStream baos = new ByteArrayOutputStream();
+			byte[] buffer = new byte[4096];
+			while (!inflater.finished()) {
+				int count = inflater.inflate(buffer);
+				if (count == 0 && (inflater.needsInput() || inflater.needsDictionary()))
+					throw new IllegalStateException("Truncated symbol chunk");
+				baos.write(buffer, 0, count);
+			}
+			return baos.toByteArray();
+		} catch (DataFormatException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * Get all symbols. If no symbol has been accessed individually, they are decoded from the 
+	 * single stream. Otherwise remaining symbols are decoded from their chunks so that symbols 
+	 * already returned keep their identity
+	 */
+	public List<Symbol> getSymbols() {
+		Inflater inflater = new Inflater(true);
+		try {
+			if (!decoded) {
+				decoded = true;
+				byte[] stream = inflate(chunkOffsets[size()], streamEnd, false, inflater);
+				try (SymbolInputStream is = new SymbolInputStream(new ByteArrayInputStream(stream), null)) {
+					for (int i=0; i<size(); i++)
+						symbols[i] = (Symbol) is.readObject();
+				} catch (IOException | ClassNotFoundException e) {
+					throw new RuntimeException(e);
+				}
+			}
+			List<Symbol> symbols = new ArrayList<>(size());
+			for (int i=0; i<size(); i++)
+				symbols.add(getSymbol(i, inflater));
+			return symbols;
+		} finally {
+			inflater.end();
+		}
+	}
+
+	public static byte[] encode(List<Symbol> symbols) {
+		try {
+			Map<String, Integer> stringIndexes = new LinkedHashMap<>();
+			for (Symbol symbol: symbols) {
+				if (symbol.getName() != null && !stringIndexes.containsKey(symbol.getName()))
+					stringIndexes.put(symbol.getName(), stringIndexes.size());
+			}
+
+			Map<Symbol, Integer> symbolIndexes = new IdentityHashMap<>();
+			Map<String, Integer> nameIndexes = new IdentityHashMap<>();
+			for (int i=0; i<symbols.size(); i++) {
+				symbolIndexes.putIfAbsent(symbols.get(i), i);
+				if (symbols.get(i).getName() != null)
+					nameIndexes.putIfAbsent(symbols.get(i).getName(), i);
+			}
+
+			Map<String, Integer> classIndexes = new LinkedHashMap<>();
+			List<byte[]> chunks = new ArrayList<>();
+			ByteArrayOutputStream dictionary = new ByteArrayOutputStream();
+			Set<Class<?>> dictionaryClasses = new HashSet<>();
+			for (int i=0; i<symbols.size(); i++) {
+				ByteArrayOutputStream chunk = new ByteArrayOutputStream();
+				try (SymbolOutputStream os = new SymbolOutputStream(chunk, i, symbolIndexes, 
+						nameIndexes, classIndexes)) {
+					os.writeObject(symbols.get(i));
+				}
+				chunks.add(chunk.toByteArray());
+				if (dictionary.size() + chunk.size() <= MAX_DICTIONARY_SIZE
+						&& dictionaryClasses.add(symbols.get(i).getClass())) {
+					chunk.writeTo(dictionary);
+				}
+			}
+
+			ByteArrayOutputStream stream = new ByteArrayOutputStream();
+			try (SymbolOutputStream os = new SymbolOutputStream(stream, -1, symbolIndexes, 
+					nameIndexes, classIndexes)) {
+				for (Symbol symbol: symbols)
+					os.writeObject(symbol);
+			}
+
+			byte[] dictionaryBytes = dictionary.toByteArray();
+			List<byte[]> deflatedChunks = new ArrayList<>();
+			byte[] deflatedStream;
+			Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION, true);
+			try {
+				for (byte[] chunk: chunks) 
+					deflatedChunks.add(deflate(chunk, dictionaryBytes, deflater));
+				deflatedStream = deflate(stream.toByteArray(), null, deflater);
+			} finally {
+				deflater.end();
+			}
+
+			ByteArrayOutputStream baos = new ByteArrayOutputStream();
+			DataOutputStream os = new DataOutputStream(baos);
+			os.writeByte(FORMAT_VERSION);
+			writeStrings(os, stringIndexes.keySet());
+			writeStrings(os, classIndexes.keySet());
+			writeVarInt(os, dictionaryBytes.length);
+			os.write(dictionaryBytes);
+
+			writeVarInt(os, symbols.size());
+			for (int i=0; i<symbols.size(); i++) {
+				Symbol symbol = symbols.get(i);
+				if (symbol.getName() != null)
+					writeVarInt(os, stringIndexes.get(symbol.getName()) + 1);
+				else
+					writeVarInt(os, 0);
+				os.writeByte(getFlags(symbol));
+				writeVarInt(os, deflatedChunks.get(i).length);
+			}
+			for (byte[] deflatedChunk: deflatedChunks)
+				os.write(deflatedChunk);
+			os.write(deflatedStream);
+			os.flush();
+			return baos.toByteArray();
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	private static byte[] deflate(byte[] bytes, @Nullable byte[] dictionary, Deflater deflater) {
+		deflater.reset();
+		if (dictionary != null)
+			deflater.setDictionary(dictionary);
+		deflater.setInput(bytes);
+		deflater.finish();
+		ByteArrayOutputStream deflated = new ByteArrayOutputStream();
+		byte[] buffer = new byte[4096];
+		while (!deflater.finished()) 
+			deflated.write(buffer, 0, deflater.deflate(buffer));
+		return deflated.toByteArray();
+	}
+
+	@SuppressWarnings("unchecked")
+	public static CompactSymbols decode(byte[] bytes, int offset, int length) {
+		if (length >= 2 && (bytes[offset]&0xff) == 0xac && (bytes[offset+1]&0xff) == 0xed) {
+			// java serialization stream magic, written before compact format is introduced
+			try (ByteArrayInputStream is = new ByteArrayInputStream(bytes, offset, length)) {
+				return new CompactSymbols((List<Symbol>) SerializationUtils.deserialize(is));
+			} catch (IOException e) {
+				throw new RuntimeException(e);
+			}
+		}
+
+		// header is parsed from the array directly as reading it via streams byte by byte is 
+		// noticeably slower for blobs with many symbols
+		HeaderReader reader = new HeaderReader(bytes, offset);
+		int formatVersion = bytes[reader.pos++] & 0xff;
+		if (formatVersion != FORMAT_VERSION)
+			throw new IllegalStateException("Unexpected symbols format version: " + formatVersion);
+
+		String[] strings = reader.readStrings();
+		String[] classNames = reader.readStrings();
+		int dictionaryLength = reader.readVarInt();
+		int dictionaryOffset = reader.pos;
+		reader.pos += dictionaryLength;
+
+		int symbolCount = reader.readVarInt();
+		String[] names = new String[symbolCount];
+		byte[] flags = new byte[symbolCount];
+		int[] chunkLengths = new int[symbolCount];
+		for (int i=0; i<symbolCount; i++) {
+			int nameIndex = reader.readVarInt();
+			if (nameIndex != 0)
+				names[i] = strings[nameIndex-1];
+			flags[i] = bytes[reader.pos++];
+			chunkLengths[i] = reader.readVarInt();
+		}
+
+		int[] chunkOffsets = new int[symbolCount+1];
+		chunkOffsets[0] = reader.pos;
+		for (int i=0; i<symbolCount; i++)
+			chunkOffsets[i+1] = chunkOffsets[i] + chunkLengths[i];
+		return new CompactSymbols(names, flags, classNames, bytes, dictionaryOffset, dictionaryLength,
+				chunkOffsets, offset + length);
+	}
+
+	private static void writeStrings(DataOutput os, Iterable<String> strings) throws IOException {
+		List<byte[]> bytesList = new ArrayList<>();
+		for (String string: strings)
+			bytesList.add(string.getBytes(StandardCharsets.UTF_8));
+		writeVarInt(os, bytesList.size());
+		for (byte[] stringBytes: bytesList) {
+			writeVarInt(os, stringBytes.length);
+			os.write(stringBytes);
+		}
+	}
+
+	private static void writeVarInt(DataOutput os, int value) throws IOException {
+		while ((value & ~0x7f) != 0) {
+			os.writeByte((value & 0x7f) | 0x80);
+			value >>>= 7;
+		}
+		os.writeByte(value);
+	}
+
+	private static int readVarInt(DataInput is) throws IOException {
+		int value = 0;
+		for (int shift=0; ; shift+=7) {
+			int b = is.readUnsignedByte();
+			value |= (b & 0x7f) << shift;
+			if ((b & 0x80) == 0)
+				return value;
+		}
+	}
+
+	private static class HeaderReader {
+
+		private final byte[] bytes;
+
+		private int pos;
+
+		HeaderReader(byte[] bytes, int pos) {
+			this.bytes = bytes;
+			this.pos = pos;
+		}
+
+		int readVarInt() {
+			int value = 0;
+			for (int shift=0; ; shift+=7) {
+				int b = bytes[pos++] & 0xff;
+				value |= (b & 0x7f) << shift;
+				if ((b & 0x80) == 0)
+					return value;
+			}
+		}
+
+		String[] readStrings() {
+			String[] strings = new String[readVarInt()];
+			for (int i=0; i<strings.length; i++) {
+				int length = readVarInt();
+				strings[i] = new String(bytes, pos, length, StandardCharsets.UTF_8);
+				pos += length;
+			}
+			return strings;
+		}
+
+	}
+
+	/*
+	 * Reference to name or object of a symbol in the header. A single class is used for both 
+	 * so that only one extra class descriptor needs to be read for a chunk
+	 */
+	private static class HeaderRef implements Serializable {
+
+		private static final long serialVersionUID = 1L;
+
+		private final int symbolIndex;
+
+		private final boolean name;
+
+		HeaderRef(int symbolIndex, boolean name) {
+			this.symbolIndex = symbolIndex;
+			this.name = name;
+		}
+
+	}
+
+	/*
+	 * Writes chunk of symbol at specified index, or the single stream of all symbols if index 
+	 * is negative, in which case objects are not replaced
+	 */
+	private static class SymbolOutputStream extends ObjectOutputStream {
+
+		private final int index;
+
+		private final Map<Symbol, Integer> symbolIndexes;
+
+		private final Map<String, Integer> nameIndexes;
+
+		private final Map<String, Integer> classIndexes;
+
+		SymbolOutputStream(OutputStream os, int index, Map<Symbol, Integer> symbolIndexes,
+				Map<String, Integer> nameIndexes, Map<String, Integer> classIndexes) throws IOException {
+			super(os);
+			this.index = index;
+			this.symbolIndexes = symbolIndexes;
+			this.nameIndexes = nameIndexes;
+			this.classIndexes = classIndexes;
+			enableReplaceObject(index >= 0);
+		}
+
+		@Override
+		protected void writeStreamHeader() throws IOException {
+		}
+
+		@Override
+		protected void writeClassDescriptor(ObjectStreamClass desc) throws IOException {
+			Integer classIndex = classIndexes.get(desc.getName());
+			if (classIndex == null) {
+				classIndex = classIndexes.size();
+				classIndexes.put(desc.getName(), classIndex);
+			}
+			writeVarInt(this, classIndex);
+		}
+
+		@Override
+		protected Object replaceObject(Object obj) throws IOException {
+			if (obj instanceof String) {
+				Integer nameIndex = nameIndexes.get(obj);
+				if (nameIndex != null)
+					return new HeaderRef(nameIndex, true);
+			} else if (obj instanceof Symbol) {
+				// only refer to preceding symbols so that decoding never runs into a cycle
+				Integer symbolIndex = symbolIndexes.get(obj);
+				if (symbolIndex != null && symbolIndex < index)
+					return new HeaderRef(symbolIndex, false);
+			}
+			return obj;
+		}
+
+	}
+
+	/*
+	 * Reads a chunk, or the single stream if inflater is not specified, in which case objects 
+	 * are not resolved
+	 */
+	private class SymbolInputStream extends ObjectInputStream {
+
+		private final Inflater inflater;
+
+		SymbolInputStream(InputStream is, @Nullable Inflater inflater) throws IOException {
+			super(is);
+			this.inflater = inflater;
+			enableResolveObject(inflater != null);
+		}
+
+		@Override
+		protected void readStreamHeader() throws IOException {
+		}
+
+		@Override
+		protected ObjectStreamClass readClassDescriptor() throws IOException, ClassNotFoundException {
+			int classIndex = readVarInt(this);
+			if (classDescs[classIndex] == null) {
+				Class<?> clazz = Class.forName(classNames[classIndex], false, CompactSymbols.class.getClassLoader());
+				classDescs[classIndex] = ObjectStreamClass.lookupAny(clazz);
+			}
+			return classDescs[classIndex];
+		}
+
+		@Override
+		protected Class<?> resolveClass(ObjectStreamClass desc) throws IOException, ClassNotFoundException {
+			// descriptors returned above are already bound to local classes, avoid the costly
+			// class loader lookup of default implementation
+			Class<?> clazz = desc.forClass();
+			return clazz != null? clazz: super.resolveClass(desc);
+		}
+
+		@Override
+		protected Object resolveObject(Object obj) throws IOException {
+			if (obj instanceof HeaderRef) {
+				HeaderRef ref = (HeaderRef) obj;
+				return ref.name? names[ref.symbolIndex]: getSymbol(ref.symbolIndex, inflater);
+			} else {
+				return obj;
+			}
+		}
+
+	}
+
+}
@@ -19,37 +19,60 @@ import static io.onedev.server.search.code.IndexConstants.NGRAM_SIZE;
 
 import java.io.File;
 import java.io.IOException;
-import java.io.Serializable;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
 
 import javax.inject.Inject;
 import javax.inject.Singleton;
 
 import org.apache.commons.codec.digest.DigestUtils;
-import org.apache.commons.lang.SerializationUtils;
 import org.apache.lucene.document.BinaryDocValuesField;
 import org.apache.lucene.document.Document;
 import org.apache.lucene.document.Field.Store;
+import org.apache.lucene.document.SortedDocValuesField;
 import org.apache.lucene.document.StoredField;
 import org.apache.lucene.document.StringField;
 import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.BinaryDocValues;
 import org.apache.lucene.index.DirectoryReader;
 import org.apache.lucene.index.IndexFormatTooOldException;
 import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.index.IndexWriter;
 import org.apache.lucene.index.IndexWriterConfig;
 import org.apache.lucene.index.IndexWriterConfig.OpenMode;
+import org.apache.lucene.index.LeafReader;
 import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.PostingsEnum;
+import org.apache.lucene.index.SortedDocValues;
+import org.apache.lucene.index.Terms;
+import org.apache.lucene.index.TermsEnum;
 import org.apache.lucene.search.BooleanClause.Occur;
 import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.DocIdSetIterator;
 import org.apache.lucene.search.IndexSearcher;
 import org.apache.lucene.search.SimpleCollector;
 import org.apache.lucene.search.TopDocs;
 import org.apache.lucene.store.Directory;
 import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.util.Bits;
 import org.apache.lucene.util.BytesRef;
 import org.apache.wicket.request.cycle.RequestCycle;
 import org.eclipse.jgit.lib.AnyObjectId;
@@ -65,6 +88,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.google.common.base.Preconditions;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 
 import io.onedev.commons.jsymbol.Symbol;
 import io.onedev.commons.jsymbol.SymbolExtractor;
@@ -78,6 +102,7 @@ import io.onedev.commons.utils.concurrent.Prioritized;
 import io.onedev.server.entitymanager.ProjectManager;
 import io.onedev.server.event.RefUpdated;
 import io.onedev.server.event.system.SystemStarted;
+import io.onedev.server.event.system.SystemStopping;
 import io.onedev.server.git.GitUtils;
 import io.onedev.server.model.Project;
 import io.onedev.server.persistence.SessionManager;
@@ -85,6 +110,7 @@ import io.onedev.server.persistence.annotation.Sessional;
 import io.onedev.server.storage.StorageManager;
 import io.onedev.server.util.ContentDetector;
 import io.onedev.server.util.IndexResult;
+import io.onedev.server.util.serverconfig.ServerConfig;
 import io.onedev.server.util.work.BatchWorkManager;
 import io.onedev.server.util.work.BatchWorker;
 
@@ -97,7 +123,9 @@ public class DefaultIndexManager implements IndexManager {
 	
 	private static final int BACKEND_INDEXING_PRIORITY = 50;
 	
-	private static final int DATA_VERSION = 5;
+	private static final int DATA_VERSION = 9;
+	
+	private static final int WRITE_BATCH_SIZE = 100;
 	
 	private final StorageManager storageManager;
 	
@@ -109,14 +137,23 @@ public class DefaultIndexManager implements IndexManager {
 	
 	private final ListenerRegistry listenerRegistry;
 	
+	private final ExecutorService indexingExecutor;
+	
+	private final int indexingQueueSize;
+	
 	@Inject
 	public DefaultIndexManager(ListenerRegistry listenerRegistry, StorageManager storageManager, 
-			BatchWorkManager batchWorkManager, SessionManager sessionManager, ProjectManager projectManager) {
+			BatchWorkManager batchWorkManager, SessionManager sessionManager, ProjectManager projectManager, 
+			ServerConfig serverConfig) {
 		this.listenerRegistry = listenerRegistry;
 		this.storageManager = storageManager;
 		this.batchWorkManager = batchWorkManager;
 		this.sessionManager = sessionManager;
 		this.projectManager = projectManager;
+		
+		indexingExecutor = Executors.newFixedThreadPool(serverConfig.getIndexingThreads(), 
+				new ThreadFactoryBuilder().setNameFormat("code-indexer-%d").setDaemon(true).build());
+		indexingQueueSize = serverConfig.getIndexingQueueSize();
 	}
 
 	private String getCommitIndexVersion(final IndexSearcher searcher, AnyObjectId commitId) throws IOException {
@@ -145,8 +182,20 @@ public class DefaultIndexManager implements IndexManager {
 		return indexVersion.get();
 	}
 	
+	/*
+	 * Indexing is pipelined: calling thread walks the tree to find blobs to be indexed, 
+	 * blob content loading and symbol extraction are done in parallel by the indexing 
+	 * executor, and resulting documents are written into index in batches by the calling 
+	 * thread again. Number of blobs submitted but not yet written is bounded by the 
+	 * indexing queue size 
+	 */
 	private IndexResult index(Repository repository, AnyObjectId commitId, 
 			IndexWriter writer, final IndexSearcher searcher) throws Exception {
+		long time = System.currentTimeMillis();
+		AtomicLong indexedBytes = new AtomicLong(0);
+		CompletionService<Document> completionService = new ExecutorCompletionService<>(indexingExecutor);
+		Collection<Future<Document>> pendingFutures = new HashSet<>();
+		List<Document> documents = new ArrayList<>();
 		try (	RevWalk revWalk = new RevWalk(repository); 
 				TreeWalk treeWalk = new TreeWalk(repository)) {
 			treeWalk.addTree(revWalk.parseCommit(commitId).getTree());
@@ -168,60 +217,84 @@ public class DefaultIndexManager implements IndexManager {
 				}
 			}
 	
-			int indexed = 0;
-			int checked = 0;
+			Map<String, Collection<String>> changedBlobs = new LinkedHashMap<>();
 			while (treeWalk.next()) {
 				if ((treeWalk.getRawMode(0) & FileMode.TYPE_MASK) == FileMode.TYPE_FILE 
 						&& (treeWalk.getTreeCount() == 1 || !treeWalk.idEqual(0, 1))) {
-					ObjectId blobId = treeWalk.getObjectId(0);
-					String blobPath = treeWalk.getPathString();
-					String blobName = treeWalk.getNameString();
-					
-					BooleanQuery.Builder builder = new BooleanQuery.Builder();
-					builder.add(BLOB_HASH.query(blobId.name()), Occur.MUST);
-					builder.add(BLOB_PATH.query(blobPath), Occur.MUST);
-					BooleanQuery query = builder.build();
-					
-					final AtomicReference<String> blobIndexVersionRef = new AtomicReference<>(null);
-					if (searcher != null) {
-						searcher.search(query, new SimpleCollector() {
-	
-							private LeafReaderContext context;
-	
-							@Override
-							public void collect(int doc) throws IOException {
-								blobIndexVersionRef.set(searcher.doc(context.docBase+doc).get(BLOB_INDEX_VERSION.name()));
-							}
-	
-							@Override
-							protected void doSetNextReader(LeafReaderContext context) throws IOException {
-								this.context = context;
-							}
-	
-							@Override
-							public boolean needsScores() {
-								return false;
-							}
-							
-						});
-						checked++;
+					String blobHash = treeWalk.getObjectId(0).name();
+					Collection<String> blobPaths = changedBlobs.get(blobHash);
+					if (blobPaths == null) {
+						blobPaths = new ArrayList<>();
+						changedBlobs.put(blobHash, blobPaths);
 					}
-	
+					blobPaths.add(treeWalk.getPathString());
+				}
+			}
+			
+			int indexed = 0;
+			int checked = 0;
+			Map<String, Map<String, String>> blobIndexVersions;
+			if (searcher != null) {
+				blobIndexVersions = getBlobIndexVersions(searcher.getIndexReader(), changedBlobs);
+				for (Collection<String> blobPaths: changedBlobs.values())
+					checked += blobPaths.size();
+			} else {
+				blobIndexVersions = new HashMap<>();
+			}
+			
+			for (Map.Entry<String, Collection<String>> entry: changedBlobs.entrySet()) {
+				ObjectId blobId = ObjectId.fromString(entry.getKey());
+				Map<String, String> blobIndexVersionsOfPaths = blobIndexVersions.get(entry.getKey());
+				for (String blobPath: entry.getValue()) {
+					String blobName = blobPath;
+					if (blobPath.indexOf('/') != -1) 
+						blobName = StringUtils.substringAfterLast(blobPath, "/");
 					SymbolExtractor<Symbol> extractor = SymbolExtractorRegistry.getExtractor(blobName);
 					String currentBlobIndexVersion = getIndexVersion(extractor);
-					String blobIndexVersion = blobIndexVersionRef.get();
+					String blobIndexVersion = null;
+					if (blobIndexVersionsOfPaths != null)
+						blobIndexVersion = blobIndexVersionsOfPaths.get(blobPath);
+					boolean needsIndexing;
 					if (blobIndexVersion != null) {
 						if (!blobIndexVersion.equals(currentBlobIndexVersion)) {
-							writer.deleteDocuments(query);
-							indexBlob(writer, repository, extractor, blobId, blobPath);
-							indexed++;
+							// delete old document here instead of in the writing stage, as deletion 
+							// must happen before adding the new document for the same blob
+							BooleanQuery.Builder builder = new BooleanQuery.Builder();
+							builder.add(BLOB_HASH.query(blobId.name()), Occur.MUST);
+							builder.add(BLOB_PATH.query(blobPath), Occur.MUST);
+							writer.deleteDocuments(builder.build());
+							needsIndexing = true;
+						} else {
+							needsIndexing = false;
 						}
 					} else {
-						indexBlob(writer, repository, extractor, blobId, blobPath);
+						needsIndexing = true;
+					}
+					
+					if (needsIndexing) {
+						if (pendingFutures.size() >= indexingQueueSize) 
+							takeDocument(completionService, pendingFutures, documents, writer);
+						pendingFutures.add(completionService.submit(new Callable<Document>() {
+
+							@Override
+							public Document call() throws Exception {
+								return createDocument(repository, extractor, blobId, blobPath, indexedBytes);
+							}
+							
+						}));
 						indexed++;
+						
+						Future<Document> future;
+						while ((future = completionService.poll()) != null)
+							addDocument(future, pendingFutures, documents, writer);
 					}
 				}
 			}
+			
+			while (!pendingFutures.isEmpty())
+				takeDocument(completionService, pendingFutures, documents, writer);
+			if (!documents.isEmpty())
+				writer.addDocuments(documents);
 	
 			// record current commit so that we know which commit has been indexed
 			Document document = new Document();
@@ -236,15 +309,112 @@ public class DefaultIndexManager implements IndexManager {
 			document.add(new StoredField(LAST_COMMIT_HASH.name(), commitId.getName()));
 			writer.updateDocument(META.term(LAST_COMMIT.name()), document);
 			
-			return new IndexResult(checked, indexed);
+			return new IndexResult(checked, indexed, indexedBytes.get(), System.currentTimeMillis() - time);
+		} finally {
+			for (Future<Document> future: pendingFutures)
+				future.cancel(true);
+		}
+	}
+	
+	/**
+	 * Get index versions of specified blobs already in the index. Instead of running a query 
+	 * for each blob, this seeks hashes of all blobs in the term dictionary of each segment, 
+	 * and then reads paths and index versions of matched documents from doc values in a 
+	 * single forward pass
+	 * 
+	 * @param blobs
+	 * 			map of blob hash to blob paths
+	 * @return
+	 * 			map of blob hash to map of blob path to index version. Blobs not indexed yet 
+	 * 			will not be included
+	 */
+	private Map<String, Map<String, String>> getBlobIndexVersions(IndexReader reader, 
+			Map<String, Collection<String>> blobs) throws IOException {
+		Map<String, Map<String, String>> blobIndexVersions = new HashMap<>();
+		
+		List<String> blobHashes = new ArrayList<>(blobs.keySet());
+		Collections.sort(blobHashes);
+		
+		for (LeafReaderContext context: reader.leaves()) {
+			LeafReader leafReader = context.reader();
+			Terms terms = leafReader.terms(BLOB_HASH.name());
+			if (terms == null)
+				continue;
+			
+			TermsEnum termsEnum = terms.iterator();
+			Bits liveDocs = leafReader.getLiveDocs();
+			PostingsEnum postingsEnum = null;
+			SortedMap<Integer, String> blobHashesOfDocs = new TreeMap<>();
+			for (String blobHash: blobHashes) {
+				if (termsEnum.seekExact(new BytesRef(blobHash))) {
+					postingsEnum = termsEnum.postings(postingsEnum, PostingsEnum.NONE);
+					int doc;
+					while ((doc = postingsEnum.nextDoc()) != DocIdSetIterator.NO_MORE_DOCS) {
+						if (liveDocs == null || liveDocs.get(doc))
+							blobHashesOfDocs.put(doc, blobHash);
+					}
+				}
+			}
+			if (blobHashesOfDocs.isEmpty())
+				continue;
+			
+			// doc values can only be iterated forward, hence we visit matched docs in order
+			BinaryDocValues blobPathValues = leafReader.getBinaryDocValues(BLOB_PATH.name());
+			SortedDocValues blobIndexVersionValues = leafReader.getSortedDocValues(BLOB_INDEX_VERSION.name());
+			for (Map.Entry<Integer, String> entry: blobHashesOfDocs.entrySet()) {
+				int doc = entry.getKey();
+				String blobHash = entry.getValue();
+				if (blobPathValues == null || !blobPathValues.advanceExact(doc))
+					continue;
+				String blobPath = blobPathValues.binaryValue().utf8ToString();
+				if (!blobs.get(blobHash).contains(blobPath))
+					continue;
+				
+				String blobIndexVersion;
+				if (blobIndexVersionValues != null && blobIndexVersionValues.advanceExact(doc)) {
+					blobIndexVersion = blobIndexVersionValues.binaryValue().utf8ToString();
+				} else { 
+					// documents written before index version is stored as doc values
+					blobIndexVersion = leafReader.document(doc).get(BLOB_INDEX_VERSION.name());
+				}
+				if (blobIndexVersion != null) {
+					Map<String, String> blobIndexVersionsOfPaths = blobIndexVersions.get(blobHash);
+					if (blobIndexVersionsOfPaths == null) {
+						blobIndexVersionsOfPaths = new HashMap<>();
+						blobIndexVersions.put(blobHash, blobIndexVersionsOfPaths);
+					}
+					blobIndexVersionsOfPaths.put(blobPath, blobIndexVersion);
+				}
+			}
 		}
+		return blobIndexVersions;
+	}
+	
+	private void takeDocument(CompletionService<Document> completionService, 
+			Collection<Future<Document>> pendingFutures, List<Document> documents, 
+			IndexWriter writer) throws InterruptedException, IOException {
+		addDocument(completionService.take(), pendingFutures, documents, writer);
 	}
 	
-	private void indexBlob(IndexWriter writer, Repository repository, 
-			SymbolExtractor<Symbol> extractor, ObjectId blobId, String blobPath) throws IOException {
+	private void addDocument(Future<Document> future, Collection<Future<Document>> pendingFutures, 
+			List<Document> documents, IndexWriter writer) throws InterruptedException, IOException {
+		pendingFutures.remove(future);
+		try {
+			documents.add(future.get());
+		} catch (ExecutionException e) {
+			throw ExceptionUtils.unchecked(e.getCause());
+		}
+		if (documents.size() >= WRITE_BATCH_SIZE) {
+			writer.addDocuments(documents);
+			documents.clear();
+		}
+	}
+	
+	private Document createDocument(Repository repository, SymbolExtractor<Symbol> extractor, 
+			ObjectId blobId, String blobPath, AtomicLong indexedBytes) throws IOException {
 		Document document = new Document();
 		
-		document.add(new StoredField(BLOB_INDEX_VERSION.name(), getIndexVersion(extractor)));
+		document.add(new SortedDocValuesField(BLOB_INDEX_VERSION.name(), new BytesRef(getIndexVersion(extractor))));
 		document.add(new StringField(BLOB_HASH.name(), blobId.name(), Store.NO));
 		document.add(new StringField(BLOB_PATH.name(), blobPath, Store.NO));
 		document.add(new BinaryDocValuesField(BLOB_PATH.name(), new BytesRef(blobPath.getBytes(StandardCharsets.UTF_8))));
@@ -258,6 +428,7 @@ public class DefaultIndexManager implements IndexManager {
 		ObjectLoader objectLoader = repository.open(blobId);
 		if (objectLoader.getSize() <= MAX_INDEXABLE_SIZE) {
 			byte[] bytes = objectLoader.getCachedBytes();
+			indexedBytes.addAndGet(bytes.length);
 			String content = ContentDetector.convertToText(bytes, blobName);
 			if (content != null) {
 				document.add(new TextField(BLOB_TEXT.name(), content, Store.NO));
@@ -283,8 +454,7 @@ public class DefaultIndexManager implements IndexManager {
 								document.add(new StringField(fieldName, fieldValue, Store.NO));
 							}
 						}
-						byte[] bytesOfSymbols = SerializationUtils.serialize((Serializable) symbols);
-						document.add(new StoredField(BLOB_SYMBOL_LIST.name(), bytesOfSymbols));
+						document.add(new StoredField(BLOB_SYMBOL_LIST.name(), CompactSymbols.encode(symbols)));
 					}
 				} 
 			} else {
@@ -294,7 +464,7 @@ public class DefaultIndexManager implements IndexManager {
 			logger.debug("Ignore content of large file '{}'.", blobPath);
 		}
 
-		writer.addDocument(document);
+		return document;
 	}
 	
 	private BatchWorker getBatchWorker(Long projectId, Long forkRootId) {
@@ -334,6 +504,10 @@ public class DefaultIndexManager implements IndexManager {
 				logger.debug("Indexing commit (project: {}, commit: {})", project.getName(), commit.getName());
 				IndexResult indexResult = index(project.getRepository(), commit, writer, searcher);
 				writer.commit();
+				logger.debug("Indexed commit (project: {}, commit: {}, checked blobs: {}, indexed blobs: {}, "
+						+ "blobs/sec: {}, bytes/sec: {})", project.getName(), commit.getName(), 
+						indexResult.getChecked(), indexResult.getIndexed(), 
+						(long)indexResult.getBlobsPerSecond(), (long)indexResult.getBytesPerSecond());
 				return indexResult;
 			} catch (Exception e) {
 				writer.rollback();
@@ -425,6 +599,11 @@ public class DefaultIndexManager implements IndexManager {
 		}
 	}
 	
+	@Listen
+	public void on(SystemStopping event) {
+		indexingExecutor.shutdownNow();
+	}
+	
 	@Sessional
 	@Override
 	public void indexAsync(Project project, ObjectId commit) {
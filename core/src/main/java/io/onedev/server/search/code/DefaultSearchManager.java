@@ -8,37 +8,48 @@ import static io.onedev.server.search.code.FieldConstants.BLOB_SYMBOL_LIST;
 import java.io.IOException;
 import java.nio.channels.ClosedByInterruptException;
 import java.util.ArrayList;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 import java.util.concurrent.atomic.AtomicReference;
 
 import javax.annotation.Nullable;
 import javax.inject.Inject;
 import javax.inject.Singleton;
 
-import org.apache.commons.lang.SerializationUtils;
 import org.apache.lucene.document.Document;
 import org.apache.lucene.index.BinaryDocValues;
 import org.apache.lucene.index.DirectoryReader;
 import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.SortedDocValues;
 import org.apache.lucene.search.BooleanClause.Occur;
 import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.DocIdSetIterator;
 import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Scorer;
 import org.apache.lucene.search.SearcherManager;
 import org.apache.lucene.search.SimpleCollector;
+import org.apache.lucene.search.Weight;
 import org.apache.lucene.store.Directory;
 import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.util.Bits;
 import org.apache.lucene.util.BytesRef;
 import org.eclipse.jgit.lib.ObjectId;
-import org.eclipse.jgit.revwalk.RevTree;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.lib.Repository;
 import org.eclipse.jgit.revwalk.RevWalk;
-import org.eclipse.jgit.treewalk.TreeWalk;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.Weigher;
+
 import io.onedev.commons.jsymbol.Symbol;
 import io.onedev.commons.jsymbol.SymbolExtractorRegistry;
 import io.onedev.commons.launcher.loader.Listen;
@@ -57,16 +68,34 @@ public class DefaultSearchManager implements SearchManager {
 
 	private static final Logger logger = LoggerFactory.getLogger(DefaultSearchManager.class);
 	
+	private static final int MAX_BLOB_PATHS_CACHE_WEIGHT = 64*1024*1024;
+	
 	private final StorageManager storageManager;
 	
 	private final Map<Long, SearcherManager> searcherManagers = new ConcurrentHashMap<>();
 	
 	private final IndexManager indexManager;
 	
+	private final ExecutorService executorService;
+	
+	private final Cache<ObjectId, BlobPaths> blobPathsCache = CacheBuilder.newBuilder()
+			.maximumWeight(MAX_BLOB_PATHS_CACHE_WEIGHT)
+			.weigher(new Weigher<ObjectId, BlobPaths>() {
+
+				@Override
+				public int weigh(ObjectId key, BlobPaths value) {
+					return value.getWeight();
+				}
+				
+			})
+			.build();
+	
 	@Inject
-	public DefaultSearchManager(StorageManager storageManager, IndexManager indexManager) {
+	public DefaultSearchManager(StorageManager storageManager, IndexManager indexManager, 
+			ExecutorService executorService) {
 		this.storageManager = storageManager;
 		this.indexManager = indexManager;
+		this.executorService = executorService;
 	}
 	
 	@Nullable
@@ -104,42 +133,43 @@ public class DefaultSearchManager implements SearchManager {
 		SearcherManager searcherManager = getSearcherManager(project.getForkRoot());
 		if (searcherManager != null) {
 			try {
-				final IndexSearcher searcher = searcherManager.acquire();
+				IndexSearcher searcher = searcherManager.acquire();
 				try {
-					try (RevWalk revWalk = new RevWalk(project.getRepository())){
-						final RevTree revTree = revWalk.parseCommit(commit).getTree();
-						final Set<String> checkedBlobPaths = new HashSet<>();
-						
-						searcher.search(query.asLuceneQuery(), new SimpleCollector() {
-	
-							private BinaryDocValues blobPathValues;
-							
-							@Override
-							public void collect(int doc) throws IOException {
-								if (hits.size() < query.getCount() && !Thread.currentThread().isInterrupted()) {
-									Preconditions.checkState(blobPathValues.advanceExact(doc));
-									String blobPath = blobPathValues.binaryValue().utf8ToString();
-									
-									if (!checkedBlobPaths.contains(blobPath)) {
-										TreeWalk treeWalk = TreeWalk.forPath(project.getRepository(), blobPath, revTree);									
-										if (treeWalk != null)
-											query.collect(searcher, treeWalk, hits);
-										checkedBlobPaths.add(blobPath);
-									}
-								}
-							}
-	
-							@Override
-							protected void doSetNextReader(LeafReaderContext context) throws IOException {
-								blobPathValues  = context.reader().getBinaryDocValues(FieldConstants.BLOB_PATH.name());
-							}
+					BlobPaths blobPaths = getBlobPaths(project, commit);
+					Weight weight = searcher.createNormalizedWeight(query.asLuceneQuery(), false);
+					Set<String> checkedBlobPaths = ConcurrentHashMap.newKeySet();
+					
+					List<LeafReaderContext> leaves = searcher.getIndexReader().leaves();
+					if (leaves.size() == 1) {
+						searchSegment(project.getRepository(), blobPaths, searcher, weight, leaves.get(0), 
+								query, checkedBlobPaths, hits);
+					} else {
+						/*
+						 * Search segments in parallel. Each segment collects hits into the shared 
+						 * hit list, and stops as soon as the list contains enough hits  
+						 */
+						List<Future<?>> futures = new ArrayList<>();
+						try {
+							for (LeafReaderContext leaf: leaves) {
+								futures.add(executorService.submit(new Callable<Void>() {
 
-							@Override
-							public boolean needsScores() {
-								return false;
+									@Override
+									public Void call() throws Exception {
+										searchSegment(project.getRepository(), blobPaths, searcher, weight, 
+												leaf, query, checkedBlobPaths, hits);
+										return null;
+									}
+									
+								}));
 							}
-	
-						});
+							for (Future<?> future: futures)
+								future.get();
+						} catch (ExecutionException e) {
+							throw ExceptionUtils.unchecked(e.getCause());
+						} finally {
+							for (Future<?> future: futures)
+								future.cancel(true);
+						}
 					}
 				} finally {
 					searcherManager.release(searcher);
@@ -151,18 +181,92 @@ public class DefaultSearchManager implements SearchManager {
 		if (Thread.interrupted())
 			throw new InterruptedException();
 
-		return hits;
+		synchronized (hits) {
+			return new ArrayList<>(hits);
+		}
+	}
+	
+	private boolean isDone(BlobQuery query, List<QueryHit> hits) {
+		if (Thread.currentThread().isInterrupted()) {
+			return true;
+		} else {
+			synchronized (hits) {
+				return hits.size() >= query.getCount();
+			}
+		}
+	}
+	
+	private BlobPaths getBlobPaths(Project project, ObjectId commit) throws IOException {
+		try {
+			// key by commit id only as blob paths of a commit are identical across forks
+			return blobPathsCache.get(commit.copy(), new Callable<BlobPaths>() {
+
+				@Override
+				public BlobPaths call() throws Exception {
+					try (RevWalk revWalk = new RevWalk(project.getRepository())) {
+						return BlobPaths.of(project.getRepository(), revWalk.parseCommit(commit).getTree());
+					}
+				}
+				
+			});
+		} catch (ExecutionException e) {
+			throw ExceptionUtils.unchecked(e.getCause());
+		}
+	}
+	
+	private void searchSegment(Repository repository, BlobPaths blobPaths, IndexSearcher searcher, 
+			Weight weight, LeafReaderContext context, BlobQuery query, Set<String> checkedBlobPaths, 
+			List<QueryHit> hits) throws IOException {
+		Scorer scorer = weight.scorer(context);
+		if (scorer != null) {
+			BinaryDocValues blobPathValues = context.reader().getBinaryDocValues(BLOB_PATH.name());
+			Bits liveDocs = context.reader().getLiveDocs();
+			DocIdSetIterator docs = scorer.iterator();
+			try (ObjectReader objectReader = repository.newObjectReader()) {
+				List<QueryHit> blobHits = new ArrayList<>();
+				int doc;
+				while ((doc = docs.nextDoc()) != DocIdSetIterator.NO_MORE_DOCS) {
+					if (isDone(query, hits))
+						return;
+					if (liveDocs == null || liveDocs.get(doc)) {
+						Preconditions.checkState(blobPathValues.advanceExact(doc));
+						String blobPath = blobPathValues.binaryValue().utf8ToString();
+						if (checkedBlobPaths.add(blobPath)) {
+							ObjectId blobId = blobPaths.getBlobId(blobPath);
+							if (blobId != null) {
+								query.collect(searcher, objectReader, blobPath, blobId, blobHits);
+								if (!blobHits.isEmpty()) {
+									synchronized (hits) {
+										for (QueryHit hit: blobHits) {
+											if (hits.size() < query.getCount())
+												hits.add(hit);
+										}
+									}
+									blobHits.clear();
+								}
+							}
+						}
+					}
+				}
+			}
+		}
 	}
 
 	@Override
 	public List<Symbol> getSymbols(Project project, ObjectId blobId, String blobPath) {
+		CompactSymbols symbols = getCompactSymbols(project, blobId, blobPath);
+		return symbols!=null?symbols.getSymbols():null;
+	}
+	
+	@Override
+	public CompactSymbols getCompactSymbols(Project project, ObjectId blobId, String blobPath) {
 		try {
 			SearcherManager searcherManager = getSearcherManager(project.getForkRoot());
 			if (searcherManager != null) {
 				try {
 					IndexSearcher searcher = searcherManager.acquire();
 					try {
-						return getSymbols(searcher, blobId, blobPath);
+						return getCompactSymbols(searcher, blobId, blobPath);
 					} finally {
 						searcherManager.release(searcher);
 					}
@@ -179,6 +283,12 @@ public class DefaultSearchManager implements SearchManager {
 	
 	@Override
 	public List<Symbol> getSymbols(IndexSearcher searcher, ObjectId blobId, String blobPath) {
+		CompactSymbols symbols = getCompactSymbols(searcher, blobId, blobPath);
+		return symbols!=null?symbols.getSymbols():null;
+	}
+	
+	@Override
+	public CompactSymbols getCompactSymbols(IndexSearcher searcher, ObjectId blobId, String blobPath) {
 		BooleanQuery.Builder builder = new BooleanQuery.Builder();
 		builder.add(BLOB_HASH.query(blobId.name()), Occur.MUST);
 		builder.add(BLOB_PATH.query(blobPath), Occur.MUST);
@@ -186,22 +296,24 @@ public class DefaultSearchManager implements SearchManager {
 		BooleanQuery query = builder.build();
 		
 		String indexVersion = indexManager.getIndexVersion(SymbolExtractorRegistry.getExtractor(blobPath));
-		AtomicReference<List<Symbol>> symbolsRef = new AtomicReference<>(null);
+		AtomicReference<CompactSymbols> symbolsRef = new AtomicReference<>(null);
 		if (searcher != null) {
 			try {
 				searcher.search(query, new SimpleCollector() {
 
 					private LeafReaderContext context;
+					
+					private SortedDocValues blobIndexVersionValues;
 
-					@SuppressWarnings("unchecked")
 					@Override
 					public void collect(int doc) throws IOException {
-						Document document = searcher.doc(context.docBase+doc);
-						if (indexVersion.equals(document.get(BLOB_INDEX_VERSION.name()))) {
+						if (blobIndexVersionValues != null && blobIndexVersionValues.advanceExact(doc) 
+								&& indexVersion.equals(blobIndexVersionValues.binaryValue().utf8ToString())) {
+							Document document = searcher.doc(context.docBase+doc);
 							BytesRef bytesRef = document.getBinaryValue(BLOB_SYMBOL_LIST.name());
 							if (bytesRef != null) {
 								try {
-									symbolsRef.set((List<Symbol>) SerializationUtils.deserialize(bytesRef.bytes));
+									symbolsRef.set(CompactSymbols.decode(bytesRef.bytes, bytesRef.offset, bytesRef.length));
 								} catch (Exception e) {
 									logger.error("Error deserializing symbols", e);
 								}
@@ -212,6 +324,7 @@ public class DefaultSearchManager implements SearchManager {
 					@Override
 					protected void doSetNextReader(LeafReaderContext context) throws IOException {
 						this.context = context;
+						blobIndexVersionValues = context.reader().getSortedDocValues(BLOB_INDEX_VERSION.name());
 					}
 
 					@Override
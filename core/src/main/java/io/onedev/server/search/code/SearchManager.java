@@ -33,4 +33,14 @@ public interface SearchManager {
 	@Nullable
 	List<Symbol> getSymbols(IndexSearcher searcher, ObjectId blobId, String blobPath);
 	
+	/**
+	 * Get symbols of specified blob in compact form. Names and flags of returned symbols can 
+	 * be examined without decoding the symbol objects.
+	 */
+	@Nullable
+	CompactSymbols getCompactSymbols(Project project, ObjectId blobId, String blobPath);
+	
+	@Nullable
+	CompactSymbols getCompactSymbols(IndexSearcher searcher, ObjectId blobId, String blobPath);
+	
 }
\ No newline at end of file
@@ -11,7 +11,8 @@ import org.apache.lucene.search.BooleanQuery;
 import org.apache.lucene.search.IndexSearcher;
 import org.apache.lucene.search.Query;
 import org.apache.lucene.search.WildcardQuery;
-import org.eclipse.jgit.treewalk.TreeWalk;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectReader;
 
 import io.onedev.server.search.code.hit.QueryHit;
 
@@ -35,7 +36,11 @@ public abstract class BlobQuery {
 		return count;
 	}
 
-	public abstract void collect(IndexSearcher searcher, TreeWalk treeWalk, List<QueryHit> hits);
+	/**
+	 * Collect hits of this query from specified blob
+	 */
+	public abstract void collect(IndexSearcher searcher, ObjectReader objectReader, String blobPath, ObjectId blobId, 
+			List<QueryHit> hits);
 
 	/**
 	 * Get lucene query representation of this query
@@ -11,7 +11,8 @@ import org.apache.lucene.search.BooleanClause.Occur;
 import org.apache.lucene.search.BooleanQuery;
 import org.apache.lucene.search.IndexSearcher;
 import org.apache.lucene.search.WildcardQuery;
-import org.eclipse.jgit.treewalk.TreeWalk;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectReader;
 
 import com.google.common.base.Preconditions;
 
@@ -38,8 +39,8 @@ public class FileQuery extends BlobQuery {
 	}
 
 	@Override
-	public void collect(IndexSearcher searcher, TreeWalk treeWalk, List<QueryHit> hits) {
-		String blobPath = treeWalk.getPathString();
+	public void collect(IndexSearcher searcher, ObjectReader objectReader, String blobPath, ObjectId blobId, 
+			List<QueryHit> hits) {
 		String blobName = blobPath.substring(blobPath.lastIndexOf('/')+1);
 		if (caseSensitive) {
 			if (WildcardUtils.matchString(fileNames, blobName) 
@@ -14,12 +14,12 @@ import org.apache.lucene.search.BooleanQuery;
 import org.apache.lucene.search.IndexSearcher;
 import org.apache.lucene.search.WildcardQuery;
 import org.eclipse.jgit.lib.ObjectId;
-import org.eclipse.jgit.treewalk.TreeWalk;
+import org.eclipse.jgit.lib.ObjectReader;
 
-import io.onedev.commons.jsymbol.Symbol;
 import io.onedev.commons.utils.Range;
 import io.onedev.commons.utils.stringmatch.WildcardUtils;
 import io.onedev.server.OneDev;
+import io.onedev.server.search.code.CompactSymbols;
 import io.onedev.server.search.code.SearchManager;
 import io.onedev.server.search.code.hit.QueryHit;
 import io.onedev.server.search.code.hit.SymbolHit;
@@ -58,18 +58,19 @@ public class SymbolQuery extends BlobQuery {
 	}
  
 	@Override
-	public void collect(IndexSearcher searcher, TreeWalk treeWalk, List<QueryHit> hits) {
-		String blobPath = treeWalk.getPathString();
-		ObjectId blobId = treeWalk.getObjectId(0);
-		
-		List<Symbol> symbols = OneDev.getInstance(SearchManager.class).getSymbols(searcher, blobId, blobPath);
+	public void collect(IndexSearcher searcher, ObjectReader objectReader, String blobPath, ObjectId blobId, 
+			List<QueryHit> hits) {
+		CompactSymbols symbols = OneDev.getInstance(SearchManager.class).getCompactSymbols(searcher, blobId, blobPath);
 		if (symbols != null) {
-			for (Symbol symbol: symbols) {
+			// match against names and flags in header of compact symbols, and only decode 
+			// symbol objects if there are hits
+			for (int i=0; i<symbols.size(); i++) {
 				if (hits.size() < getCount()) {
-					if ((primary==null || primary.booleanValue() == symbol.isPrimary()) 
-							&& symbol.getName() != null 
-							&& symbol.isSearchable()
-							&& (local == null || local.booleanValue() == symbol.isLocalInHierarchy())) {
+					String symbolName = symbols.getName(i);
+					if ((primary==null || primary.booleanValue() == symbols.isPrimary(i)) 
+							&& symbolName != null 
+							&& symbols.isSearchable(i)
+							&& (local == null || local.booleanValue() == symbols.isLocalInHierarchy(i))) {
 						String normalizedTerm;
 						if (!caseSensitive)
 							normalizedTerm = term.toLowerCase();
@@ -78,9 +79,9 @@ public class SymbolQuery extends BlobQuery {
 						
 						String normalizedSymbolName;
 						if (!caseSensitive)
-							normalizedSymbolName = symbol.getName().toLowerCase();
+							normalizedSymbolName = symbolName.toLowerCase();
 						else
-							normalizedSymbolName = symbol.getName();
+							normalizedSymbolName = symbolName;
 						
 						String normalizedExcludeTerm;
 						if (excludeTerm != null) {
@@ -95,7 +96,7 @@ public class SymbolQuery extends BlobQuery {
 								&& (normalizedExcludeTerm == null || !normalizedSymbolName.equals(normalizedExcludeTerm))
 								&& (excludeBlobPath == null || !excludeBlobPath.equals(blobPath))) {
 							Range match = WildcardUtils.rangeOfMatch(normalizedTerm, normalizedSymbolName);
-							hits.add(new SymbolHit(blobPath, symbol, match));
+							hits.add(new SymbolHit(blobPath, symbols.getSymbol(i), match));
 						}
 					}
 				} else {
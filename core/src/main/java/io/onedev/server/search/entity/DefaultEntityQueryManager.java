@@ -0,0 +1,167 @@
+package io.onedev.server.search.entity;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+import javax.annotation.Nullable;
+import javax.inject.Singleton;
+
+import com.google.common.base.Objects;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+import io.onedev.commons.launcher.loader.Listen;
+import io.onedev.server.event.entity.EntityPersisted;
+import io.onedev.server.event.entity.EntityRemoved;
+import io.onedev.server.model.AbstractEntity;
+import io.onedev.server.model.Build;
+import io.onedev.server.model.Configuration;
+import io.onedev.server.model.Issue;
+import io.onedev.server.model.Milestone;
+import io.onedev.server.model.Project;
+import io.onedev.server.model.Setting;
+import io.onedev.server.model.User;
+
+@Singleton
+public class DefaultEntityQueryManager implements EntityQueryManager {
+
+	private static final int MAX_PARSED_QUERIES = 10000;
+	
+	private final Cache<QueryKey, Optional<EntityQuery<?>>> parsedQueries = CacheBuilder.newBuilder()
+			.maximumSize(MAX_PARSED_QUERIES)
+			.build();
+	
+	private final Map<Long, String> projectNames = new ConcurrentHashMap<>();
+	
+	private final Map<Long, String> userNames = new ConcurrentHashMap<>();
+	
+	@SuppressWarnings("unchecked")
+	@Override
+	public <T extends AbstractEntity> EntityQuery<T> getParsedQuery(Project project, Class<T> entityClass, 
+			String queryString, Function<String, EntityQuery<T>> parser) {
+		QueryKey key = new QueryKey(project.getId(), entityClass, queryString);
+		Optional<EntityQuery<?>> parsedQuery = parsedQueries.getIfPresent(key);
+		if (parsedQuery == null) {
+			try {
+				parsedQuery = Optional.of(parser.apply(queryString));
+			} catch (Exception e) {
+				parsedQuery = Optional.empty();
+			}
+			parsedQueries.put(key, parsedQuery);
+		}
+		return (EntityQuery<T>) parsedQuery.orElse(null);
+	}
+
+	/*
+	 * Parsing resolves users and projects by name, and builds, configurations, milestones 
+	 * and issues by name or number inside the project. Only creation, removal and renaming 
+	 * of these change parse result. Entities living in a project only affect queries of that 
+	 * project, while users and projects may be referenced by queries of any project
+	 */
+	@Nullable
+	private Long getLookupProjectId(AbstractEntity entity) {
+		if (entity instanceof Build)
+			return ((Build) entity).getConfiguration().getProject().getId();
+		else if (entity instanceof Configuration)
+			return ((Configuration) entity).getProject().getId();
+		else if (entity instanceof Milestone)
+			return ((Milestone) entity).getProject().getId();
+		else if (entity instanceof Issue)
+			return ((Issue) entity).getProject().getId();
+		else
+			return null;
+	}
+	
+	private void invalidate(Long projectId) {
+		for (Iterator<QueryKey> it = parsedQueries.asMap().keySet().iterator(); it.hasNext();) {
+			if (it.next().projectId.equals(projectId))
+				it.remove();
+		}
+	}
+	
+	/*
+	 * Persist event does not carry previous state, so names seen last time are remembered 
+	 * to detect renaming. An entity not seen before is treated as renamed
+	 */
+	private boolean isRenamed(AbstractEntity entity) {
+		if (entity instanceof Project) 
+			return !((Project) entity).getName().equals(projectNames.put(entity.getId(), ((Project) entity).getName()));
+		else if (entity instanceof User) 
+			return !((User) entity).getName().equals(userNames.put(entity.getId(), ((User) entity).getName()));
+		else 
+			return false;
+	}
+	
+	private void onCreatedOrRemoved(AbstractEntity entity) {
+		if (entity instanceof User || entity instanceof Project) {
+			parsedQueries.invalidateAll();
+		} else {
+			Long projectId = getLookupProjectId(entity);
+			if (projectId != null)
+				invalidate(projectId);
+		}
+	}
+	
+	@Listen
+	public void on(EntityPersisted event) {
+		AbstractEntity entity = event.getEntity();
+		if (entity instanceof Setting || isRenamed(entity)) {
+			// issue fields and states are defined in settings, and users and projects are referenced by name 
+			parsedQueries.invalidateAll();
+		} else if (event.isNew()) {
+			onCreatedOrRemoved(entity);
+		} else if (entity instanceof Project) {
+			// project may override issue settings 
+			invalidate(entity.getId());
+		}
+	}
+	
+	@Listen
+	public void on(EntityRemoved event) {
+		if (event.getEntity() instanceof Project)
+			projectNames.remove(event.getEntity().getId());
+		else if (event.getEntity() instanceof User)
+			userNames.remove(event.getEntity().getId());
+		
+		if (event.getEntity() instanceof Setting)
+			parsedQueries.invalidateAll();
+		else
+			onCreatedOrRemoved(event.getEntity());
+	}
+	
+	private static class QueryKey {
+		
+		private final Long projectId;
+		
+		private final Class<?> entityClass;
+		
+		private final String queryString;
+		
+		QueryKey(Long projectId, Class<?> entityClass, String queryString) {
+			this.projectId = projectId;
+			this.entityClass = entityClass;
+			this.queryString = queryString;
+		}
+
+		@Override
+		public boolean equals(Object other) {
+			if (!(other instanceof QueryKey))
+				return false;
+			if (this == other)
+				return true;
+			QueryKey otherKey = (QueryKey) other;
+			return projectId.equals(otherKey.projectId) && entityClass == otherKey.entityClass 
+					&& queryString.equals(otherKey.queryString);
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hashCode(projectId, entityClass, queryString);
+		}
+		
+	}
+	
+}
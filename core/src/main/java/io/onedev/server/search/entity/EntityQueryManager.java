@@ -0,0 +1,32 @@
+package io.onedev.server.search.entity;
+
+import java.util.function.Function;
+
+import javax.annotation.Nullable;
+
+import io.onedev.server.model.AbstractEntity;
+import io.onedev.server.model.Project;
+
+public interface EntityQueryManager {
+	
+	/**
+	 * Get parsed query of specified query string, parsing it only if not cached yet. Parsed 
+	 * queries are shared across sessions, and are discarded when entities or settings they 
+	 * may refer to are changed. Returned query should not be modified
+	 * 
+	 * @param project
+	 * 			project the query string is parsed against
+	 * @param entityClass
+	 * 			class of entities the query applies to
+	 * @param queryString
+	 * 			query string to parse
+	 * @param parser
+	 * 			parser to parse the query string if it is not cached
+	 * @return
+	 * 			parsed query, or <tt>null</tt> if query string can not be parsed
+	 */
+	@Nullable
+	<T extends AbstractEntity> EntityQuery<T> getParsedQuery(Project project, Class<T> entityClass, 
+			String queryString, Function<String, EntityQuery<T>> parser);
+	
+}
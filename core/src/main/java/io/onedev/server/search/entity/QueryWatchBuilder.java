@@ -7,7 +7,10 @@ import java.util.Optional;
 
 import javax.annotation.Nullable;
 
+import io.onedev.commons.utils.ClassUtils;
+import io.onedev.server.OneDev;
 import io.onedev.server.model.AbstractEntity;
+import io.onedev.server.model.Project;
 import io.onedev.server.model.User;
 import io.onedev.server.model.support.NamedQuery;
 import io.onedev.server.model.support.QuerySetting;
@@ -16,8 +19,13 @@ public abstract class QueryWatchBuilder<T extends AbstractEntity> {
 	
 	private final Map<String, Optional<EntityQuery<T>>> parsedQueries = new HashMap<>();
 	
+	// match results of queries not depending on current user, shared by all watchers
+	private final Map<String, Boolean> sharedMatches = new HashMap<>();
+	
 	private final Map<User, Boolean> watches = new HashMap<>();
-
+	
+	private int evaluationCount;
+	
 	public QueryWatchBuilder() {
 		for (QuerySetting<?> querySetting: getQuerySettings()) {
 			boolean watched = false;
@@ -40,18 +48,33 @@ public abstract class QueryWatchBuilder<T extends AbstractEntity> {
 		}
 	}
 	
+	@SuppressWarnings("unchecked")
 	private boolean matches(@Nullable NamedQuery namedQuery, User user) {
 		if (namedQuery != null) {
-			Optional<EntityQuery<T>> entityQuery = parsedQueries.get(namedQuery.getQuery());
+			String queryString = namedQuery.getQuery();
+			Optional<EntityQuery<T>> entityQuery = parsedQueries.get(queryString);
 			if (entityQuery == null) {
-				try {
-					entityQuery = Optional.of(parse(namedQuery.getQuery()));
-				} catch (Exception e) {
-					entityQuery = Optional.empty();
+				Class<T> entityClass = (Class<T>) ClassUtils.unproxy(getEntity().getClass());
+				entityQuery = Optional.ofNullable(OneDev.getInstance(EntityQueryManager.class)
+						.getParsedQuery(getProject(), entityClass, queryString, this::parse));
+				parsedQueries.put(queryString, entityQuery);
+			}
+			if (entityQuery.isPresent()) {
+				if (entityQuery.get().needsLogin()) {
+					evaluationCount++;
+					return entityQuery.get().matches(getEntity(), user);
+				} else {
+					Boolean matches = sharedMatches.get(queryString);
+					if (matches == null) {
+						evaluationCount++;
+						matches = entityQuery.get().matches(getEntity(), user);
+						sharedMatches.put(queryString, matches);
+					}
+					return matches;
 				}
-				parsedQueries.put(namedQuery.getQuery(), entityQuery);
+			} else {
+				return false;
 			}
-			return entityQuery.isPresent() && entityQuery.get().matches(getEntity(), user); 
 		} else {
 			return false;
 		}
@@ -59,14 +82,25 @@ public abstract class QueryWatchBuilder<T extends AbstractEntity> {
 	
 	protected abstract T getEntity();
 	
+	protected abstract Project getProject();
+	
 	protected abstract Collection<? extends QuerySetting<?>> getQuerySettings();
 	
 	protected abstract EntityQuery<T> parse(String queryString);
 	
 	protected abstract NamedQuery getSavedProjectQuery(String name);
-
+	
 	public Map<User, Boolean> getWatches() {
 		return watches;
 	}
 	
+	/**
+	 * @return
+	 * 			number of query evaluations performed against the entity. Queries not depending
+	 * 			on current user are evaluated only once no matter how many users watch them
+	 */
+	public int getEvaluationCount() {
+		return evaluationCount;
+	}
+
 }
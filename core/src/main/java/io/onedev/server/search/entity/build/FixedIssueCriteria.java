@@ -11,7 +11,6 @@ import org.eclipse.jgit.lib.ObjectId;
 import io.onedev.server.OneDev;
 import io.onedev.server.cache.CacheManager;
 import io.onedev.server.cache.CommitInfoManager;
-import io.onedev.server.git.GitUtils;
 import io.onedev.server.model.Build;
 import io.onedev.server.model.Issue;
 import io.onedev.server.model.Project;
@@ -51,7 +50,7 @@ public class FixedIssueCriteria extends EntityCriteria<Build> {
 		Collection<ObjectId> fixCommits = getCommitInfoManager().getFixCommits(build.getConfiguration().getProject(), value.getNumber()); 
 		for (ObjectId commit: fixCommits) {
 			ObjectId buildCommit = ObjectId.fromString(build.getCommitHash());
-			if (GitUtils.isMergedInto(build.getConfiguration().getProject().getRepository(), null, commit, buildCommit))
+			if (build.getConfiguration().getProject().isMergedInto(commit, buildCommit))
 				return true;
 		}
 		return false;
@@ -4,6 +4,8 @@ import java.util.Collection;
 
 import javax.persistence.criteria.Predicate;
 
+import io.onedev.server.OneDev;
+import io.onedev.server.entitymanager.BuildManager;
 import io.onedev.server.model.Build;
 import io.onedev.server.model.Issue;
 import io.onedev.server.model.Project;
@@ -15,15 +17,23 @@ public class FixedInCriteria extends IssueCriteria {
 
 	private static final long serialVersionUID = 1L;
 
-	private final Build build;
+	// keep build id instead of build entity, as parsed queries may be cached across sessions 
+	private final Long buildId;
+	
+	private final String buildVersion;
 	
 	public FixedInCriteria(Build build) {
-		this.build = build;
+		buildId = build.getId();
+		buildVersion = build.getVersion();
+	}
+	
+	private Build getBuild() {
+		return OneDev.getInstance(BuildManager.class).load(buildId);
 	}
 
 	@Override
 	public Predicate getPredicate(Project project, QueryBuildContext<Issue> context, User user) {
-		Collection<Long> fixedIssueNumbers = build.getFixedIssueNumbers();
+		Collection<Long> fixedIssueNumbers = getBuild().getFixedIssueNumbers();
 		if (!fixedIssueNumbers.isEmpty())
 			return context.getRoot().get(IssueConstants.ATTR_NUMBER).in(fixedIssueNumbers);
 		else
@@ -32,7 +42,7 @@ public class FixedInCriteria extends IssueCriteria {
 
 	@Override
 	public boolean matches(Issue issue, User user) {
-		return build.getFixedIssueNumbers().contains(issue.getNumber());
+		return getBuild().getFixedIssueNumbers().contains(issue.getNumber());
 	}
 
 	@Override
@@ -42,7 +52,7 @@ public class FixedInCriteria extends IssueCriteria {
 
 	@Override
 	public String toString() {
-		return IssueQuery.getRuleName(IssueQueryLexer.FixedInBuild) + " " + IssueQuery.quote(build.getVersion());
+		return IssueQuery.getRuleName(IssueQueryLexer.FixedInBuild) + " " + IssueQuery.quote(buildVersion);
 	}
 
 }
@@ -5,6 +5,7 @@ import java.util.Collection;
 import java.util.HashSet;
 import java.util.Iterator;
 
+import javax.annotation.Nullable;
 import javax.inject.Inject;
 import javax.inject.Singleton;
 
@@ -25,6 +26,7 @@ import io.onedev.commons.launcher.loader.AppLoader;
 import io.onedev.commons.utils.ExceptionUtils;
 import io.onedev.commons.utils.StringUtils;
 import io.onedev.server.cache.CacheManager;
+import io.onedev.server.cache.UserPrivileges;
 import io.onedev.server.entitymanager.GroupManager;
 import io.onedev.server.entitymanager.MembershipManager;
 import io.onedev.server.entitymanager.SettingManager;
@@ -38,13 +40,11 @@ import io.onedev.server.persistence.annotation.Sessional;
 import io.onedev.server.persistence.annotation.Transactional;
 import io.onedev.server.security.permission.CreateProjects;
 import io.onedev.server.security.permission.ProjectPermission;
+import io.onedev.server.security.permission.ProjectPrivilege;
+import io.onedev.server.security.permission.ProjectPrivileges;
 import io.onedev.server.security.permission.SystemAdministration;
 import io.onedev.server.security.permission.UserAdministration;
-import io.onedev.server.util.facade.GroupAuthorizationFacade;
-import io.onedev.server.util.facade.GroupFacade;
-import io.onedev.server.util.facade.MembershipFacade;
 import io.onedev.server.util.facade.ProjectFacade;
-import io.onedev.server.util.facade.UserAuthorizationFacade;
 import io.onedev.server.util.facade.UserFacade;
 
 @Singleton
@@ -76,57 +76,72 @@ public class OneAuthorizingRealm extends AuthorizingRealm {
     	this.groupManager = groupManager;
     }
 
-	private Collection<Permission> getDefaultPermissions() {
-		Collection<Permission> defaultPermissions = new ArrayList<>();
-		for (ProjectFacade project: cacheManager.getProjects().values()) {
-			if (project.getDefaultPrivilege() != null)
-				defaultPermissions.add(new ProjectPermission(project, project.getDefaultPrivilege().getProjectPrivilege()));
-		}
-		return defaultPermissions;
-	}
-	
 	@Sessional
 	protected Collection<Permission> getObjectPermissionsInSession(Long userId) {
 		Collection<Permission> permissions = new ArrayList<>();
 
 		UserFacade user = null;
-        if (userId != 0L) 
+        if (userId != 0L) {
             user = cacheManager.getUser(userId);
+            // user has been deleted
+            if (user == null)
+            	return permissions;
+        }
         if (user != null) {
-			permissions.addAll(getDefaultPermissions());
+			permissions.add(new ProjectPrivileges(cacheManager.getDefaultPrivileges()));
         	if (user.isRoot()) 
         		permissions.add(new SystemAdministration());
         	permissions.add(new UserAdministration(user));
-           	for (MembershipFacade membership: cacheManager.getMemberships().values()) {
-        		if (membership.getUserId().equals(userId)) {
-        			GroupFacade group = cacheManager.getGroup(membership.getGroupId());
-            		if (group.isAdministrator())
-            			permissions.add(new SystemAdministration());
-            		if (group.isCanCreateProjects())
-            			permissions.add(new CreateProjects());
-            		for (GroupAuthorizationFacade authorization: 
-            				cacheManager.getGroupAuthorizations().values()) {
-            			if (authorization.getGroupId().equals(group.getId())) {
-                			permissions.add(new ProjectPermission(
-                					cacheManager.getProject(authorization.getProjectId()), 
-                					authorization.getPrivilege()));
-            			}
-            		}
-        		}
-        	}
-        	for (UserAuthorizationFacade authorization: cacheManager.getUserAuthorizations().values()) {
-        		if (authorization.getUserId().equals(userId)) {
-            		permissions.add(new ProjectPermission(
-            				cacheManager.getProject(authorization.getProjectId()), 
-            				authorization.getPrivilege()));
-        		}
-        	}
+        	UserPrivileges privileges = cacheManager.getUserPrivileges(userId);
+    		if (privileges.isAdministrator())
+    			permissions.add(new SystemAdministration());
+    		if (privileges.isCanCreateProjects())
+    			permissions.add(new CreateProjects());
+    		permissions.add(new ProjectPrivileges(privileges.getProjectPrivileges()));
         } else if (configManager.getSecuritySetting().isEnableAnonymousAccess()) {
-			permissions.addAll(getDefaultPermissions());
+			permissions.add(new ProjectPrivileges(cacheManager.getDefaultPrivileges()));
         }
 		return permissions;
 	}
 	
+	/**
+	 * Check whether specified user has specified privilege over specified project. This gives 
+	 * the same result as checking {@link ProjectPermission} against subject of the user, but 
+	 * consults the cached privilege index directly without creating any permission objects 
+	 * 
+	 * @param userId
+	 * 			id of the user to check, <tt>null</tt> or <tt>0</tt> for anonymous user. A deleted 
+	 * 			user does not have any privilege
+	 */
+	public boolean hasPrivilege(@Nullable Long userId, ProjectFacade project, ProjectPrivilege privilege) {
+		UserFacade user = null;
+		if (userId != null && userId != 0L) {
+			user = cacheManager.getUser(userId);
+			if (user == null)
+				return false;
+		}
+		if (user == null && !configManager.getSecuritySetting().isEnableAnonymousAccess())
+			return false;
+		
+		ProjectPrivilege defaultPrivilege = cacheManager.getDefaultPrivileges().get(project.getId());
+		if (defaultPrivilege != null && defaultPrivilege.implies(privilege))
+			return true;
+		if (user == null)
+			return false;
+		if (user.isRoot())
+			return true;
+		
+		UserPrivileges privileges = cacheManager.getUserPrivileges(user.getId());
+		if (privileges.isAdministrator())
+			return true;
+		ProjectPrivilege projectPrivilege = privileges.getProjectPrivileges().get(project.getId());
+		return projectPrivilege != null && projectPrivilege.implies(privilege);
+	}
+	
+	public boolean canReadCode(@Nullable Long userId, ProjectFacade project) {
+		return hasPrivilege(userId, project, ProjectPrivilege.CODE_READ);
+	}
+	
 	@Override
 	protected AuthorizationInfo doGetAuthorizationInfo(PrincipalCollection principals) {
 		return new AuthorizationInfo() {
@@ -2,7 +2,6 @@ package io.onedev.server.security;
 
 import java.util.Collection;
 import java.util.HashSet;
-import java.util.Set;
 
 import javax.annotation.Nullable;
 
@@ -29,11 +28,7 @@ import io.onedev.server.security.permission.ProjectPermission;
 import io.onedev.server.security.permission.ProjectPrivilege;
 import io.onedev.server.security.permission.SystemAdministration;
 import io.onedev.server.security.permission.UserAdministration;
-import io.onedev.server.util.facade.GroupAuthorizationFacade;
-import io.onedev.server.util.facade.GroupFacade;
-import io.onedev.server.util.facade.MembershipFacade;
 import io.onedev.server.util.facade.ProjectFacade;
-import io.onedev.server.util.facade.UserAuthorizationFacade;
 import io.onedev.server.util.facade.UserFacade;
 
 public class SecurityUtils extends org.apache.shiro.SecurityUtils {
@@ -41,33 +36,16 @@ public class SecurityUtils extends org.apache.shiro.SecurityUtils {
 	public static Collection<UserFacade> getAuthorizedUsers(ProjectFacade project, ProjectPrivilege privilege) {
 		Collection<UserFacade> authorizedUsers = new HashSet<>();
 		CacheManager cacheManager = OneDev.getInstance(CacheManager.class);
-		if (project.getDefaultPrivilege() != null && project.getDefaultPrivilege().getProjectPrivilege().implies(privilege)) {
+		Collection<Long> authorizedUserIds = cacheManager.getAuthorizedUserIds(project.getId(), privilege);
+		if (authorizedUserIds == null) {
 			authorizedUsers.addAll(cacheManager.getUsers().values());
 		} else {
-			authorizedUsers.add(OneDev.getInstance(UserManager.class).getRoot().getFacade());
-
-			Set<Long> authorizedGroupIds = new HashSet<>();
-			for (GroupFacade group: cacheManager.getGroups().values()) {
-				if (group.isAdministrator()) 
-					authorizedGroupIds.add(group.getId());
-			}
-			for (GroupAuthorizationFacade authorization: cacheManager.getGroupAuthorizations().values()) {
-				if (authorization.getProjectId().equals(project.getId()) && authorization.getPrivilege().implies(privilege))
-					authorizedGroupIds.add(authorization.getGroupId());
-			}
-			for (MembershipFacade membership: cacheManager.getMemberships().values()) {
-				if (authorizedGroupIds.contains(membership.getGroupId()))
-					authorizedUsers.add(cacheManager.getUser(membership.getUserId()));
-			}
-
-			for (UserAuthorizationFacade authorization: cacheManager.getUserAuthorizations().values()) {
-				if (authorization.getProjectId().equals(project.getId()) 
-						&& authorization.getPrivilege().implies(privilege)) {
-					authorizedUsers.add(cacheManager.getUser(authorization.getUserId()));
-				}
+			for (Long userId: authorizedUserIds) {
+				UserFacade user = cacheManager.getUser(userId);
+				if (user != null)
+					authorizedUsers.add(user);
 			}
 		}
-
 		return authorizedUsers;
 	}
 	
@@ -130,6 +108,10 @@ public class SecurityUtils extends org.apache.shiro.SecurityUtils {
 		return getSubject().isPermitted(new ProjectPermission(project, ProjectPrivilege.CODE_READ));
 	}
 	
+	public static boolean canReadCode(@Nullable UserFacade user, ProjectFacade project) {
+		return OneDev.getInstance(OneAuthorizingRealm.class).canReadCode(user!=null?user.getId():null, project);
+	}
+	
 	public static boolean canWriteCode(ProjectFacade project) {
 		return getSubject().isPermitted(new ProjectPermission(project, ProjectPrivilege.CODE_WRITE));
 	}
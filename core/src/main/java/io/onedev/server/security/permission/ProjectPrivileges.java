@@ -0,0 +1,34 @@
+package io.onedev.server.security.permission;
+
+import java.util.Map;
+
+import org.apache.shiro.authz.Permission;
+
+/**
+ * Grants privileges on a set of projects with a single permission object, 
+ * instead of materializing a {@link ProjectPermission} for each project  
+ */
+public class ProjectPrivileges implements Permission {
+
+	private final Map<Long, ProjectPrivilege> privileges;
+	
+	public ProjectPrivileges(Map<Long, ProjectPrivilege> privileges) {
+		this.privileges = privileges;
+	}
+	
+	public Map<Long, ProjectPrivilege> getPrivileges() {
+		return privileges;
+	}
+
+	@Override
+	public boolean implies(Permission p) {
+		if (p instanceof ProjectPermission) {
+			ProjectPermission projectPermission = (ProjectPermission) p;
+			ProjectPrivilege privilege = privileges.get(projectPermission.getProject().getId());
+			return privilege != null && privilege.implies(projectPermission.getPrivilege());
+		} else {
+			return false;
+		}
+	}
+
+}
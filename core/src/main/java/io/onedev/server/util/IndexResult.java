@@ -6,9 +6,19 @@ public class IndexResult {
 	
 	private int indexed;
 	
+	private long indexedBytes;
+	
+	private long elapsed;
+	
 	public IndexResult(int checked, int indexed) {
+		this(checked, indexed, 0, 0);
+	}
+	
+	public IndexResult(int checked, int indexed, long indexedBytes, long elapsed) {
 		this.checked = checked;
 		this.indexed = indexed;
+		this.indexedBytes = indexedBytes;
+		this.elapsed = elapsed;
 	}
 
 	public int getChecked() {
@@ -26,5 +36,33 @@ public class IndexResult {
 	public void setIndexed(int indexed) {
 		this.indexed = indexed;
 	}
+
+	public long getIndexedBytes() {
+		return indexedBytes;
+	}
+
+	public void setIndexedBytes(long indexedBytes) {
+		this.indexedBytes = indexedBytes;
+	}
+
+	/**
+	 * @return
+	 * 			time spent on indexing in milliseconds
+	 */
+	public long getElapsed() {
+		return elapsed;
+	}
+
+	public void setElapsed(long elapsed) {
+		this.elapsed = elapsed;
+	}
+	
+	public double getBlobsPerSecond() {
+		return elapsed != 0? indexed * 1000.0 / elapsed: 0;
+	}
+	
+	public double getBytesPerSecond() {
+		return elapsed != 0? indexedBytes * 1000.0 / elapsed: 0;
+	}
 	
 }
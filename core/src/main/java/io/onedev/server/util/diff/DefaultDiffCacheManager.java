@@ -0,0 +1,156 @@
+package io.onedev.server.util.diff;
+
+import java.util.Collections;
+import java.util.List;
+
+import javax.inject.Singleton;
+
+import org.eclipse.jgit.lib.ObjectId;
+
+import com.google.common.base.Objects;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.cache.Weigher;
+
+import io.onedev.commons.jsyntax.Tokenized;
+
+@Singleton
+public class DefaultDiffCacheManager implements DiffCacheManager {
+
+	private static final int MAX_DIFF_STATS = 100000;
+	
+	// maximum estimated bytes of cached diff blocks
+	private static final long MAX_DIFF_BLOCKS_WEIGHT = 64*1024*1024L;
+	
+	private final Cache<DiffKey, DiffStat> diffStats = CacheBuilder.newBuilder()
+			.maximumSize(MAX_DIFF_STATS)
+			.build();
+	
+	private final Cache<DiffBlocksKey, List<DiffBlock<Tokenized>>> diffBlocks = CacheBuilder.newBuilder()
+			.maximumWeight(MAX_DIFF_BLOCKS_WEIGHT)
+			.weigher(new Weigher<DiffBlocksKey, List<DiffBlock<Tokenized>>>() {
+
+				@Override
+				public int weigh(DiffBlocksKey key, List<DiffBlock<Tokenized>> value) {
+					return estimateWeight(value);
+				}
+				
+			})
+			.recordStats()
+			.build();
+	
+	@Override
+	public DiffStat getDiffStat(ObjectId oldBlobId, ObjectId newBlobId, WhitespaceOption whitespaceOption) {
+		return diffStats.getIfPresent(new DiffKey(oldBlobId, newBlobId, whitespaceOption));
+	}
+
+	@Override
+	public void cacheDiffStat(ObjectId oldBlobId, ObjectId newBlobId, WhitespaceOption whitespaceOption, 
+			DiffStat diffStat) {
+		diffStats.put(new DiffKey(oldBlobId, newBlobId, whitespaceOption), diffStat);
+	}
+	
+	@Override
+	public List<DiffBlock<Tokenized>> getDiffBlocks(ObjectId oldBlobId, String oldFileName, 
+			ObjectId newBlobId, String newFileName, WhitespaceOption whitespaceOption) {
+		return diffBlocks.getIfPresent(new DiffBlocksKey(
+				new DiffKey(oldBlobId, newBlobId, whitespaceOption), oldFileName, newFileName));
+	}
+
+	@Override
+	public void cacheDiffBlocks(ObjectId oldBlobId, String oldFileName, ObjectId newBlobId, String newFileName, 
+			WhitespaceOption whitespaceOption, List<DiffBlock<Tokenized>> diffBlocks) {
+		this.diffBlocks.put(new DiffBlocksKey(new DiffKey(oldBlobId, newBlobId, whitespaceOption), 
+				oldFileName, newFileName), Collections.unmodifiableList(diffBlocks));
+	}
+
+	@Override
+	public DiffCacheMetrics getMetrics() {
+		CacheStats stats = diffBlocks.stats();
+		long memoryFootprint = 0;
+		for (List<DiffBlock<Tokenized>> value: diffBlocks.asMap().values())
+			memoryFootprint += estimateWeight(value);
+		return new DiffCacheMetrics(stats.hitCount(), stats.missCount(), diffBlocks.size(), memoryFootprint);
+	}
+	
+	/*
+	 * Estimate memory footprint of diff blocks, counting line text and tokens 
+	 */
+	private static int estimateWeight(List<DiffBlock<Tokenized>> diffBlocks) {
+		long weight = 64;
+		for (DiffBlock<Tokenized> block: diffBlocks) {
+			weight += 64;
+			for (Tokenized line: block.getUnits()) 
+				weight += 96 + 2L*line.getText().length() + 8L*line.getTokens().length;
+		}
+		return (int) Math.min(weight, Integer.MAX_VALUE);
+	}
+	
+	private static class DiffKey {
+		
+		private final ObjectId oldBlobId;
+		
+		private final ObjectId newBlobId;
+		
+		private final WhitespaceOption whitespaceOption;
+		
+		DiffKey(ObjectId oldBlobId, ObjectId newBlobId, WhitespaceOption whitespaceOption) {
+			this.oldBlobId = oldBlobId.copy();
+			this.newBlobId = newBlobId.copy();
+			this.whitespaceOption = whitespaceOption;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (obj instanceof DiffKey) {
+				DiffKey key = (DiffKey) obj;
+				return oldBlobId.equals(key.oldBlobId) 
+						&& newBlobId.equals(key.newBlobId) 
+						&& whitespaceOption == key.whitespaceOption;
+			} else {
+				return false;
+			}
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hashCode(oldBlobId, newBlobId, whitespaceOption);
+		}
+		
+	}
+	
+	private static class DiffBlocksKey {
+		
+		private final DiffKey diffKey;
+		
+		private final String oldFileName;
+		
+		private final String newFileName;
+		
+		DiffBlocksKey(DiffKey diffKey, String oldFileName, String newFileName) {
+			this.diffKey = diffKey;
+			this.oldFileName = oldFileName;
+			this.newFileName = newFileName;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (obj instanceof DiffBlocksKey) {
+				DiffBlocksKey key = (DiffBlocksKey) obj;
+				return diffKey.equals(key.diffKey) 
+						&& oldFileName.equals(key.oldFileName) 
+						&& newFileName.equals(key.newFileName);
+			} else {
+				return false;
+			}
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hashCode(diffKey, oldFileName, newFileName);
+		}
+		
+	}
+
+}
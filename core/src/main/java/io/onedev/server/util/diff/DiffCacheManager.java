@@ -0,0 +1,63 @@
+package io.onedev.server.util.diff;
+
+import java.util.List;
+
+import javax.annotation.Nullable;
+
+import org.eclipse.jgit.lib.ObjectId;
+
+import io.onedev.commons.jsyntax.Tokenized;
+
+/**
+ * Caches diff results across sessions. Results are keyed by blob ids of both sides and 
+ * whitespace option, and never need to be invalidated as blob ids are immutable. Diff 
+ * blocks are additionally keyed by file names of both sides, as syntax tokens of lines 
+ * depend on tokenizer picked by file name. 
+ */
+public interface DiffCacheManager {
+	
+	/**
+	 * Get cached diff stat
+	 * 
+	 * @param oldBlobId
+	 * 			blob id of old side, use {@link ObjectId#zeroId()} if old side does not exist
+	 * @param newBlobId
+	 * 			blob id of new side, use {@link ObjectId#zeroId()} if new side does not exist
+	 * @param whitespaceOption
+	 * 			whitespace option used to calculate the diff
+	 * @return
+	 * 			cached diff stat, or <tt>null</tt> if not cached
+	 */
+	@Nullable
+	DiffStat getDiffStat(ObjectId oldBlobId, ObjectId newBlobId, WhitespaceOption whitespaceOption);
+	
+	void cacheDiffStat(ObjectId oldBlobId, ObjectId newBlobId, WhitespaceOption whitespaceOption, 
+			DiffStat diffStat);
+	
+	/**
+	 * Get cached diff blocks
+	 * 
+	 * @param oldBlobId
+	 * 			blob id of old side, use {@link ObjectId#zeroId()} if old side does not exist
+	 * @param oldFileName
+	 * 			file name used to tokenize lines of old side
+	 * @param newBlobId
+	 * 			blob id of new side, use {@link ObjectId#zeroId()} if new side does not exist
+	 * @param newFileName
+	 * 			file name used to tokenize lines of new side
+	 * @param whitespaceOption
+	 * 			whitespace option used to calculate the diff
+	 * @return
+	 * 			cached diff blocks, or <tt>null</tt> if not cached. Returned list is shared 
+	 * 			and should not be modified
+	 */
+	@Nullable
+	List<DiffBlock<Tokenized>> getDiffBlocks(ObjectId oldBlobId, String oldFileName, 
+			ObjectId newBlobId, String newFileName, WhitespaceOption whitespaceOption);
+	
+	void cacheDiffBlocks(ObjectId oldBlobId, String oldFileName, ObjectId newBlobId, String newFileName, 
+			WhitespaceOption whitespaceOption, List<DiffBlock<Tokenized>> diffBlocks);
+	
+	DiffCacheMetrics getMetrics();
+	
+}
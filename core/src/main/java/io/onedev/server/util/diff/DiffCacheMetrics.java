@@ -0,0 +1,66 @@
+package io.onedev.server.util.diff;
+
+import java.io.Serializable;
+
+public class DiffCacheMetrics implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	private final long hits;
+	
+	private final long misses;
+	
+	private final long entries;
+	
+	private final long memoryFootprint;
+	
+	public DiffCacheMetrics(long hits, long misses, long entries, long memoryFootprint) {
+		this.hits = hits;
+		this.misses = misses;
+		this.entries = entries;
+		this.memoryFootprint = memoryFootprint;
+	}
+
+	/**
+	 * @return
+	 * 			number of diff block lookups served from cache since server start
+	 */
+	public long getHits() {
+		return hits;
+	}
+
+	/**
+	 * @return
+	 * 			number of diff block lookups not found in cache since server start
+	 */
+	public long getMisses() {
+		return misses;
+	}
+
+	/**
+	 * @return
+	 * 			ratio of diff block lookups served from cache, or <i>1.0</i> if there 
+	 * 			is no lookup yet
+	 */
+	public double getHitRate() {
+		long lookups = hits + misses;
+		return lookups!=0?(double)hits/lookups:1.0;
+	}
+
+	/**
+	 * @return
+	 * 			number of diff block lists currently cached
+	 */
+	public long getEntries() {
+		return entries;
+	}
+
+	/**
+	 * @return
+	 * 			estimated bytes of cached diff block lists
+	 */
+	public long getMemoryFootprint() {
+		return memoryFootprint;
+	}
+	
+}
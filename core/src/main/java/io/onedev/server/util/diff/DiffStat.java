@@ -0,0 +1,29 @@
+package io.onedev.server.util.diff;
+
+import java.io.Serializable;
+
+/**
+ * Number of inserted and deleted lines of a diff
+ */
+public class DiffStat implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	private final int additions;
+	
+	private final int deletions;
+	
+	public DiffStat(int additions, int deletions) {
+		this.additions = additions;
+		this.deletions = deletions;
+	}
+
+	public int getAdditions() {
+		return additions;
+	}
+
+	public int getDeletions() {
+		return deletions;
+	}
+	
+}
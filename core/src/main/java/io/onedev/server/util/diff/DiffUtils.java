@@ -153,6 +153,41 @@ public class DiffUtils {
 		return diffBlocks;
 	}
 	
+	/**
+	 * Count inserted and deleted lines between two list of strings. This uses the same 
+	 * line diff as {@link #diff(List, String, List, String, WhitespaceOption)}, but skips 
+	 * syntax tokenization and diff block construction.
+	 */
+	public static DiffStat getDiffStat(List<String> oldLines, List<String> newLines, 
+			WhitespaceOption whitespaceOption) {
+		Preconditions.checkArgument(oldLines.size() + newLines.size() <= MAX_DIFF_SIZE, 
+				"Total size of old lines and new lines should be less than " + MAX_DIFF_SIZE + ".");
+		
+		if (oldLines.isEmpty() || newLines.isEmpty())
+			return new DiffStat(newLines.size(), oldLines.size());
+		
+		List<String> processedOldLines = new ArrayList<>();
+		for (String line: oldLines) 
+			processedOldLines.add(whitespaceOption.process(line));
+		
+		List<String> processedNewLines = new ArrayList<>();
+		for (String line: newLines) 
+			processedNewLines.add(whitespaceOption.process(line));
+		
+		DiffMatchPatch dmp = new DiffMatchPatch();
+		TokensToCharsResult<String> result = tokensToChars(processedOldLines, processedNewLines);
+		
+		int additions = 0;
+		int deletions = 0;
+		for (Diff diff: dmp.diff_main(result.chars1, result.chars2, false)) {
+			if (diff.operation == Operation.INSERT)
+				additions += diff.text.length();
+			else if (diff.operation == Operation.DELETE)
+				deletions += diff.text.length();
+		}
+		return new DiffStat(additions, deletions);
+	}
+	
 	public static <T> List<DiffBlock<T>> diff(List<T> oldLines, List<T> newLines) {
 		Preconditions.checkArgument(oldLines.size() + newLines.size() <= MAX_DIFF_SIZE, 
 				"Total size of old lines and new lines should be less than " + MAX_DIFF_SIZE + ".");
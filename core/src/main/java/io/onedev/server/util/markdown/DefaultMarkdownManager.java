@@ -1,5 +1,6 @@
 package io.onedev.server.util.markdown;
 
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Set;
@@ -8,10 +9,16 @@ import javax.annotation.Nullable;
 import javax.inject.Inject;
 import javax.inject.Singleton;
 
+import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.text.StringEscapeUtils;
+import org.jsoup.Jsoup;
 import org.jsoup.nodes.Document;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.Weigher;
+
 import com.vladsch.flexmark.Extension;
 import com.vladsch.flexmark.ast.Node;
 import com.vladsch.flexmark.ext.anchorlink.AnchorLinkExtension;
@@ -32,18 +39,35 @@ import io.onedev.server.model.Project;
 @Singleton
 public class DefaultMarkdownManager implements MarkdownManager {
 	
-	private final Set<Extension> contributedExtensions;
+	// maximum characters of cached html, for rendered and cleaned html respectively
+	private static final int MAX_CACHE_WEIGHT = 8*1024*1024;
 	
 	private final Set<MarkdownProcessor> htmlTransformers;
 	
+	private final Parser parser;
+	
+	private final HtmlRenderer htmlRenderer;
+	
+	// rendered html keyed by md5 of markdown
+	private final Cache<String, String> renderCache = newCache();
+	
+	// cleaned html keyed by md5 of rendered html
+	private final Cache<String, CleanedHtml> cleanCache = CacheBuilder.newBuilder()
+			.maximumWeight(MAX_CACHE_WEIGHT)
+			.weigher(new Weigher<String, CleanedHtml>() {
+
+				@Override
+				public int weigh(String key, CleanedHtml value) {
+					return key.length() + value.html.length();
+				}
+				
+			})
+			.build();
+	
 	@Inject
 	public DefaultMarkdownManager(Set<Extension> contributedExtensions, Set<MarkdownProcessor> htmlTransformers) {
-		this.contributedExtensions = contributedExtensions;
 		this.htmlTransformers = htmlTransformers;
-	}
-
-	@Override
-	public String render(String markdown) {
+		
 		List<Extension> extensions = new ArrayList<>();
 		extensions.add(AnchorLinkExtension.create());
 		extensions.add(TablesExtension.create());
@@ -66,12 +90,39 @@ public class DefaultMarkdownManager implements MarkdownManager {
 				.set(TablesExtension.HEADER_SEPARATOR_COLUMN_MATCH, true)
 				.set(Parser.EXTENSIONS, extensions);
 
-		Parser parser = Parser.builder(options).build();
+		// parser and renderer are immutable once built, and can be shared by all threads 
+		parser = Parser.builder(options).build();
+		htmlRenderer = HtmlRenderer.builder(options).build();
+	}
+	
+	private static Cache<String, String> newCache() {
+		return CacheBuilder.newBuilder()
+				.maximumWeight(MAX_CACHE_WEIGHT)
+				.weigher(new Weigher<String, String>() {
+
+					@Override
+					public int weigh(String key, String value) {
+						return key.length() + value.length();
+					}
+					
+				})
+				.build();
+	}
+	
+	private static String getCacheKey(String content) {
+		return DigestUtils.md5Hex(content.getBytes(StandardCharsets.UTF_8));
+	}
 
-		HtmlRenderer htmlRenderer = HtmlRenderer.builder(options).build();
-		
-		Node document = parser.parse(markdown);
-		return htmlRenderer.render(document);
+	@Override
+	public String render(String markdown) {
+		String key = getCacheKey(markdown);
+		String rendered = renderCache.getIfPresent(key);
+		if (rendered == null) {
+			Node document = parser.parse(markdown);
+			rendered = htmlRenderer.render(document);
+			renderCache.put(key, rendered);
+		}
+		return rendered;
 	}
 
 	@Override
@@ -83,10 +134,38 @@ public class DefaultMarkdownManager implements MarkdownManager {
 
 	@Override
 	public String process(Project project, String rendered, @Nullable Object context) {
-		Document document = HtmlUtils.clean(rendered);
+		/*
+		 * Cleaning is independent of project and context, so its result is cached. Processors 
+		 * resolving references, mentions and urls run on every call as their output depends on 
+		 * current project, context and state of referenced entities
+		 */
+		String key = getCacheKey(rendered);
+		CleanedHtml cleaned = cleanCache.getIfPresent(key);
+		Document document;
+		if (cleaned == null) {
+			document = HtmlUtils.clean(rendered);
+			cleanCache.put(key, new CleanedHtml(document.body().html(), document.outputSettings().clone()));
+		} else {
+			// keep output settings of cleaned document so that result is serialized the same way
+			document = Jsoup.parseBodyFragment(cleaned.html);
+			document.outputSettings(cleaned.outputSettings.clone());
+		}
 		for (MarkdownProcessor htmlTransformer: htmlTransformers)
 			htmlTransformer.process(project, document, context);
 		return document.body().html();
 	}
 
+	private static class CleanedHtml {
+		
+		final String html;
+		
+		final Document.OutputSettings outputSettings;
+		
+		CleanedHtml(String html, Document.OutputSettings outputSettings) {
+			this.html = html;
+			this.outputSettings = outputSettings;
+		}
+		
+	}
+	
 }
@@ -29,4 +29,56 @@ public interface ServerConfig {
 	 * 			web session timeout in seconds
 	 */
 	int getSessionTimeout();
+	
+	/**
+	 * Get number of threads used to load and parse blobs when indexing code.
+	 * <p>
+	 * @return
+	 * 			number of code indexing threads
+	 */
+	int getIndexingThreads();
+	
+	/**
+	 * Get maximum number of blobs being parsed or waiting to be written into 
+	 * index at any time for a single indexing run.
+	 * <p>
+	 * @return
+	 * 			code indexing queue size
+	 */
+	int getIndexingQueueSize();
+	
+	/**
+	 * Get number of threads used to serve git clone, fetch and push over http.
+	 * <p>
+	 * @return
+	 * 			number of git transport threads
+	 */
+	int getGitTransportThreads();
+	
+	/**
+	 * Get maximum number of git transports allowed to wait for a transport thread. 
+	 * Transports exceeding this limit will be rejected.
+	 * <p>
+	 * @return
+	 * 			git transport queue size
+	 */
+	int getGitTransportQueueSize();
+	
+	/**
+	 * Get maximum number of concurrent git transports of a single user.
+	 * <p>
+	 * @return
+	 * 			git transports per user
+	 */
+	int getGitTransportsPerUser();
+	
+	/**
+	 * Get maximum disk space in megabytes used to cache results of git clone and fetch.
+	 * <p>
+	 * @return
+	 * 			upload pack cache size in megabytes, or <i>0</i> if upload pack cache 
+	 * 			is disabled
+	 */
+	int getUploadPackCacheSize();
+	
 }
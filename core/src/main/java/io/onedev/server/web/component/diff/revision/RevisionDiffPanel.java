@@ -280,28 +280,21 @@ public class RevisionDiffPanel extends Panel {
 			else
 				diffChanges = normalizedChanges;
 			
-	    	// Diff calculation can be slow, so we pre-load diffs of each change 
-	    	// concurrently
+	    	// Diff stat calculation can be slow, so we pre-load diff stats of each 
+	    	// change concurrently. Full diffs are only calculated for displayed changes
 	    	Collection<Callable<Void>> tasks = new ArrayList<>();
 	    	for (BlobChange change: diffChanges) {
 	    		tasks.add(new Callable<Void>() {
 
 					@Override
 					public Void call() throws Exception {
-						change.getDiffBlocks();
+						change.getDiffStat();
 						return null;
 					}
 	    			
 	    		});
 	    	}
-	    	for (Future<Void> future: OneDev.getInstance(ForkJoinPool.class).invokeAll(tasks)) {
-	    		try {
-	    			// call get in order to throw exception if there is any during task execution
-					future.get();
-				} catch (InterruptedException|ExecutionException e) {
-					throw new RuntimeException(e);
-				}
-	    	}
+	    	invokeAll(tasks);
 	    	
 	    	int totalChanges = normalizedChanges.size();
 	    	
@@ -348,8 +341,38 @@ public class RevisionDiffPanel extends Panel {
 	    			displayChanges.add(change);
 	    		}
 	    	}
+	    	
+	    	// Pre-load full diffs of displayed changes concurrently for the same reason
+	    	tasks = new ArrayList<>();
+	    	for (BlobChange change: displayChanges) {
+	    		if (change.getAdditions() + change.getDeletions() <= WebConstants.MAX_SINGLE_FILE_DIFF_LINES) {
+		    		tasks.add(new Callable<Void>() {
+	
+						@Override
+						public Void call() throws Exception {
+							change.getDiffBlocks();
+							return null;
+						}
+		    			
+		    		});
+	    		}
+	    	}
+	    	invokeAll(tasks);
+	    	
 	    	return new ChangesAndCount(displayChanges, totalChanges);
 		}
+		
+		private void invokeAll(Collection<Callable<Void>> tasks) {
+	    	for (Future<Void> future: OneDev.getInstance(ForkJoinPool.class).invokeAll(tasks)) {
+	    		try {
+	    			// call get in order to throw exception if there is any during task execution
+					future.get();
+				} catch (InterruptedException|ExecutionException e) {
+					throw new RuntimeException(e);
+				}
+	    	}
+		}
+		
 	};
 	
 	private final IModel<Collection<CodeComment>> commentsModel = 
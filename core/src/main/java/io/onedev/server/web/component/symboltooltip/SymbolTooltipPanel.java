@@ -29,12 +29,12 @@ import org.apache.wicket.request.resource.ResourceReference;
 import org.eclipse.jgit.lib.FileMode;
 import org.eclipse.jgit.lib.ObjectId;
 
-import io.onedev.commons.jsymbol.Symbol;
 import io.onedev.server.OneDev;
 import io.onedev.server.git.Blob;
 import io.onedev.server.git.BlobIdent;
 import io.onedev.server.model.Project;
 import io.onedev.server.model.support.TextRange;
+import io.onedev.server.search.code.CompactSymbols;
 import io.onedev.server.search.code.IndexConstants;
 import io.onedev.server.search.code.SearchManager;
 import io.onedev.server.search.code.hit.QueryHit;
@@ -210,24 +210,24 @@ public abstract class SymbolTooltipPanel extends Panel {
 					Blob blob = projectModel.getObject().getBlob(blobIdent);
 					
 					if (symbolHits.size() < QUERY_ENTRIES) {
-						// first find in current file for matched symbols
-						List<Symbol> symbols = OneDev.getInstance(SearchManager.class).getSymbols(projectModel.getObject(), 
-								blob.getBlobId(), getBlobPath());
+						// first find in current file for matched symbols, only matched symbols need to be decoded
+						CompactSymbols symbols = OneDev.getInstance(SearchManager.class).getCompactSymbols(
+								projectModel.getObject(), blob.getBlobId(), getBlobPath());
 						if (symbols != null) {
-							for (Symbol symbol: symbols) {
+							for (int i=0; i<symbols.size(); i++) {
 								if (symbolHits.size() < QUERY_ENTRIES 
-										&& symbol.isSearchable() 
-										&& symbolName.equals(symbol.getName()) 
-										&& symbol.isPrimary()) {
-									symbolHits.add(new SymbolHit(getBlobPath(), symbol, null));
+										&& symbols.isSearchable(i) 
+										&& symbolName.equals(symbols.getName(i)) 
+										&& symbols.isPrimary(i)) {
+									symbolHits.add(new SymbolHit(getBlobPath(), symbols.getSymbol(i), null));
 								}
 							}
-							for (Symbol symbol: symbols) {
+							for (int i=0; i<symbols.size(); i++) {
 								if (symbolHits.size() < QUERY_ENTRIES 
-										&& symbol.isSearchable() 
-										&& symbolName.equals(symbol.getName())
-										&& !symbol.isPrimary()) {
-									symbolHits.add(new SymbolHit(getBlobPath(), symbol, null));
+										&& symbols.isSearchable(i) 
+										&& symbolName.equals(symbols.getName(i))
+										&& !symbols.isPrimary(i)) {
+									symbolHits.add(new SymbolHit(getBlobPath(), symbols.getSymbol(i), null));
 								}
 							}
 						}
@@ -32,7 +32,6 @@ import org.eclipse.jgit.revwalk.RevWalk;
 import io.onedev.server.OneDev;
 import io.onedev.server.entitymanager.CodeCommentManager;
 import io.onedev.server.entitymanager.PullRequestManager;
-import io.onedev.server.git.GitUtils;
 import io.onedev.server.model.CodeComment;
 import io.onedev.server.model.Project;
 import io.onedev.server.model.PullRequest;
@@ -219,10 +218,8 @@ public class RevisionComparePage extends ProjectPage implements CommentSupport {
 		try {
 			Ref ref = state.rightSide.getProject().getRepository().findRef(state.rightSide.getRevision());
 			String refName = ref!=null?ref.getName():null;
-			mergeBase = GitUtils.getMergeBase(
-					state.leftSide.getProject().getRepository(), leftCommitId, 
-					state.rightSide.getProject().getRepository(), rightCommitId, 
-					refName);
+			mergeBase = state.leftSide.getProject().getMergeBase(leftCommitId, 
+					state.rightSide.getProject(), rightCommitId, refName);
 		} catch (IOException e) {
 			throw new RuntimeException(e);
 		}
@@ -168,9 +168,8 @@ public class NewPullRequestPage extends ProjectPage implements CommentSupport {
 			pullRequestRef.set(OneDev.getInstance(PullRequestManager.class).findEffective(target, source));
 		
 		if (pullRequestRef.get() == null) {
-			ObjectId baseCommitId = GitUtils.getMergeBase(
-					target.getProject().getRepository(), target.getObjectId(), 
-					source.getProject().getRepository(), source.getObjectId(), 
+			ObjectId baseCommitId = target.getProject().getMergeBase(target.getObjectId(), 
+					source.getProject(), source.getObjectId(), 
 					GitUtils.branch2ref(source.getBranch()));
 			if (baseCommitId != null) {
 				PullRequest request = new PullRequest();
@@ -8,7 +8,6 @@ import io.onedev.server.OneDev;
 import io.onedev.server.entitymanager.PullRequestManager;
 import io.onedev.server.entitymanager.PullRequestReviewManager;
 import io.onedev.server.entitymanager.UserManager;
-import io.onedev.server.git.GitUtils;
 import io.onedev.server.model.PullRequest;
 import io.onedev.server.model.PullRequestReview;
 import io.onedev.server.model.User;
@@ -83,7 +82,7 @@ public enum PullRequestOperation {
 					&& request.getSourceProject() != null 
 					&& request.getSource().getObjectName(false) != null
 					&& pullRequestManager.findEffective(request.getTarget(), request.getSource()) == null
-					&& !GitUtils.isMergedInto(request.getTargetProject().getRepository(), null,
+					&& !request.getTargetProject().isMergedInto(
 							request.getSource().getObjectId(), request.getTarget().getObjectId());
 		}
 
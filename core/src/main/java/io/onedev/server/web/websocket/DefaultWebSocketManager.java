@@ -2,8 +2,12 @@ package io.onedev.server.web.websocket;
 
 import java.util.Collection;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 import javax.annotation.Nullable;
 import javax.inject.Inject;
@@ -11,9 +15,7 @@ import javax.inject.Singleton;
 
 import org.apache.wicket.Application;
 import org.apache.wicket.protocol.ws.api.IWebSocketConnection;
-import org.apache.wicket.protocol.ws.api.registry.IKey;
 import org.apache.wicket.protocol.ws.api.registry.IWebSocketConnectionRegistry;
-import org.apache.wicket.protocol.ws.api.registry.PageIdKey;
 import org.apache.wicket.protocol.ws.api.registry.SimpleWebSocketConnectionRegistry;
 import org.eclipse.jetty.websocket.api.WebSocketPolicy;
 import org.quartz.ScheduleBuilder;
@@ -21,6 +23,8 @@ import org.quartz.SimpleScheduleBuilder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
 import io.onedev.commons.launcher.loader.Listen;
 import io.onedev.commons.utils.schedule.SchedulableTask;
 import io.onedev.commons.utils.schedule.TaskScheduler;
@@ -35,6 +39,9 @@ public class DefaultWebSocketManager implements WebSocketManager, SchedulableTas
 
 	private static final Logger logger = LoggerFactory.getLogger(DefaultWebSocketManager.class);
 	
+	// notifications of same observable within this window (in milliseconds) are sent only once
+	private static final long COALESCE_WINDOW = 100;
+	
 	private final Application application;
 	
 	private final TransactionManager transactionManager;
@@ -45,7 +52,21 @@ public class DefaultWebSocketManager implements WebSocketManager, SchedulableTas
 	
 	private final ExecutorService executorService;
 	
-	private final Map<String, Map<IKey, Collection<String>>> observables = new ConcurrentHashMap<>();
+	private final Map<PageKey, Collection<String>> pageObservables = new ConcurrentHashMap<>();
+	
+	private final Map<String, Set<PageKey>> sessionPages = new ConcurrentHashMap<>();
+	
+	// reverse index of pageObservables, so that a change only visits pages observing it 
+	private final Map<String, Set<PageKey>> observers = new ConcurrentHashMap<>();
+	
+	// source page of pending notifications keyed by observable, null source page is stored as 
+	// NO_SOURCE_PAGE as ConcurrentHashMap does not accept null values
+	private final Map<String, PageKey> pendingNotifications = new ConcurrentHashMap<>();
+	
+	private static final PageKey NO_SOURCE_PAGE = new PageKey("", -1);
+	
+	private final ScheduledExecutorService notificationScheduler = Executors.newSingleThreadScheduledExecutor(
+			new ThreadFactoryBuilder().setNameFormat("websocket-notification").setDaemon(true).build());
 	
 	private final IWebSocketConnectionRegistry connectionRegistry = new SimpleWebSocketConnectionRegistry();
 	
@@ -65,18 +86,58 @@ public class DefaultWebSocketManager implements WebSocketManager, SchedulableTas
 	public void notifyObserverChange(BasePage page) {
 		String sessionId = page.getSession().getId();
 		if (sessionId != null) {
-			Map<IKey, Collection<String>> sessionPages = observables.get(sessionId);
-			if (sessionPages == null) {
-				sessionPages = new ConcurrentHashMap<>();
-				observables.put(sessionId, sessionPages);
+			PageKey pageKey = new PageKey(sessionId, page.getPageId());
+			Collection<String> observables = page.findWebSocketObservables();
+			synchronized (observers) {
+				Set<PageKey> pageKeys = sessionPages.get(sessionId);
+				if (pageKeys == null) {
+					pageKeys = ConcurrentHashMap.newKeySet();
+					sessionPages.put(sessionId, pageKeys);
+				}
+				pageKeys.add(pageKey);
+				
+				Collection<String> oldObservables = pageObservables.put(pageKey, observables);
+				if (oldObservables != null) {
+					for (String observable: oldObservables) {
+						if (!observables.contains(observable))
+							removeObserver(observable, pageKey);
+					}
+				}
+				for (String observable: observables) {
+					Set<PageKey> observerKeys = observers.get(observable);
+					if (observerKeys == null) {
+						observerKeys = ConcurrentHashMap.newKeySet();
+						observers.put(observable, observerKeys);
+					}
+					observerKeys.add(pageKey);
+				}
 			}
-			sessionPages.put(new PageIdKey(page.getPageId()), page.findWebSocketObservables());
+		}
+	}
+	
+	private void removeObserver(String observable, PageKey pageKey) {
+		Set<PageKey> observerKeys = observers.get(observable);
+		if (observerKeys != null) {
+			observerKeys.remove(pageKey);
+			if (observerKeys.isEmpty())
+				observers.remove(observable);
 		}
 	}
 	
 	@Override
 	public void onDestroySession(String sessionId) {
-		observables.remove(sessionId);
+		synchronized (observers) {
+			Set<PageKey> pageKeys = sessionPages.remove(sessionId);
+			if (pageKeys != null) {
+				for (PageKey pageKey: pageKeys) {
+					Collection<String> observables = pageObservables.remove(pageKey);
+					if (observables != null) {
+						for (String observable: observables)
+							removeObserver(observable, pageKey);
+					}
+				}
+			}
+		}
 	}
 
 	@Sessional
@@ -86,35 +147,70 @@ public class DefaultWebSocketManager implements WebSocketManager, SchedulableTas
 
 			@Override
 			public void run() {
-				executorService.execute(new Runnable() {
+				PageKey pendingSourcePageKey = sourcePageKey!=null?sourcePageKey:NO_SOURCE_PAGE;
+				
+				/*
+				 * Merge into pending notification of the same observable if there is one. The merged 
+				 * notification only skips a source page if all merged notifications come from it
+				 */
+				boolean pending = false;
+				synchronized (pendingNotifications) {
+					PageKey existingSourcePageKey = pendingNotifications.get(observable);
+					if (existingSourcePageKey != null) {
+						if (!existingSourcePageKey.equals(pendingSourcePageKey))
+							pendingNotifications.put(observable, NO_SOURCE_PAGE);
+						pending = true;
+					} else {
+						pendingNotifications.put(observable, pendingSourcePageKey);
+					}
+				}
+				if (!pending) {
+					notificationScheduler.schedule(new Runnable() {
+
+						@Override
+						public void run() {
+							executorService.execute(new Runnable() {
 
-					@Override
-					public void run() {
-						for (IWebSocketConnection connection: connectionRegistry.getConnections(application)) {
-							PageKey pageKey = ((WebSocketConnection) connection).getPageKey();
-							if (connection.isOpen() && (sourcePageKey == null || !sourcePageKey.equals(pageKey))) {
-								Map<IKey, Collection<String>> sessionPages = observables.get(pageKey.getSessionId());
-								if (sessionPages != null) {
-									Collection<String> pageObservables = sessionPages.get(pageKey.getPageId());
-									if (pageObservables != null && pageObservables.contains(observable)) {
-										String message = OBSERVABLE_CHANGED + ":" + observable; 
-										try {
-											connection.sendMessage(message);
-										} catch (Exception e) {
-											logger.error("Error sending websocket message: " + message, e);
-										}
+								@Override
+								public void run() {
+									PageKey mergedSourcePageKey;
+									synchronized (pendingNotifications) {
+										mergedSourcePageKey = pendingNotifications.remove(observable);
 									}
+									if (mergedSourcePageKey != null)
+										dispatch(observable, mergedSourcePageKey);
 								}
-							}
+								
+							});
 						}
-					}
-					
-				});
+						
+					}, COALESCE_WINDOW, TimeUnit.MILLISECONDS);
+				}
 			}
 			
 		});
 	}
 	
+	private void dispatch(String observable, PageKey sourcePageKey) {
+		Set<PageKey> observerKeys = observers.get(observable);
+		if (observerKeys != null) {
+			String message = OBSERVABLE_CHANGED + ":" + observable; 
+			for (PageKey pageKey: observerKeys) {
+				if (!pageKey.equals(sourcePageKey)) {
+					IWebSocketConnection connection = connectionRegistry.getConnection(application, 
+							pageKey.getSessionId(), pageKey.getPageId());
+					if (connection != null && connection.isOpen()) {
+						try {
+							connection.sendMessage(message);
+						} catch (Exception e) {
+							logger.error("Error sending websocket message: " + message, e);
+						}
+					}
+				}
+			}
+		}
+	}
+	
 	@Override
 	public void execute() {
 		for (IWebSocketConnection connection: new SimpleWebSocketConnectionRegistry().getConnections(application)) {
@@ -136,6 +232,7 @@ public class DefaultWebSocketManager implements WebSocketManager, SchedulableTas
 	@Listen
 	public void on(SystemStopping event) {
 		taskScheduler.unschedule(taskId);
+		notificationScheduler.shutdownNow();
 	}
 	
 	@Override
@@ -7,6 +7,8 @@ import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
 import java.util.Set;
 import java.util.concurrent.atomic.AtomicReference;
 
@@ -23,6 +25,7 @@ import org.eclipse.jgit.lib.PersonIdent;
 import org.eclipse.jgit.lib.Repository;
 import org.eclipse.jgit.revwalk.LastCommitsOfChildren.Value;
 import org.eclipse.jgit.revwalk.filter.RevFilter;
+import org.eclipse.jgit.treewalk.EmptyTreeIterator;
 import org.eclipse.jgit.treewalk.TreeWalk;
 import org.eclipse.jgit.treewalk.filter.TreeFilter;
 import org.eclipse.jgit.util.RawParseUtils;
@@ -69,7 +72,116 @@ public final class LastCommitsOfChildren extends HashMap<String, Value> {
 	 * @param cache
 	 * 			optional cache to speed up calculation
 	 */
-	public LastCommitsOfChildren(final Repository repo, AnyObjectId until, 
+	public LastCommitsOfChildren(Repository repo, AnyObjectId until, 
+			@Nullable String treePath, @Nullable Cache cache) {
+		calculate(repo, until, treePath, cache);
+	}
+	
+	/**
+	 * Constructs last commits of children incrementally from last commits of children of 
+	 * an ancestor commit. Children not touched by any commit between the ancestor commit 
+	 * and <tt>until</tt> reuse last commits of the ancestor commit, and only the rest will 
+	 * be calculated by walking history. 
+	 * 
+	 * @param repo
+	 * 			repository to get last commits info
+	 * @param until
+	 * 			get last commits no newer than this commit
+	 * @param treePath
+	 * 			parent directory to get children commit info under, use 
+	 * 			empty string or <tt>null</tt> to refer to repository root
+	 * @param base
+	 * 			an ancestor commit of <tt>until</tt>
+	 * @param lastCommitsOfBase
+	 * 			last commits of children of the ancestor commit under the same tree path
+	 * @param cache
+	 * 			optional cache to speed up calculation
+	 */
+	public LastCommitsOfChildren(Repository repo, AnyObjectId until, @Nullable String treePath, 
+			AnyObjectId base, Map<String, Value> lastCommitsOfBase, @Nullable Cache cache) {
+		try (RevWalk revWalk = new RevWalk(repo)) {
+			String normalizedPath = GitUtils.normalizePath(treePath);
+			if (normalizedPath == null)
+				normalizedPath = "";
+			Set<String> touchedChildren = getTouchedChildren(repo, revWalk, until, base, normalizedPath);
+			for (Map.Entry<String, Value> entry: lastCommitsOfBase.entrySet()) {
+				if (!touchedChildren.contains(entry.getKey()))
+					put(entry.getKey(), entry.getValue());
+			}
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+		calculate(repo, until, treePath, cache);
+	}
+	
+	/*
+	 * Get names of children under specified tree path touched by any commit reachable from 
+	 * until but not from base. A child is touched by a commit if its entry differs from that 
+	 * of any parent of the commit. Comparing trees of base and until is not sufficient, as a 
+	 * child changed and then reverted in between has a newer last commit than that of base
+	 */
+	private Set<String> getTouchedChildren(Repository repo, RevWalk revWalk, AnyObjectId until, 
+			AnyObjectId base, String treePath) throws IOException {
+		Set<String> touchedChildren = new HashSet<>();
+		Map<ObjectId, Optional<ObjectId>> subtrees = new HashMap<>();
+		revWalk.markStart(revWalk.parseCommit(until));
+		revWalk.markUninteresting(revWalk.parseCommit(base));
+		for (RevCommit commit: revWalk) {
+			ObjectId subtree = getSubtree(repo, commit.getTree(), treePath, subtrees);
+			if (commit.getParentCount() == 0) {
+				addChangedChildren(repo, null, subtree, touchedChildren);
+			} else {
+				for (RevCommit parent: commit.getParents()) {
+					revWalk.parseHeaders(parent);
+					ObjectId parentSubtree = getSubtree(repo, parent.getTree(), treePath, subtrees);
+					if (!Objects.equals(parentSubtree, subtree))
+						addChangedChildren(repo, parentSubtree, subtree, touchedChildren);
+				}
+			}
+		}
+		return touchedChildren;
+	}
+	
+	/*
+	 * Get id of the tree at specified path, or null if the path does not exist or is not a tree
+	 */
+	@Nullable
+	private ObjectId getSubtree(Repository repo, RevTree tree, String treePath, 
+			Map<ObjectId, Optional<ObjectId>> subtrees) throws IOException {
+		if (treePath.length() == 0)
+			return tree.copy();
+		Optional<ObjectId> subtree = subtrees.get(tree);
+		if (subtree == null) {
+			try (TreeWalk treeWalk = TreeWalk.forPath(repo, treePath, tree)) {
+				if (treeWalk != null && FileMode.TREE.equals(treeWalk.getFileMode(0)))
+					subtree = Optional.of(treeWalk.getObjectId(0));
+				else
+					subtree = Optional.empty();
+			}
+			subtrees.put(tree.copy(), subtree);
+		}
+		return subtree.orElse(null);
+	}
+	
+	private void addChangedChildren(Repository repo, @Nullable ObjectId oldTree, @Nullable ObjectId newTree, 
+			Set<String> changedChildren) throws IOException {
+		try (TreeWalk treeWalk = new TreeWalk(repo)) {
+			if (oldTree != null)
+				treeWalk.addTree(oldTree);
+			else
+				treeWalk.addTree(new EmptyTreeIterator());
+			if (newTree != null)
+				treeWalk.addTree(newTree);
+			else
+				treeWalk.addTree(new EmptyTreeIterator());
+			treeWalk.setRecursive(false);
+			treeWalk.setFilter(TreeFilter.ANY_DIFF);
+			while (treeWalk.next())
+				changedChildren.add(treeWalk.getNameString());
+		}
+	}
+	
+	private void calculate(final Repository repo, AnyObjectId until, 
 			@Nullable String treePath, @Nullable final Cache cache) {
 		try (RevWalk revWalk = new RevWalk(repo)) {
 			treePath = GitUtils.normalizePath(treePath);
@@ -365,6 +477,13 @@ public final class LastCommitsOfChildren extends HashMap<String, Value> {
 			this.commitDate = commit.getCommitterIdent().getWhen();
 			this.summary = StringUtils.substringBefore(commit.getFullMessage(), "\n").trim();
 		}
+		
+		public Value(ObjectId id, PersonIdent author, Date commitDate, String summary) {
+			this.id = id;
+			this.author = author;
+			this.commitDate = commitDate;
+			this.summary = summary;
+		}
 
 		public ObjectId getId() {
 			return id;
@@ -0,0 +1,165 @@
+package io.onedev.server.cache;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import org.eclipse.jgit.lib.ObjectId;
+import org.junit.Test;
+
+import com.google.common.collect.Sets;
+
+public class CommitGraphTest {
+
+	private ObjectId id(int value) {
+		byte[] bytes = new byte[20];
+		bytes[0] = (byte) value;
+		bytes[5] = (byte) (value*31);
+		return ObjectId.fromRaw(bytes);
+	}
+	
+	@Test
+	public void testDescendants() throws IOException {
+		/*
+		 * 1 - 2 - 3 - 5
+		 *      \     /
+		 *        4 -
+		 * 6 (unrelated root)
+		 */
+		CommitGraph graph = new CommitGraph();
+		graph.addCommit(id(5), new ObjectId[] {id(3), id(4)});
+		graph.addCommit(id(3), new ObjectId[] {id(2)});
+		graph.addCommit(id(4), new ObjectId[] {id(2)});
+		graph.addCommit(id(2), new ObjectId[] {id(1)});
+		graph.addCommit(id(1), new ObjectId[0]);
+		graph.addCommit(id(6), new ObjectId[0]);
+		
+		assertEquals(6, graph.getCollectedCount());
+		assertEquals(Sets.newHashSet(id(2), id(3), id(4), id(5)), graph.getDescendants(Sets.newHashSet(id(2))));
+		assertEquals(Sets.newHashSet(id(4), id(5)), graph.getDescendants(Sets.newHashSet(id(4))));
+		assertEquals(Sets.newHashSet(id(6), id(7)), graph.getDescendants(Sets.newHashSet(id(6), id(7))));
+		
+		graph.addCommit(id(7), new ObjectId[] {id(5), id(6)});
+		assertEquals(Sets.newHashSet(id(6), id(7)), graph.getDescendants(Sets.newHashSet(id(6))));
+		
+		File file = File.createTempFile("commit-graph", null);
+		try {
+			graph.writeTo(file);
+			CommitGraph loaded = CommitGraph.readFrom(file);
+			assertEquals(graph.getCollectedCount(), loaded.getCollectedCount());
+			assertEquals(graph.getDescendants(Sets.newHashSet(id(1))), loaded.getDescendants(Sets.newHashSet(id(1))));
+		} finally {
+			file.delete();
+		}
+	}
+
+	@Test
+	public void testReachability() {
+		/*
+		 * 1 - 2 - 3 - 5
+		 *      \     /
+		 *        4 -
+		 * 6 (unrelated root)   8 (parent not collected) - 9
+		 */
+		CommitGraph graph = new CommitGraph();
+		graph.addCommit(id(5), new ObjectId[] {id(3), id(4)});
+		graph.addCommit(id(3), new ObjectId[] {id(2)});
+		graph.addCommit(id(4), new ObjectId[] {id(2)});
+		graph.addCommit(id(2), new ObjectId[] {id(1)});
+		graph.addCommit(id(1), new ObjectId[0]);
+		graph.addCommit(id(6), new ObjectId[0]);
+		graph.addCommit(id(9), new ObjectId[] {id(8)});
+		
+		assertTrue(graph.isAncestor(id(1), id(5)));
+		assertTrue(graph.isAncestor(id(4), id(5)));
+		assertTrue(graph.isAncestor(id(5), id(5)));
+		assertFalse(graph.isAncestor(id(4), id(3)));
+		assertFalse(graph.isAncestor(id(5), id(1)));
+		assertFalse(graph.isAncestor(id(6), id(5)));
+		assertNull(graph.isAncestor(id(1), id(9)));
+		assertNull(graph.isAncestor(id(1), id(10)));
+		
+		assertEquals(id(2), graph.getMergeBase(id(3), id(4)));
+		assertEquals(id(4), graph.getMergeBase(id(4), id(5)));
+		assertEquals(id(3), graph.getMergeBase(id(3), id(3)));
+		assertNull(graph.getMergeBase(id(5), id(6)));
+		assertNull(graph.getMergeBase(id(5), id(9)));
+		
+		graph.addCommit(id(7), new ObjectId[] {id(5), id(6)});
+		assertTrue(graph.isAncestor(id(6), id(7)));
+		assertEquals(id(6), graph.getMergeBase(id(6), id(7)));
+	}
+	
+	@Test
+	public void testAppend() throws IOException {
+		/*
+		 * 1 - 2 - 3 - 5 - 7
+		 *      \     /
+		 *        4 -
+		 * Graph is rebuilt from child relationships first, then queried, and then appended with
+		 * commits collected from a push, with children appended before their parents 
+		 */
+		CommitGraph graph = new CommitGraph();
+		graph.markCollected(id(1));
+		graph.markCollected(id(2));
+		graph.markCollected(id(3));
+		graph.addParent(id(2), id(1));
+		graph.addParent(id(3), id(2));
+		assertTrue(graph.isAncestor(id(1), id(3)));
+		
+		graph.addCommit(id(7), new ObjectId[] {id(5)});
+		assertNull(graph.isAncestor(id(1), id(7)));
+		graph.addCommit(id(5), new ObjectId[] {id(3), id(4)});
+		assertNull(graph.isAncestor(id(3), id(5)));
+		assertNull(graph.getMergeBase(id(3), id(7)));
+		graph.addCommit(id(4), new ObjectId[] {id(2)});
+		
+		assertEquals(6, graph.getCollectedCount());
+		assertTrue(graph.isAncestor(id(1), id(7)));
+		assertTrue(graph.isAncestor(id(4), id(7)));
+		assertFalse(graph.isAncestor(id(7), id(4)));
+		assertFalse(graph.isAncestor(id(4), id(3)));
+		assertEquals(id(2), graph.getMergeBase(id(3), id(4)));
+		assertEquals(id(5), graph.getMergeBase(id(5), id(7)));
+		assertEquals(Sets.newHashSet(id(4), id(5), id(7)), graph.getDescendants(Sets.newHashSet(id(4))));
+		
+		File file = File.createTempFile("commit-graph", null);
+		try {
+			graph.writeTo(file);
+			CommitGraph loaded = CommitGraph.readFrom(file);
+			assertEquals(graph.getCollectedCount(), loaded.getCollectedCount());
+			assertTrue(loaded.isAncestor(id(4), id(7)));
+			assertEquals(id(2), loaded.getMergeBase(id(3), id(4)));
+			
+			// parents should be written in original order
+			File reloadedFile = File.createTempFile("commit-graph", null);
+			try {
+				loaded.writeTo(reloadedFile);
+				assertArrayEquals(Files.readAllBytes(file.toPath()), Files.readAllBytes(reloadedFile.toPath()));
+			} finally {
+				reloadedFile.delete();
+			}
+		} finally {
+			file.delete();
+		}
+	}
+	
+	@Test
+	public void testGrowth() {
+		CommitGraph graph = new CommitGraph();
+		for (int i=1; i<5000; i++) {
+			byte[] bytes = new byte[20];
+			bytes[0] = (byte)(i>>8);
+			bytes[1] = (byte)i;
+			byte[] parentBytes = new byte[20];
+			parentBytes[0] = (byte)((i-1)>>8);
+			parentBytes[1] = (byte)(i-1);
+			graph.addCommit(ObjectId.fromRaw(bytes), new ObjectId[] {ObjectId.fromRaw(parentBytes)});
+		}
+		assertEquals(5000, graph.size());
+		assertEquals(5000, graph.getDescendants(Sets.newHashSet(ObjectId.zeroId())).size());
+	}
+	
+}
@@ -0,0 +1,142 @@
+package io.onedev.server.cache;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.PersonIdent;
+import org.eclipse.jgit.revwalk.LastCommitsOfChildren.Value;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import io.onedev.commons.utils.FileUtils;
+
+public class LastCommitsDiskStoreTest {
+
+	private File tempDir;
+
+	@Before
+	public void before() {
+		tempDir = FileUtils.createTempDir();
+	}
+
+	@After
+	public void after() {
+		FileUtils.deleteDir(tempDir);
+	}
+
+	private ObjectId id(int value) {
+		byte[] bytes = new byte[20];
+		bytes[0] = (byte) value;
+		bytes[7] = (byte) (value*17);
+		return ObjectId.fromRaw(bytes);
+	}
+
+	private Map<String, Value> lastCommits(int count) {
+		Map<String, Value> lastCommits = new HashMap<>();
+		for (int i=0; i<count; i++) {
+			PersonIdent author = new PersonIdent("user" + i, "user" + i + "@example.com", 1500000000000L + i*1000, 480);
+			lastCommits.put("file" + i + ".txt", new Value(id(i), author, new Date(1500000000000L + i*2000), "summary " + i));
+		}
+		return lastCommits;
+	}
+
+	@Test
+	public void testEncodeDecode() throws IOException {
+		Map<String, Value> lastCommits = lastCommits(10);
+		lastCommits.put("中文.txt", new Value(id(100),
+				new PersonIdent("作者", "author@example.com", 1500000000000L, -300), new Date(1500000001000L), "提交"));
+
+		Map<String, Value> decoded = LastCommitsDiskStore.decode(LastCommitsDiskStore.encode(lastCommits));
+		assertEquals(lastCommits.keySet(), decoded.keySet());
+		for (Map.Entry<String, Value> entry: lastCommits.entrySet()) {
+			Value value = entry.getValue();
+			Value decodedValue = decoded.get(entry.getKey());
+			assertEquals(value.getId(), decodedValue.getId());
+			assertEquals(value.getAuthor(), decodedValue.getAuthor());
+			assertEquals(value.getAuthor().getTimeZoneOffset(), decodedValue.getAuthor().getTimeZoneOffset());
+			assertEquals(value.getCommitDate(), decodedValue.getCommitDate());
+			assertEquals(value.getSummary(), decodedValue.getSummary());
+		}
+	}
+
+	@Test
+	public void testEvictionAcrossDirs() throws IOException {
+		File dir1 = new File(tempDir, "project1");
+		File dir2 = new File(tempDir, "project2");
+
+		int size = LastCommitsDiskStore.encode(lastCommits(10)).length;
+
+		// room for three results in total
+		LastCommitsDiskStore diskStore = new LastCommitsDiskStore(size*3);
+		diskStore.load(dir1);
+		diskStore.load(dir2);
+
+		diskStore.write(new File(dir1, "a"), lastCommits(10));
+		diskStore.write(new File(dir2, "b"), lastCommits(10));
+		diskStore.write(new File(dir1, "c"), lastCommits(10));
+		assertEquals(size*3, diskStore.getTotalSize());
+
+		// touch "a" so that "b" of the other project becomes least recently used
+		assertNotNull(diskStore.read(new File(dir1, "a")));
+		diskStore.write(new File(dir2, "d"), lastCommits(10));
+
+		assertEquals(3, diskStore.getFileCount());
+		assertEquals(size*3, diskStore.getTotalSize());
+		assertFalse(new File(dir2, "b").exists());
+		assertNull(diskStore.read(new File(dir2, "b")));
+		assertNotNull(diskStore.read(new File(dir1, "a")));
+		assertNotNull(diskStore.read(new File(dir1, "c")));
+		assertNotNull(diskStore.read(new File(dir2, "d")));
+
+		// overwriting a file should not count its size twice
+		diskStore.write(new File(dir1, "c"), lastCommits(10));
+		assertEquals(size*3, diskStore.getTotalSize());
+
+		diskStore.unload(dir2);
+		assertEquals(size*2, diskStore.getTotalSize());
+		assertNull(diskStore.read(new File(dir2, "d")));
+	}
+
+	@Test
+	public void testLoad() throws IOException {
+		File dir1 = new File(tempDir, "project1");
+		File dir2 = new File(tempDir, "project2");
+
+		int size = LastCommitsDiskStore.encode(lastCommits(10)).length;
+
+		LastCommitsDiskStore diskStore = new LastCommitsDiskStore(size*10);
+		diskStore.load(dir1);
+		diskStore.load(dir2);
+		diskStore.write(new File(dir1, "a"), lastCommits(10));
+		diskStore.write(new File(dir2, "b"), lastCommits(10));
+		diskStore.write(new File(dir1, "c"), lastCommits(10));
+		Files.write(new File(dir1, "d" + ".1.tmp").toPath(), new byte[10]);
+
+		new File(dir1, "a").setLastModified(1000000000000L);
+		new File(dir2, "b").setLastModified(1000000002000L);
+		new File(dir1, "c").setLastModified(1000000001000L);
+
+		// files of all directories are merged into a single LRU order on load
+		diskStore = new LastCommitsDiskStore(size*2);
+		diskStore.load(dir1);
+		assertEquals(size*2, diskStore.getTotalSize());
+		assertFalse(new File(dir1, "d" + ".1.tmp").exists());
+		diskStore.load(dir2);
+		assertEquals(size*2, diskStore.getTotalSize());
+		assertFalse(new File(dir1, "a").exists());
+		assertTrue(new File(dir2, "b").exists());
+		assertTrue(new File(dir1, "c").exists());
+
+		assertNotNull(diskStore.read(new File(dir1, "c")));
+		assertNotNull(diskStore.read(new File(dir2, "b")));
+	}
+
+}
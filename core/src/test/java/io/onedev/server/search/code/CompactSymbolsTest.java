@@ -0,0 +1,175 @@
+package io.onedev.server.search.code;
+
+import static org.junit.Assert.*;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.lang.SerializationUtils;
+import org.junit.Test;
+
+import io.onedev.commons.jsymbol.Symbol;
+import io.onedev.commons.jsymbol.SymbolExtractor;
+import io.onedev.commons.jsymbol.SymbolExtractorRegistry;
+
+public class CompactSymbolsTest {
+
+	private static final String SOURCE = ""
+			+ "package com.example;\n"
+			+ "\n"
+			+ "import java.util.List;\n"
+			+ "\n"
+			+ "public class Outer {\n"
+			+ "\n"
+			+ "	private int count;\n"
+			+ "\n"
+			+ "	private List<String> names;\n"
+			+ "\n"
+			+ "	public int getCount() {\n"
+			+ "		return count;\n"
+			+ "	}\n"
+			+ "\n"
+			+ "	public void setCount(int count) {\n"
+			+ "		this.count = count;\n"
+			+ "	}\n"
+			+ "\n"
+			+ "	static class Inner {\n"
+			+ "\n"
+			+ "		private String count;\n"
+			+ "\n"
+			+ "		String getCount() {\n"
+			+ "			return count;\n"
+			+ "		}\n"
+			+ "\n"
+			+ "	}\n"
+			+ "\n"
+			+ "	enum Kind {\n"
+			+ "		FIRST, SECOND\n"
+			+ "	}\n"
+			+ "\n"
+			+ "}\n";
+
+	private List<Symbol> extract() throws Exception {
+		SymbolExtractor<Symbol> extractor = SymbolExtractorRegistry.getExtractor("Outer.java");
+		assertNotNull(extractor);
+		List<Symbol> symbols = extractor.extract("Outer.java", SOURCE);
+		assertFalse(symbols.isEmpty());
+		return symbols;
+	}
+
+	private byte[] serialize(List<Symbol> symbols) {
+		return SerializationUtils.serialize((Serializable) new ArrayList<>(symbols));
+	}
+
+	@Test
+	public void testRoundTrip() throws Exception {
+		List<Symbol> symbols = extract();
+		byte[] bytes = CompactSymbols.encode(symbols);
+
+		byte[] padded = new byte[bytes.length + 10];
+		System.arraycopy(bytes, 0, padded, 5, bytes.length);
+		CompactSymbols compactSymbols = CompactSymbols.decode(padded, 5, bytes.length);
+
+		assertEquals(symbols.size(), compactSymbols.size());
+		for (int i=0; i<symbols.size(); i++) {
+			Symbol symbol = symbols.get(i);
+			assertEquals(symbol.getName(), compactSymbols.getName(i));
+			assertEquals(symbol.isPrimary(), compactSymbols.isPrimary(i));
+			assertEquals(symbol.isSearchable(), compactSymbols.isSearchable(i));
+			assertEquals(symbol.isLocalInHierarchy(), compactSymbols.isLocalInHierarchy(i));
+		}
+
+		// access symbols from last to first to make sure each symbol can be decoded on its own
+		Map<Symbol, Symbol> decodedToOriginal = new IdentityHashMap<>();
+		for (int i=symbols.size()-1; i>=0; i--) {
+			Symbol symbol = symbols.get(i);
+			Symbol decoded = compactSymbols.getSymbol(i);
+			assertSame(decoded, compactSymbols.getSymbol(i));
+			assertEquals(symbol.getClass(), decoded.getClass());
+			assertEquals(symbol.getName(), decoded.getName());
+			assertEquals(symbol.getFQN(), decoded.getFQN());
+			assertEquals(symbol.isDisplayInOutline(), decoded.isDisplayInOutline());
+			decodedToOriginal.put(decoded, symbol);
+		}
+
+		// parents should be shared with decoded symbols as outline rendering compares them by identity
+		for (int i=0; i<symbols.size(); i++) {
+			Symbol decoded = compactSymbols.getSymbol(i);
+			if (decoded.getParent() != null)
+				assertSame(symbols.get(i).getParent(), decodedToOriginal.get(decoded.getParent()));
+			else
+				assertNull(symbols.get(i).getParent());
+			if (decoded.getOutlineParent() != null)
+				assertSame(symbols.get(i).getOutlineParent(), decodedToOriginal.get(decoded.getOutlineParent()));
+			else
+				assertNull(symbols.get(i).getOutlineParent());
+		}
+	}
+
+	@Test
+	public void testGetSymbols() throws Exception {
+		List<Symbol> symbols = extract();
+		byte[] bytes = CompactSymbols.encode(symbols);
+
+		// all symbols are decoded from the single stream
+		assertSymbols(symbols, CompactSymbols.decode(bytes, 0, bytes.length).getSymbols());
+
+		// symbols accessed individually should be kept when all symbols are retrieved later
+		CompactSymbols compactSymbols = CompactSymbols.decode(bytes, 0, bytes.length);
+		Symbol lastSymbol = compactSymbols.getSymbol(symbols.size()-1);
+		List<Symbol> decodedSymbols = compactSymbols.getSymbols();
+		assertSame(lastSymbol, decodedSymbols.get(symbols.size()-1));
+		assertSymbols(symbols, decodedSymbols);
+	}
+
+	private void assertSymbols(List<Symbol> symbols, List<Symbol> decodedSymbols) {
+		assertEquals(symbols.size(), decodedSymbols.size());
+		Map<Symbol, Symbol> decodedToOriginal = new IdentityHashMap<>();
+		for (int i=0; i<symbols.size(); i++) {
+			assertEquals(symbols.get(i).getClass(), decodedSymbols.get(i).getClass());
+			assertEquals(symbols.get(i).getFQN(), decodedSymbols.get(i).getFQN());
+			decodedToOriginal.put(decodedSymbols.get(i), symbols.get(i));
+		}
+		for (int i=0; i<symbols.size(); i++) {
+			Symbol parent = decodedSymbols.get(i).getParent();
+			if (parent != null)
+				assertSame(symbols.get(i).getParent(), decodedToOriginal.get(parent));
+			else
+				assertNull(symbols.get(i).getParent());
+		}
+	}
+
+	@Test
+	public void testLegacyFormat() throws Exception {
+		List<Symbol> symbols = extract();
+		byte[] bytes = serialize(symbols);
+		CompactSymbols compactSymbols = CompactSymbols.decode(bytes, 0, bytes.length);
+
+		assertEquals(symbols.size(), compactSymbols.size());
+		for (int i=0; i<symbols.size(); i++) {
+			assertEquals(symbols.get(i).getName(), compactSymbols.getName(i));
+			assertEquals(symbols.get(i).isPrimary(), compactSymbols.isPrimary(i));
+			assertEquals(symbols.get(i).isSearchable(), compactSymbols.isSearchable(i));
+			assertEquals(symbols.get(i).getFQN(), compactSymbols.getSymbol(i).getFQN());
+		}
+		assertEquals(symbols.size(), compactSymbols.getSymbols().size());
+	}
+
+	@Test
+	public void testIndexSize() throws Exception {
+		List<Symbol> symbols = extract();
+
+		/*
+		 * Size stored in index for each blob used to be size of plain java serialization. Symbol
+		 * names are stored only once and content repeated between chunks is deflated against the
+		 * shared dictionary, so the compact format should be smaller even with the header
+		 */
+		int legacySize = serialize(symbols).length;
+		int compactSize = CompactSymbols.encode(symbols).length;
+		assertTrue("compact: " + compactSize + ", legacy: " + legacySize, compactSize < legacySize);
+	}
+
+}
@@ -0,0 +1,43 @@
+package io.onedev.server.util.markdown;
+
+import static org.junit.Assert.*;
+
+import java.util.HashSet;
+
+import org.junit.Test;
+
+public class DefaultMarkdownManagerTest {
+
+	private static final String MARKDOWN = ""
+			+ "# Title\n"
+			+ "\n"
+			+ "Some *emphasized* text with `code` and a [link](http://example.com).\n"
+			+ "\n"
+			+ "- item 1\n"
+			+ "  - nested item\n"
+			+ "- item 2\n"
+			+ "\n"
+			+ "| a | b |\n"
+			+ "|---|---|\n"
+			+ "| 1 | 2 |\n"
+			+ "\n"
+			+ "```\n"
+			+ "  indented\n"
+			+ "    code\n"
+			+ "```\n"
+			+ "\n"
+			+ "<div><p>inline <b>html</b></p><script>alert(1)</script></div>\n";
+
+	@Test
+	public void testProcessCacheHit() {
+		MarkdownManager markdownManager = new DefaultMarkdownManager(new HashSet<>(), new HashSet<>());
+		String rendered = markdownManager.render(MARKDOWN);
+
+		// first call cleans rendered html, and second call reuses cached result
+		String processedOnMiss = markdownManager.process(null, rendered, null);
+		String processedOnHit = markdownManager.process(null, rendered, null);
+		assertEquals(processedOnMiss, processedOnHit);
+		assertFalse(processedOnHit.contains("<script>"));
+	}
+
+}
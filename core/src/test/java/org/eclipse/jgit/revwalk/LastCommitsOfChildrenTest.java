@@ -90,4 +90,45 @@ public class LastCommitsOfChildrenTest extends AbstractGitTest {
 		assertEquals(new LastCommitsOfChildren(git.getRepository(), newId), new LastCommitsOfChildren(git.getRepository(), newId, cache));
 	}
 	
+	@Test
+	public void testIncrementalWithRevert() throws Exception {
+		addFileAndCommit("file", "1", "initial commit");
+		addFileAndCommit("other", "", "add other");
+		ObjectId baseId = git.getRepository().resolve("master");
+		LastCommitsOfChildren lastCommitsOfBase = new LastCommitsOfChildren(git.getRepository(), baseId);
+		
+		addFileAndCommit("file", "2", "change file");
+		addFileAndCommit("file", "1", "revert file");
+		
+		ObjectId untilId = git.getRepository().resolve("master");
+		LastCommitsOfChildren lastCommits = new LastCommitsOfChildren(git.getRepository(), untilId, null, 
+				baseId, lastCommitsOfBase, null);
+		assertEquals(untilId, lastCommits.get("file").getId());
+		assertEquals(baseId, lastCommits.get("other").getId());
+		assertEquals(new LastCommitsOfChildren(git.getRepository(), untilId), lastCommits);
+	}
+	
+	@Test
+	public void testIncrementalWithMerge() throws Exception {
+		createDir("dir");
+		addFileAndCommit("dir/file1", "1", "initial commit");
+		addFileAndCommit("dir/file2", "1", "add file2");
+		ObjectId baseId = git.getRepository().resolve("master");
+		LastCommitsOfChildren lastCommitsOfBase = new LastCommitsOfChildren(git.getRepository(), baseId, "dir");
+		
+		git.checkout().setName("dev").setCreateBranch(true).call();
+		addFileAndCommit("dir/file1", "2", "change file1 in dev");
+		addFileAndCommit("dir/file1", "1", "revert file1 in dev");
+		git.checkout().setName("master").call();
+		addFileAndCommit("dir/file3", "", "add file3 in master");
+		git.merge().include(git.getRepository().resolve("dev")).setCommit(true).call();
+		
+		ObjectId untilId = git.getRepository().resolve("master");
+		LastCommitsOfChildren lastCommits = new LastCommitsOfChildren(git.getRepository(), untilId, "dir", 
+				baseId, lastCommitsOfBase, null);
+		assertEquals(git.getRepository().resolve("dev"), lastCommits.get("file1").getId());
+		assertEquals(baseId, lastCommits.get("file2").getId());
+		assertEquals(new LastCommitsOfChildren(git.getRepository(), untilId, "dir"), lastCommits);
+	}
+	
 }
@@ -23,9 +23,33 @@ public class DefaultServerConfig implements ServerConfig {
 	
 	private static final String PROP_KEYSTOREKEYPASSWORD = "keystoreKeyPassword";
 	
+	private static final String PROP_INDEXINGTHREADS = "indexingThreads";
+	
+	private static final String PROP_INDEXINGQUEUESIZE = "indexingQueueSize";
+	
+	private static final String PROP_GITTRANSPORTTHREADS = "gitTransportThreads";
+	
+	private static final String PROP_GITTRANSPORTQUEUESIZE = "gitTransportQueueSize";
+	
+	private static final String PROP_GITTRANSPORTSPERUSER = "gitTransportsPerUser";
+	
+	private static final String PROP_UPLOADPACKCACHESIZE = "uploadPackCacheSize";
+	
 	private int httpPort;
 	
 	private int sessionTimeout;
+	
+	private int indexingThreads;
+	
+	private int indexingQueueSize;
+	
+	private int gitTransportThreads;
+	
+	private int gitTransportQueueSize;
+	
+	private int gitTransportsPerUser;
+	
+	private int uploadPackCacheSize;
 
 	private SslConfig sslConfig;
 	
@@ -79,6 +103,51 @@ public class DefaultServerConfig implements ServerConfig {
 		else
 			throw new RuntimeException("sessionTimeout is not specified.");
 		
+		String indexingThreadsStr = props.getProperty(PROP_INDEXINGTHREADS);
+		if (StringUtils.isNotBlank(indexingThreadsStr))
+			indexingThreads = Integer.parseInt(indexingThreadsStr.trim());
+		else
+			indexingThreads = Runtime.getRuntime().availableProcessors();
+		if (indexingThreads < 1)
+			throw new RuntimeException("indexingThreads should be at least 1.");
+		
+		String indexingQueueSizeStr = props.getProperty(PROP_INDEXINGQUEUESIZE);
+		if (StringUtils.isNotBlank(indexingQueueSizeStr))
+			indexingQueueSize = Integer.parseInt(indexingQueueSizeStr.trim());
+		else
+			indexingQueueSize = indexingThreads * 4;
+		if (indexingQueueSize < 1)
+			throw new RuntimeException("indexingQueueSize should be at least 1.");
+		
+		String gitTransportThreadsStr = props.getProperty(PROP_GITTRANSPORTTHREADS);
+		if (StringUtils.isNotBlank(gitTransportThreadsStr))
+			gitTransportThreads = Integer.parseInt(gitTransportThreadsStr.trim());
+		else
+			gitTransportThreads = Runtime.getRuntime().availableProcessors() * 2;
+		if (gitTransportThreads < 1)
+			throw new RuntimeException("gitTransportThreads should be at least 1.");
+		
+		String gitTransportQueueSizeStr = props.getProperty(PROP_GITTRANSPORTQUEUESIZE);
+		if (StringUtils.isNotBlank(gitTransportQueueSizeStr))
+			gitTransportQueueSize = Integer.parseInt(gitTransportQueueSizeStr.trim());
+		else
+			gitTransportQueueSize = gitTransportThreads * 4;
+		if (gitTransportQueueSize < 0)
+			throw new RuntimeException("gitTransportQueueSize should not be negative.");
+		
+		String gitTransportsPerUserStr = props.getProperty(PROP_GITTRANSPORTSPERUSER);
+		if (StringUtils.isNotBlank(gitTransportsPerUserStr))
+			gitTransportsPerUser = Integer.parseInt(gitTransportsPerUserStr.trim());
+		else
+			gitTransportsPerUser = 8;
+		if (gitTransportsPerUser < 1)
+			throw new RuntimeException("gitTransportsPerUser should be at least 1.");
+		
+		String uploadPackCacheSizeStr = props.getProperty(PROP_UPLOADPACKCACHESIZE);
+		if (StringUtils.isNotBlank(uploadPackCacheSizeStr))
+			uploadPackCacheSize = Integer.parseInt(uploadPackCacheSizeStr.trim());
+		if (uploadPackCacheSize < 0)
+			throw new RuntimeException("uploadPackCacheSize should not be negative.");
 	}
 	
 	@Override
@@ -96,4 +165,34 @@ public class DefaultServerConfig implements ServerConfig {
 		return sessionTimeout;
 	}
 
+	@Override
+	public int getIndexingThreads() {
+		return indexingThreads;
+	}
+
+	@Override
+	public int getIndexingQueueSize() {
+		return indexingQueueSize;
+	}
+
+	@Override
+	public int getGitTransportThreads() {
+		return gitTransportThreads;
+	}
+
+	@Override
+	public int getGitTransportQueueSize() {
+		return gitTransportQueueSize;
+	}
+
+	@Override
+	public int getGitTransportsPerUser() {
+		return gitTransportsPerUser;
+	}
+
+	@Override
+	public int getUploadPackCacheSize() {
+		return uploadPackCacheSize;
+	}
+
 }